@@ -0,0 +1,51 @@
+package cn.gt.kaka.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 缓存统计快照
+ *
+ * 某一时刻缓存的命中、未命中、淘汰次数及当前条目数，
+ * 各缓存组件通过 stats() 方法返回，供日志和监控使用
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CacheStats {
+
+    /**
+     * 命中次数
+     */
+    private final long hitCount;
+
+    /**
+     * 未命中次数
+     */
+    private final long missCount;
+
+    /**
+     * 淘汰次数（容量淘汰与过期淘汰之和）
+     */
+    private final long evictionCount;
+
+    /**
+     * 当前缓存条目数
+     */
+    private final long size;
+
+    /**
+     * 计算命中率
+     *
+     * @return 命中率，取值范围 [0, 1]，没有任何请求时返回 0
+     */
+    public double hitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 0D : (double) hitCount / requests;
+    }
+}
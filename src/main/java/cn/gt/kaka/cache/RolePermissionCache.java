@@ -0,0 +1,294 @@
+package cn.gt.kaka.cache;
+
+import cn.gt.kaka.dao.UserDao;
+import cn.gt.kaka.util.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 两级权限缓存
+ *
+ * 大量用户共用少量角色，按用户缓存权限代码会使内存随 用户数×权限数 增长，且修改一个角色的权限要清空所有用户。
+ * 本缓存分两级保存：
+ * 1. 用户 → 角色ID列表：相同的角色组合共用同一个列表实例，每个用户只占一个引用
+ * 2. 角色 → 权限代码列表：条目数等于角色数
+ * 查询时在内存中按角色合并权限代码并去重；修改角色权限后 {@link #invalidateRole} 只使该角色的条目失效，
+ * 其他角色和所有用户条目不受影响；修改用户的角色后 {@link #invalidateUser} 只使该用户的条目失效
+ * 两个方法通过 PermissionAdminController 暴露给修改数据库的运维和管理服务
+ *
+ * 失效只作用于当前节点，两级条目的有效期均为 permission.cache.ttl 秒，作为其他节点的兜底；
+ * 开启 jwt.permission.embed 时，已签发的访问令牌携带签发时的权限位图，修改要等令牌续期后才生效
+ * 用户条目数有上限，超过上限时按写入顺序淘汰最早的条目；同一用户并发未命中只查询一次
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@Component
+public class RolePermissionCache implements MeterBinder {
+
+    /**
+     * 已失效的用户条目，原地替换而不删除键，键仍在写入顺序队列中，重新加载时覆盖而不重复入队
+     */
+    private static final Entry INVALIDATED = new Entry(Collections.emptyList(), 0L);
+
+    @Autowired
+    private UserDao userDao;
+
+    /**
+     * 是否启用缓存，关闭时每次按用户ID查询数据库
+     */
+    @Value("${permission.cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 条目有效期（秒）
+     */
+    @Value("${permission.cache.ttl:60}")
+    private long ttl;
+
+    /**
+     * 用户条目最大数
+     */
+    @Value("${permission.cache.maxUsers:100000}")
+    private int maxUsers;
+
+    private final ConcurrentHashMap<String, Entry> userRoles = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Entry> rolePermissions = new ConcurrentHashMap<>();
+
+    /**
+     * 角色组合的规范实例，相同组合的用户共用
+     */
+    private final ConcurrentHashMap<List<String>, List<String>> roleSets = new ConcurrentHashMap<>();
+
+    /**
+     * 用户条目的写入顺序队列，用于容量淘汰
+     */
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final SingleFlight<String, List<String>> userLoads = new SingleFlight<>();
+
+    /**
+     * 失效次数，查询开始和写入缓存时不一致说明期间发生过失效，结果不写入
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder userHits = new LongAdder();
+    private final LongAdder userMisses = new LongAdder();
+    private final LongAdder roleHits = new LongAdder();
+    private final LongAdder roleMisses = new LongAdder();
+
+    /**
+     * 获取用户的权限代码
+     *
+     * @param userId 用户ID
+     * @return 去重后的只读权限代码列表，用户没有权限时返回空列表
+     * @throws RuntimeException 当数据库访问出现异常时抛出
+     */
+    public List<String> permissionsOf(String userId) {
+        if (!enabled) {
+            return userDao.findPermissionsByUserId(userId);
+        }
+
+        long now = System.currentTimeMillis();
+        List<String> roles = rolesOf(userId, now);
+        if (roles.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (roles.size() == 1) {
+            return codesOf(roles, now).get(roles.get(0));
+        }
+
+        Map<String, List<String>> codes = codesOf(roles, now);
+        LinkedHashSet<String> merged = new LinkedHashSet<>();
+        for (String role : roles) {
+            merged.addAll(codes.get(role));
+        }
+        return Collections.unmodifiableList(new ArrayList<>(merged));
+    }
+
+    /**
+     * 使某个角色的权限失效，修改角色的权限后调用
+     *
+     * 只删除该角色的条目，下次查询时只重新加载该角色的权限代码
+     *
+     * @param roleId 角色ID
+     */
+    public void invalidateRole(String roleId) {
+        invalidations.incrementAndGet();
+        rolePermissions.remove(roleId);
+        log.info("角色权限缓存已失效: roleId={}", roleId);
+    }
+
+    /**
+     * 使某个用户的角色失效，修改用户的角色后调用
+     *
+     * @param userId 用户ID
+     */
+    public void invalidateUser(String userId) {
+        invalidations.incrementAndGet();
+        userRoles.replace(userId, INVALIDATED);
+        log.info("用户角色缓存已失效: userId={}", userId);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        // 先清空队列再清空条目：并发写入最多在队列中留下已不存在的键，不会留下不在队列中、无法被淘汰的条目
+        while (insertionOrder.poll() != null) {
+            queued.decrementAndGet();
+        }
+        userRoles.clear();
+        rolePermissions.clear();
+        roleSets.clear();
+        log.info("已清空权限缓存");
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindLevel(registry, "user", userHits, userMisses, userRoles);
+        bindLevel(registry, "role", roleHits, roleMisses, rolePermissions);
+        FunctionCounter.builder("permission.cache.coalesced", userLoads, SingleFlight::coalescedCount)
+                .description("与进行中的用户角色查询合并的未命中次数")
+                .register(registry);
+    }
+
+    private static void bindLevel(MeterRegistry registry, String level, LongAdder hits, LongAdder misses,
+                                  Map<String, Entry> entries) {
+        FunctionCounter.builder("permission.cache.requests", hits, LongAdder::doubleValue)
+                .tag("level", level)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("permission.cache.requests", misses, LongAdder::doubleValue)
+                .tag("level", level)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("permission.cache.size", entries, map -> map.size())
+                .tag("level", level)
+                .register(registry);
+    }
+
+    private List<String> rolesOf(String userId, long now) {
+        Entry entry = userRoles.get(userId);
+        if (entry != null && entry.expiresAt > now) {
+            userHits.increment();
+            return entry.values;
+        }
+        userMisses.increment();
+        return userLoads.execute(userId, () -> loadRoles(userId));
+    }
+
+    private List<String> loadRoles(String userId) {
+        long version = invalidations.get();
+        List<String> loaded = new ArrayList<>(new LinkedHashSet<>(userDao.findRoleIdsByUserId(userId)));
+        if (roleSets.size() >= maxUsers) {
+            // 角色组合异常多时放弃共享，已缓存的用户条目不受影响
+            roleSets.clear();
+        }
+        List<String> roles = roleSets.computeIfAbsent(Collections.unmodifiableList(loaded), set -> set);
+        if (invalidations.get() == version) {
+            long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttl);
+            if (userRoles.put(userId, new Entry(roles, expiresAt)) == null) {
+                insertionOrder.offer(userId);
+                if (queued.incrementAndGet() > maxUsers) {
+                    evictOldest();
+                }
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * 获取一组角色的权限代码，未缓存或已过期的角色一次批量查询
+     */
+    private Map<String, List<String>> codesOf(List<String> roles, long now) {
+        Map<String, List<String>> codes = new HashMap<>(roles.size() * 2);
+        List<String> missing = null;
+        for (String role : roles) {
+            Entry entry = rolePermissions.get(role);
+            if (entry != null && entry.expiresAt > now) {
+                roleHits.increment();
+                codes.put(role, entry.values);
+            } else {
+                roleMisses.increment();
+                if (missing == null) {
+                    missing = new ArrayList<>(roles.size());
+                }
+                missing.add(role);
+            }
+        }
+        if (missing != null) {
+            codes.putAll(loadPermissions(missing));
+        }
+        return codes;
+    }
+
+    private Map<String, List<String>> loadPermissions(List<String> roles) {
+        long version = invalidations.get();
+        Map<String, List<String>> loaded = new HashMap<>(roles.size() * 2);
+        for (String role : roles) {
+            loaded.put(role, new ArrayList<>());
+        }
+        userDao.forEachRolePermission(roles, (role, code) -> loaded.get(role).add(code));
+
+        boolean cacheable = invalidations.get() == version;
+        long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttl);
+        for (Map.Entry<String, List<String>> role : loaded.entrySet()) {
+            List<String> codes = Collections.unmodifiableList(role.getValue());
+            role.setValue(codes);
+            if (cacheable) {
+                rolePermissions.put(role.getKey(), new Entry(codes, expiresAt));
+            }
+        }
+        return loaded;
+    }
+
+    private void evictOldest() {
+        while (queued.get() > maxUsers) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            userRoles.remove(oldest);
+        }
+    }
+
+    /**
+     * 缓存条目：角色ID或权限代码列表与条目失效时间（毫秒时间戳）
+     */
+    private static final class Entry {
+        private final List<String> values;
+        private final long expiresAt;
+
+        private Entry(List<String> values, long expiresAt) {
+            this.values = values;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package cn.gt.kaka.cache;
+
+import cn.gt.kaka.dao.UserDao;
+import cn.gt.kaka.model.UserDto;
+import cn.gt.kaka.util.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户信息缓存
+ *
+ * 按用户名缓存 t_user 中的用户信息，位于 {@link UserDao} 之前，未命中时读穿到数据库：
+ * 1. 条目有效期为 user.cache.ttl 秒，不存在的用户同样缓存 user.cache.negativeTtl 秒，
+ *    避免对未知用户名的反复查询压到MySQL上
+ * 2. 同一用户名并发未命中时只执行一次查询，其他调用等待并共享结果
+ * 3. 容量有上限，超过上限时按写入顺序淘汰最早的条目；过期和失效的条目只标记为过期，
+ *    由下一次查询结果原地覆盖或按容量淘汰，同一用户名不会重复进入写入顺序队列
+ * 4. 修改用户信息（例如密码）后调用 {@link #invalidate} 或 {@link #invalidateAll}；
+ *    查询进行期间发生的失效会使这次查询结果不进入缓存
+ *
+ * 缓存中的用户不含权限代码：未命中时按 {@link UserDao#findWithPermissionsByUsername} 一次查询用户和权限，
+ * 本次调用返回带权限的结果，命中时返回的用户 permissions 为null，由调用方另行获取权限，
+ * 权限变更不受本缓存的有效期影响
+ *
+ * 其他节点修改的密码在本节点最多延迟一个有效期生效，ttl不宜设置过长
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@Component
+public class UserCache implements MeterBinder {
+
+    @Autowired
+    private UserDao userDao;
+
+    /**
+     * 是否启用缓存
+     */
+    @Value("${user.cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 用户条目有效期（秒）
+     */
+    @Value("${user.cache.ttl:30}")
+    private long ttl;
+
+    /**
+     * 不存在的用户的缓存有效期（秒），0表示不缓存
+     */
+    @Value("${user.cache.negativeTtl:5}")
+    private long negativeTtl;
+
+    /**
+     * 缓存最大条目数
+     */
+    @Value("${user.cache.maxSize:10000}")
+    private int maxSize;
+
+    /**
+     * 已失效的条目，保留用户名在队列中的位置，下一次查询结果原地覆盖
+     */
+    private static final Entry INVALIDATED = new Entry(null, 0L);
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 写入顺序队列，用于容量淘汰；队列长度由 queued 计数，避免 ConcurrentLinkedQueue.size() 的遍历开销
+     */
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final SingleFlight<String, Optional<UserDto>> loads = new SingleFlight<>();
+
+    /**
+     * 失效次数，查询开始和写入缓存时不一致说明期间发生过失效，结果不写入
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 按用户名获取用户信息
+     *
+     * @param username 用户名
+     * @return 用户信息的副本，调用方可以修改；用户不存在时返回Optional.empty()
+     * @throws RuntimeException 当数据库访问出现异常时抛出
+     */
+    public Optional<UserDto> get(String username) {
+        if (!enabled) {
+            return userDao.findWithPermissionsByUsername(username);
+        }
+
+        Entry entry = entries.get(username);
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+            hits.increment();
+            return entry.user == null ? Optional.empty() : Optional.of(copyOf(entry.user));
+        }
+
+        misses.increment();
+        Optional<UserDto> loaded = loads.execute(username, () -> load(username));
+        // 合并的调用共享同一个结果对象，各自返回副本
+        return loaded.map(user -> {
+            UserDto copy = copyOf(user);
+            copy.setPermissions(user.getPermissions());
+            return copy;
+        });
+    }
+
+    /**
+     * 使某个用户名的缓存失效
+     *
+     * @param username 用户名
+     */
+    public void invalidate(String username) {
+        invalidations.incrementAndGet();
+        entries.replace(username, INVALIDATED);
+        log.debug("用户缓存已失效: username={}", username);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        // 先清空队列再清空条目：并发写入最多在队列中留下已不存在的键，不会留下不在队列中、无法被淘汰的条目
+        while (insertionOrder.poll() != null) {
+            queued.decrementAndGet();
+        }
+        entries.clear();
+        log.info("已清空用户缓存");
+    }
+
+    /**
+     * 获取缓存统计快照
+     *
+     * @return 统计信息
+     */
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("user.cache.requests", hits, LongAdder::doubleValue)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("user.cache.requests", misses, LongAdder::doubleValue)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("user.cache.evictions", evictions, LongAdder::doubleValue)
+                .register(registry);
+        FunctionCounter.builder("user.cache.coalesced", loads, SingleFlight::coalescedCount)
+                .description("与进行中的查询合并、未单独查询数据库的未命中次数")
+                .register(registry);
+        Gauge.builder("user.cache.size", entries, map -> map.size())
+                .register(registry);
+    }
+
+    private Optional<UserDto> load(String username) {
+        long version = invalidations.get();
+        Optional<UserDto> user = userDao.findWithPermissionsByUsername(username);
+        long lifetime = user.isPresent() ? ttl : negativeTtl;
+        if (lifetime > 0 && invalidations.get() == version) {
+            put(username, new Entry(user.map(UserCache::copyOf).orElse(null),
+                    System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(lifetime)));
+        }
+        return user;
+    }
+
+    private void put(String username, Entry entry) {
+        if (entries.put(username, entry) == null) {
+            insertionOrder.offer(username);
+            if (queued.incrementAndGet() > maxSize) {
+                evictOldest();
+            }
+        }
+    }
+
+    private void evictOldest() {
+        while (queued.get() > maxSize) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            if (entries.remove(oldest) != null) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 复制用户信息，不含权限代码
+     */
+    private static UserDto copyOf(UserDto user) {
+        return new UserDto(user.getId(), user.getUsername(), user.getPassword(), user.getFullname(), user.getMobile());
+    }
+
+    /**
+     * 缓存条目：用户信息（不存在的用户为null）与条目失效时间（毫秒时间戳）
+     */
+    private static final class Entry {
+        private final UserDto user;
+        private final long expiresAt;
+
+        private Entry(UserDto user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package cn.gt.kaka.cache;
+
+import cn.gt.kaka.security.password.CredentialDigest;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已验证凭据缓存
+ *
+ * 脚本类客户端会在短时间内用同一组用户名和密码反复登录，每次都要做一次完整的密码哈希校验。
+ * 本缓存记录最近校验通过的凭据，有效期内再次登录时跳过密码哈希计算
+ *
+ * 缓存策略：
+ * 1. 键为 {@link CredentialDigest}，缓存中不保存明文密码
+ * 2. 值为校验通过时数据库中的密码哈希，命中时与当前数据库中的哈希比较，
+ *    密码被修改或哈希被重新计算后旧条目自然失效，命中结果与完整校验一致
+ * 3. 条目有效期为 login.credentialCache.ttl 秒，过期条目视为未命中，由下一次写入覆盖或按容量淘汰；
+ *    读取时不删除过期条目，同一键再次写入时不会重复进入写入顺序队列
+ * 4. 容量有上限，超过上限时按写入顺序淘汰最早的条目
+ *
+ * 默认关闭，通过 login.credentialCache.enabled 开启
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@Component
+public class VerifiedCredentialCache implements MeterBinder {
+
+    /**
+     * 是否启用缓存
+     */
+    @Value("${login.credentialCache.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 条目有效期（秒）
+     */
+    @Value("${login.credentialCache.ttl:60}")
+    private long ttl;
+
+    /**
+     * 缓存最大条目数
+     */
+    @Value("${login.credentialCache.maxSize:1000}")
+    private int maxSize;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 写入顺序队列，用于容量淘汰；队列长度由 queued 计数，避免 ConcurrentLinkedQueue.size() 的遍历开销
+     */
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 判断凭据是否在有效期内校验通过过，且数据库中的密码哈希没有变化
+     *
+     * @param username 用户名
+     * @param rawPassword 用户输入的原始密码
+     * @param encodedPassword 当前数据库中的密码哈希
+     * @return true表示可以跳过密码哈希校验
+     */
+    public boolean matches(String username, String rawPassword, String encodedPassword) {
+        if (!enabled) {
+            return false;
+        }
+
+        String cacheKey = CredentialDigest.of(username, rawPassword);
+        Entry entry = entries.get(cacheKey);
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()
+                && entry.encodedPassword.equals(encodedPassword)) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * 记录一次完整校验通过的凭据
+     *
+     * @param username 用户名
+     * @param rawPassword 用户输入的原始密码
+     * @param encodedPassword 校验通过时数据库中的密码哈希
+     */
+    public void put(String username, String rawPassword, String encodedPassword) {
+        if (!enabled || encodedPassword == null) {
+            return;
+        }
+
+        String cacheKey = CredentialDigest.of(username, rawPassword);
+        long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttl);
+        if (entries.put(cacheKey, new Entry(encodedPassword, expiresAt)) == null) {
+            insertionOrder.offer(cacheKey);
+            if (queued.incrementAndGet() > maxSize) {
+                evictOldest();
+            }
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        // 先清空队列再清空条目：并发写入最多在队列中留下已不存在的键，不会留下不在队列中、无法被淘汰的条目
+        while (insertionOrder.poll() != null) {
+            queued.decrementAndGet();
+        }
+        entries.clear();
+        log.info("已清空凭据缓存");
+    }
+
+    /**
+     * 获取缓存统计快照
+     *
+     * @return 统计信息
+     */
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("login.credential.cache.requests", hits, LongAdder::doubleValue)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("login.credential.cache.requests", misses, LongAdder::doubleValue)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("login.credential.cache.evictions", evictions, LongAdder::doubleValue)
+                .register(registry);
+        Gauge.builder("login.credential.cache.size", entries, map -> map.size())
+                .register(registry);
+    }
+
+    private void evictOldest() {
+        while (queued.get() > maxSize) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            if (entries.remove(oldest) != null) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 缓存条目：校验通过时的密码哈希与条目失效时间（毫秒时间戳）
+     */
+    private static final class Entry {
+        private final String encodedPassword;
+        private final long expiresAt;
+
+        private Entry(String encodedPassword, long expiresAt) {
+            this.encodedPassword = encodedPassword;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
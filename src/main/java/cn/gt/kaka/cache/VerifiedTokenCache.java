@@ -0,0 +1,190 @@
+package cn.gt.kaka.cache;
+
+import cn.gt.kaka.security.jwt.ParsedToken;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 已验证令牌缓存
+ *
+ * 客户端在访问令牌有效期内会反复携带同一个令牌，每次请求都重新做HMAC校验和JSON解析是纯粹的重复计算。
+ * 本缓存以令牌的SHA-256摘要为键，保存签名校验通过后的已解析令牌，命中时直接返回，不再解析令牌
+ *
+ * 缓存策略：
+ * 1. 键为令牌摘要，内存中不长期保留原始令牌
+ * 2. 条目的有效期不超过令牌自身的exp，过期条目在读取时即被剔除
+ * 3. 容量有上限，超过上限时按写入顺序淘汰最早的条目
+ * 4. 统计命中、未命中和淘汰次数，并注册为监控指标
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@Component
+public class VerifiedTokenCache implements MeterBinder {
+
+    /**
+     * 每个线程复用一个摘要实例，避免每次请求创建MessageDigest
+     */
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前JVM不支持SHA-256", e);
+        }
+    });
+
+    /**
+     * 是否启用缓存
+     */
+    @Value("${jwt.tokenCache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 缓存最大条目数
+     */
+    @Value("${jwt.tokenCache.maxSize:10000}")
+    private int maxSize;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 写入顺序队列，用于容量淘汰；队列长度由 queued 计数，避免 ConcurrentLinkedQueue.size() 的遍历开销
+     */
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 从缓存获取已解析令牌，未命中时调用校验函数并缓存结果
+     *
+     * 校验函数抛出的异常原样向上抛出，校验失败的令牌不会进入缓存
+     *
+     * @param token 原始JWT令牌
+     * @param verifier 未命中时执行的完整校验逻辑
+     * @return 已解析令牌
+     */
+    public ParsedToken getOrVerify(String token, Function<String, ParsedToken> verifier) {
+        if (!enabled) {
+            return verifier.apply(token);
+        }
+
+        String key = digest(token);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.expiresAt > System.currentTimeMillis()) {
+                hits.increment();
+                return entry.parsedToken;
+            }
+            if (entries.remove(key, entry)) {
+                evictions.increment();
+            }
+        }
+
+        misses.increment();
+        ParsedToken parsedToken = verifier.apply(token);
+        put(key, parsedToken);
+        return parsedToken;
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        // 先清空队列再清空条目：并发写入最多在队列中留下已不存在的键，不会留下不在队列中、无法被淘汰的条目
+        while (insertionOrder.poll() != null) {
+            queued.decrementAndGet();
+        }
+        entries.clear();
+        log.info("已清空令牌缓存");
+    }
+
+    /**
+     * 获取缓存统计快照
+     *
+     * @return 统计信息
+     */
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jwt.token.cache.requests", hits, LongAdder::doubleValue)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("jwt.token.cache.requests", misses, LongAdder::doubleValue)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("jwt.token.cache.evictions", evictions, LongAdder::doubleValue)
+                .register(registry);
+        Gauge.builder("jwt.token.cache.size", entries, map -> map.size())
+                .register(registry);
+    }
+
+    private void put(String key, ParsedToken parsedToken) {
+        if (parsedToken.getExpiration() == null) {
+            // 没有过期时间的令牌无法确定缓存上限，不缓存
+            return;
+        }
+
+        // 只在新增键时入队：同一令牌并发校验时重复入队，会使淘汰旧的队列元素时误删新写入的条目
+        if (entries.put(key, new Entry(parsedToken, parsedToken.getExpiresAt())) == null) {
+            insertionOrder.offer(key);
+            if (queued.incrementAndGet() > maxSize) {
+                evictOldest();
+            }
+        }
+    }
+
+    private void evictOldest() {
+        while (queued.get() > maxSize) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            if (entries.remove(oldest) != null) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static String digest(String token) {
+        byte[] hash = SHA256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
+    /**
+     * 缓存条目：已解析令牌与其失效时间（毫秒时间戳）
+     */
+    private static final class Entry {
+        private final ParsedToken parsedToken;
+        private final long expiresAt;
+
+        private Entry(ParsedToken parsedToken, long expiresAt) {
+            this.parsedToken = parsedToken;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package cn.gt.kaka.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 线程池配置
+ *
+ * 批量签发和批量校验令牌各自使用独立的有界线程池，与Web容器线程隔离：
+ * 线程数和队列长度都有上限，队列满时由提交线程自己执行任务，形成自然的背压，
+ * 不会因为一次超大批量请求无限堆积任务或耗尽内存
+ *
+ * 登录密码校验和异步登录各自使用单独的有界线程池，队列满时直接拒绝（由调用方返回503），
+ * 不由提交线程执行，避免集中登录时BCrypt计算和数据库查询占满Web容器线程
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * 批量签发线程数，默认为CPU核数
+     */
+    @Value("${jwt.bulk.poolSize:0}")
+    private int bulkPoolSize;
+
+    /**
+     * 批量签发任务队列长度
+     */
+    @Value("${jwt.bulk.queueCapacity:1024}")
+    private int bulkQueueCapacity;
+
+    /**
+     * 批量校验线程数，默认为CPU核数
+     */
+    @Value("${jwt.introspect.poolSize:0}")
+    private int introspectPoolSize;
+
+    /**
+     * 批量校验任务队列长度
+     */
+    @Value("${jwt.introspect.queueCapacity:1024}")
+    private int introspectQueueCapacity;
+
+    /**
+     * 密码校验线程数，默认为CPU核数
+     */
+    @Value("${login.passwordVerify.poolSize:0}")
+    private int passwordVerifyPoolSize;
+
+    /**
+     * 密码校验任务队列长度
+     */
+    @Value("${login.passwordVerify.queueCapacity:64}")
+    private int passwordVerifyQueueCapacity;
+
+    /**
+     * 异步登录线程数，默认为CPU核数的2倍（线程大部分时间在等待数据库和密码校验）
+     */
+    @Value("${login.async.poolSize:0}")
+    private int loginPoolSize;
+
+    /**
+     * 异步登录任务队列长度
+     */
+    @Value("${login.async.queueCapacity:256}")
+    private int loginQueueCapacity;
+
+    /**
+     * 批量签发令牌使用的线程池
+     *
+     * @return 有界线程池
+     */
+    @Bean(name = "tokenIssueExecutor")
+    public ExecutorService tokenIssueExecutor() {
+        return boundedPool("token-issue-", bulkPoolSize, bulkQueueCapacity);
+    }
+
+    /**
+     * 批量校验令牌使用的线程池，与签发线程池分开，避免批量签发拖慢网关的令牌校验
+     *
+     * @return 有界线程池
+     */
+    @Bean(name = "tokenVerifyExecutor")
+    public ExecutorService tokenVerifyExecutor() {
+        return boundedPool("token-verify-", introspectPoolSize, introspectQueueCapacity);
+    }
+
+    /**
+     * 登录密码校验使用的线程池，队列满时抛出 RejectedExecutionException
+     *
+     * @return 有界线程池
+     */
+    @Bean(name = "passwordVerifyExecutor")
+    public ThreadPoolExecutor passwordVerifyExecutor() {
+        return sheddingPool("password-verify-",
+                passwordVerifyPoolSize > 0 ? passwordVerifyPoolSize : Runtime.getRuntime().availableProcessors(),
+                passwordVerifyQueueCapacity);
+    }
+
+    /**
+     * 异步登录使用的线程池，读取请求体之后的用户查询、密码校验和响应写出都在该线程池上执行，
+     * 队列满时抛出 RejectedExecutionException
+     *
+     * @return 有界线程池
+     */
+    @Bean(name = "loginExecutor")
+    public ThreadPoolExecutor loginExecutor() {
+        return sheddingPool("login-",
+                loginPoolSize > 0 ? loginPoolSize : Runtime.getRuntime().availableProcessors() * 2,
+                loginQueueCapacity);
+    }
+
+    static ThreadPoolExecutor sheddingPool(String threadNamePrefix, int threads, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory(threadNamePrefix),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        log.info("线程池初始化完成: {}线程数={}, 队列长度={}", threadNamePrefix, threads, queueCapacity);
+        return executor;
+    }
+
+    static ExecutorService boundedPool(String threadNamePrefix, int poolSize, int queueCapacity) {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory(threadNamePrefix),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        log.info("线程池初始化完成: {}线程数={}, 队列长度={}", threadNamePrefix, threads, queueCapacity);
+        return executor;
+    }
+}
@@ -12,8 +12,14 @@ import cn.gt.kaka.rbac.CloudConsoleAccessDecisionManager;
 import cn.gt.kaka.rbac.CloudConsoleFilterSecurityInterceptor;
 import cn.gt.kaka.rbac.CloudConsoleSecurityMetadataSource;
 import cn.gt.kaka.security.config.WhiteList;
+import cn.gt.kaka.security.password.AdaptivePasswordEncoder;
+import cn.gt.kaka.security.password.PasswordHashAlgorithm;
+import cn.gt.kaka.security.throttle.LoginThrottle;
+import cn.gt.kaka.service.TokenRenewalService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -23,13 +29,14 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.access.intercept.FilterSecurityInterceptor;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.web.util.matcher.RequestMatcher;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 /**
  * @author Administrator
  * @version 1.0
@@ -60,6 +67,39 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     @Autowired
     private PreAuthenticationProvider preAuthenticationProvider;
 
+    @Autowired
+    private TokenRenewalService tokenRenewalService;
+
+    @Autowired
+    @Qualifier("loginExecutor")
+    private ThreadPoolExecutor loginExecutor;
+
+    //异步登录：读取请求体、查询用户和校验密码都不占用容器线程
+    @Value("${login.async.enabled:false}")
+    private boolean asyncLoginEnabled;
+
+    @Value("${login.async.timeout:5000}")
+    private long asyncLoginTimeout;
+
+    @Value("${login.maxBodySize:${login.async.maxBodySize:8192}}")
+    private int loginMaxBodySize;
+
+    @Value("${login.passwordVerify.retryAfter:2}")
+    private long loginRetryAfter;
+
+    @Autowired
+    private LoginThrottle loginThrottle;
+
+    //密码哈希：新哈希的算法和工作因子，workFactor为0时启动时按目标耗时校准
+    @Value("${password.hash.algorithm:bcrypt}")
+    private String passwordHashAlgorithm;
+
+    @Value("${password.hash.targetMillis:250}")
+    private long passwordHashTargetMillis;
+
+    @Value("${password.hash.workFactor:0}")
+    private int passwordHashWorkFactor;
+
     @Autowired
     private CloudConsoleAccessDecisionManager cloudConsoleAccessDecisionManager;
 
@@ -102,12 +142,20 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         PreAuthenticationFilter filter = new PreAuthenticationFilter("/users/login",
                 loginAuthenticationSuccessHandler, loginAuthenticationFailureHandler, objectMapper);
         filter.setAuthenticationManager(authenticationManager);
+        filter.setLoginThrottle(loginThrottle);
+        filter.setMaxBodySize(loginMaxBodySize);
+        if (asyncLoginEnabled) {
+            filter.setLoginExecutor(loginExecutor);
+            filter.setAsyncTimeout(asyncLoginTimeout);
+            filter.setRetryAfterSeconds(loginRetryAfter);
+        }
         return filter;
     }
 
     private PostAuthenticationFilter postAuthenticationFilter() {
         PostAuthenticationFilter filter = new PostAuthenticationFilter(authenticationManager,loginAuthenticationFailureHandler);
         filter.setRequiresAuthenticationRequestMatcher(requestMatcher());
+        filter.setTokenRenewalService(tokenRenewalService);
         return filter;
 
     }
@@ -116,6 +164,7 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         MatcherBuilder builder = SpogRequestURLMatcher.getBuilderWithBase(null);
         RequestMatcher match = builder
                 .addWhiteMatcher(WhiteList.AUTHENTICATE_ENDPOINT)
+                .addWhiteMatcher(WhiteList.REFRESH_TOKEN_ENDPOINT,"POST")
                 .addWhiteMatcher(WhiteList.VERSION_ENDPOINT,"GET")
                 .addBlackMatcher("/**")
                 .build();
@@ -130,7 +179,11 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        PasswordHashAlgorithm algorithm = PasswordHashAlgorithm.of(passwordHashAlgorithm);
+        if (passwordHashWorkFactor > 0) {
+            return new AdaptivePasswordEncoder(algorithm, passwordHashWorkFactor);
+        }
+        return AdaptivePasswordEncoder.calibrate(algorithm, passwordHashTargetMillis);
     }
 
     @Override
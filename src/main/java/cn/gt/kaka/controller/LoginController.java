@@ -2,27 +2,52 @@ package cn.gt.kaka.controller;
 
 import cn.gt.kaka.dto.LoginRequest;
 import cn.gt.kaka.dto.LoginResponse;
+import cn.gt.kaka.dto.RefreshTokenRequest;
+import cn.gt.kaka.dto.TokenType;
+import cn.gt.kaka.security.jwt.ParsedToken;
+import cn.gt.kaka.security.jwt.TokenPair;
+import cn.gt.kaka.security.revocation.TokenRevocationStore;
+import cn.gt.kaka.service.TokenRefreshService;
 import cn.gt.kaka.util.CommonResponse;
+import cn.gt.kaka.util.Constants;
+import cn.gt.kaka.util.JwtUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * @author Administrator
  * @version 1.0
  **/
+@Slf4j
 @RestController
 public class LoginController {
 
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Autowired
+    private TokenRefreshService tokenRefreshService;
+
     @RequestMapping(value = "/success",produces = {"text/plain;charset=UTF-8"})
     public String loginSuccess(){
         //提示具体用户名称登录成功
@@ -80,6 +105,50 @@ public class LoginController {
         return new LoginResponse();
     }
 
+    /**
+     * 刷新令牌
+     * 用刷新令牌换取新的访问令牌和刷新令牌，只校验令牌签名并记录其使用，不查询用户、不校验密码
+     * 所用的刷新令牌随即作废，重复使用会使该用户的全部令牌失效
+     * @param refreshTokenRequest
+     * @return
+     */
+    @PostMapping ("/users/refresh")
+    public CommonResponse<LoginResponse> refresh(@Valid @RequestBody RefreshTokenRequest refreshTokenRequest) {
+        TokenPair tokenPair = tokenRefreshService.refresh(refreshTokenRequest.getRefreshToken());
+        LoginResponse loginResponse = new LoginResponse();
+        loginResponse.setToken(tokenPair.getAccessToken());
+        loginResponse.setRefreshToken(tokenPair.getRefreshToken());
+        return CommonResponse.success(loginResponse);
+    }
+
+    /**
+     * 退出登录
+     * 撤销当前请求的访问令牌；同时提交了刷新令牌时一并撤销，令牌在过期前都无法再使用
+     * @param accessToken 认证过滤器解析好的当前访问令牌
+     * @param refreshToken 可选的刷新令牌
+     * @return
+     */
+    @PostMapping ("/users/logout")
+    public CommonResponse logout(@RequestAttribute(Constants.PARSED_TOKEN_ATTRIBUTE) ParsedToken accessToken,
+                                 @RequestParam(value = "refresh_token", required = false) String refreshToken) {
+        tokenRevocationStore.revoke(accessToken.getTokenId(), accessToken.getExpiresAt());
+        if (StringUtils.hasText(refreshToken)) {
+            ParsedToken parsedRefreshToken = null;
+            try {
+                parsedRefreshToken = jwtUtil.parseToken(refreshToken);
+            } catch (RuntimeException e) {
+                //刷新令牌本身已无效，无需撤销
+                log.debug("退出登录时忽略无效的刷新令牌: {}", e.getMessage());
+            }
+            //只撤销属于当前用户的刷新令牌
+            if (parsedRefreshToken != null && parsedRefreshToken.getTokenType() == TokenType.Refresh
+                    && Objects.equals(parsedRefreshToken.getUserId(), accessToken.getUserId())) {
+                tokenRefreshService.revoke(parsedRefreshToken);
+            }
+        }
+        return CommonResponse.success("退出登录成功");
+    }
+
     @GetMapping ("/version")
     public CommonResponse version() {
         Map<String, String> map = new HashMap<>();
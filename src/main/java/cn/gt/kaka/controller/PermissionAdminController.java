@@ -0,0 +1,57 @@
+package cn.gt.kaka.controller;
+
+import cn.gt.kaka.cache.RolePermissionCache;
+import cn.gt.kaka.util.CommonResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 权限缓存管理接口
+ *
+ * 角色和权限在数据库中修改，修改后调用本接口使当前节点的权限缓存立即失效，需要 permission:invalidate 权限
+ * 1. 修改角色的权限后，使该角色的权限代码失效，其他角色的缓存不受影响
+ * 2. 修改用户的角色后，使该用户的角色列表失效
+ *
+ * 失效只作用于处理请求的节点，其他节点在 permission.cache.ttl 秒内生效
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@RestController
+public class PermissionAdminController {
+
+    @Autowired
+    private RolePermissionCache rolePermissionCache;
+
+    /**
+     * 使角色的权限缓存失效
+     *
+     * @param roleId 角色ID
+     * @return 成功响应
+     */
+    @PostMapping("/admin/roles/{roleId}/permissions/invalidate")
+    @PreAuthorize("hasAuthority('permission:invalidate')")
+    public CommonResponse<Void> invalidateRole(@PathVariable String roleId) {
+        rolePermissionCache.invalidateRole(roleId);
+        return CommonResponse.success();
+    }
+
+    /**
+     * 使用户的角色缓存失效
+     *
+     * @param userId 用户ID
+     * @return 成功响应
+     */
+    @PostMapping("/admin/users/{userId}/roles/invalidate")
+    @PreAuthorize("hasAuthority('permission:invalidate')")
+    public CommonResponse<Void> invalidateUser(@PathVariable String userId) {
+        rolePermissionCache.invalidateUser(userId);
+        return CommonResponse.success();
+    }
+}
@@ -0,0 +1,141 @@
+package cn.gt.kaka.controller;
+
+import cn.gt.kaka.dto.BulkIssueReport;
+import cn.gt.kaka.model.UserDto;
+import cn.gt.kaka.security.revocation.UserTokenGenerationStore;
+import cn.gt.kaka.service.TokenIntrospectionService;
+import cn.gt.kaka.util.CommonResponse;
+import cn.gt.kaka.util.JwtUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * 令牌管理接口
+ *
+ * 1. 供运维和内部服务为服务账号批量签发访问令牌，需要 token:issue 权限
+ * 2. 供网关和边车服务批量校验令牌，需要 token:introspect 权限
+ * 3. 使指定用户的全部令牌失效（修改密码、账号被盗等场景），需要 token:revoke 权限
+ *
+ * 批量接口的响应均为NDJSON流，结果按完成顺序逐行写出，大批量请求无需等待整批完成即可开始处理结果
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@RestController
+public class TokenAdminController {
+
+    /**
+     * 换行分隔的JSON（NDJSON）
+     */
+    public static final String NDJSON = "application/x-ndjson";
+
+    private static final byte[] NEW_LINE = {'\n'};
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private TokenIntrospectionService tokenIntrospectionService;
+
+    @Autowired
+    private UserTokenGenerationStore userTokenGenerationStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 单次批量签发的最大用户数
+     */
+    @Value("${jwt.bulk.maxBatchSize:10000}")
+    private int maxBatchSize;
+
+    /**
+     * 单次批量校验的最大令牌数
+     */
+    @Value("${jwt.introspect.maxBatchSize:10000}")
+    private int maxIntrospectBatchSize;
+
+    /**
+     * 批量签发访问令牌
+     *
+     * 响应为NDJSON流，每签发完成一个令牌立即写出一行结果（见 IssuedToken），
+     * 最后一行为汇总报告（见 BulkIssueReport），单个用户失败不影响其他用户
+     *
+     * @param users 用户列表，只使用其中的用户ID
+     * @return 流式响应
+     */
+    @PostMapping(value = "/admin/tokens/bulk", produces = NDJSON)
+    @PreAuthorize("hasAuthority('token:issue')")
+    public StreamingResponseBody issueTokens(@RequestBody List<UserDto> users) {
+        if (users.isEmpty() || users.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "用户数量必须在1-" + maxBatchSize + "之间");
+        }
+        return out -> {
+            BulkIssueReport report = jwtUtil.issueAccessTokens(users, result -> writeLine(out, result));
+            writeLine(out, report);
+        };
+    }
+
+    /**
+     * 批量校验令牌
+     *
+     * 校验规则与请求认证完全一致，响应为NDJSON流，每个令牌一行结果（见 IntrospectionResult）
+     *
+     * @param tokens 令牌列表，不含 Bearer 前缀
+     * @return 流式响应
+     */
+    @PostMapping(value = "/tokens/introspect", produces = NDJSON)
+    @PreAuthorize("hasAuthority('token:introspect')")
+    public StreamingResponseBody introspectTokens(@RequestBody List<String> tokens) {
+        if (tokens.isEmpty() || tokens.size() > maxIntrospectBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "令牌数量必须在1-" + maxIntrospectBatchSize + "之间");
+        }
+        return out -> tokenIntrospectionService.introspect(tokens, result -> writeLine(out, result));
+    }
+
+    /**
+     * 使指定用户的全部令牌失效
+     *
+     * 递增用户的令牌代数，此前签发的访问令牌和刷新令牌都将无法通过认证，用户需要重新登录
+     *
+     * @param userId 用户ID
+     * @return 递增后的代数
+     */
+    @PostMapping("/admin/users/{userId}/tokens/revoke")
+    @PreAuthorize("hasAuthority('token:revoke')")
+    public CommonResponse<Integer> revokeUserTokens(@PathVariable String userId) {
+        int generation = userTokenGenerationStore.bump(userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "该用户不存在"));
+        return CommonResponse.success(generation);
+    }
+
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(value));
+            out.write(NEW_LINE);
+            out.flush();
+        } catch (IOException e) {
+            // 客户端断开时终止批次，已提交的任务会在线程池中自然结束
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package cn.gt.kaka.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 已使用刷新令牌的数据访问对象
+ *
+ * 刷新令牌一次性使用，使用记录保存在 t_refresh_token_use 表中，以令牌ID（jti）为主键，
+ * 所有节点共享同一张表：同一个刷新令牌无论在哪个节点上第二次出现，插入都会因主键冲突失败，
+ * 由数据库保证并发的两次刷新只有一次成功
+ *
+ * 记录保留到刷新令牌过期，过期后令牌本身已无法通过校验，记录可以删除
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@Repository
+public class RefreshTokenDao {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 记录刷新令牌已被使用
+     *
+     * @param tokenId 刷新令牌ID（jti）
+     * @param userId 用户ID
+     * @param expiresAt 刷新令牌过期时间（毫秒时间戳）
+     * @return true表示本次调用首次记录该令牌，false表示该令牌已被使用过
+     * @throws RuntimeException 当数据库访问出现异常时抛出
+     */
+    public boolean markUsed(String tokenId, String userId, long expiresAt) {
+        final String sql = "INSERT INTO t_refresh_token_use (token_id, user_id, expires_at) VALUES (?, ?, ?)";
+
+        try {
+            return jdbcTemplate.update(sql, tokenId, userId, expiresAt) > 0;
+        } catch (DuplicateKeyException e) {
+            log.debug("刷新令牌已被使用: jti={}, userId={}", tokenId, userId);
+            return false;
+        } catch (Exception e) {
+            log.error("记录刷新令牌使用时发生异常: jti={}, userId={}, error={}", tokenId, userId, e.getMessage(), e);
+            throw new RuntimeException("记录刷新令牌使用失败", e);
+        }
+    }
+
+    /**
+     * 删除已过期刷新令牌的使用记录
+     *
+     * @param now 当前时间（毫秒时间戳）
+     * @return 删除的记录数
+     * @throws RuntimeException 当数据库访问出现异常时抛出
+     */
+    public int deleteExpired(long now) {
+        final String sql = "DELETE FROM t_refresh_token_use WHERE expires_at < ?";
+
+        try {
+            return jdbcTemplate.update(sql, now);
+        } catch (Exception e) {
+            log.error("删除过期的刷新令牌使用记录时发生异常: error={}", e.getMessage(), e);
+            throw new RuntimeException("删除过期的刷新令牌使用记录失败", e);
+        }
+    }
+}
@@ -1,18 +1,23 @@
 package cn.gt.kaka.dao;
 
-import cn.gt.kaka.model.PermissionDto;
 import cn.gt.kaka.model.UserDto;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.CollectionUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.OptionalInt;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
 
 /**
  * 用户数据访问对象
@@ -24,6 +29,10 @@ import java.util.stream.Collectors;
  * 1. 根据用户名和密码查询用户信息
  * 2. 根据用户名查询用户信息
  * 3. 根据用户ID查询用户权限列表
+ * 3.1 一次查询同时加载用户信息和权限代码（登录使用）
+ * 3.2 分别查询用户的角色和角色的权限代码（两级权限缓存使用）
+ * 4. 查询全部权限代码（权限目录）
+ * 5. 读取和递增用户的令牌代数
  * 
  * @author 系统管理员
  * @version 2.0
@@ -33,6 +42,20 @@ import java.util.stream.Collectors;
 @Repository
 public class UserDao {
 
+    /**
+     * 用户查询选取的列，顺序与 {@link #USER_ROW_MAPPER} 读取的列下标一一对应
+     * 包级可见，供 UserDaoTest 与 BeanPropertyRowMapper 的映射结果比对
+     */
+    static final String USER_COLUMNS = "id, username, password, fullname, mobile";
+
+    /**
+     * 用户行映射器，按列下标读取，无状态，所有查询共用
+     * 
+     * BeanPropertyRowMapper 每次创建都要内省属性，并在每行按列名查找属性，这里直接按下标构造对象
+     */
+    static final RowMapper<UserDto> USER_ROW_MAPPER = (rs, rowNum) -> new UserDto(
+            rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5));
+
     /**
      * Spring JDBC模板，用于执行数据库操作
      */
@@ -53,7 +76,7 @@ public class UserDao {
     public Optional<UserDto> findByUsernameAndPassword(String username, String password) {
         log.debug("根据用户名和密码查询用户: username={}", username);
         
-        final String sql = "SELECT id, username, password, fullname, mobile " +
+        final String sql = "SELECT " + USER_COLUMNS + " " +
                           "FROM t_user " +
                           "WHERE username = ? AND password = ?";
         
@@ -61,7 +84,7 @@ public class UserDao {
             List<UserDto> users = jdbcTemplate.query(
                 sql, 
                 new Object[]{username, password}, 
-                new BeanPropertyRowMapper<>(UserDto.class)
+                USER_ROW_MAPPER
             );
             
             if (CollectionUtils.isEmpty(users)) {
@@ -99,7 +122,7 @@ public class UserDao {
     public Optional<UserDto> findByUsername(String username) {
         log.debug("根据用户名查询用户: username={}", username);
         
-        final String sql = "SELECT id, username, password, fullname, mobile " +
+        final String sql = "SELECT " + USER_COLUMNS + " " +
                           "FROM t_user " +
                           "WHERE username = ?";
         
@@ -107,7 +130,7 @@ public class UserDao {
             List<UserDto> users = jdbcTemplate.query(
                 sql, 
                 new Object[]{username}, 
-                new BeanPropertyRowMapper<>(UserDto.class)
+                USER_ROW_MAPPER
             );
             
             if (CollectionUtils.isEmpty(users)) {
@@ -132,6 +155,61 @@ public class UserDao {
         }
     }
 
+    /**
+     * 根据用户名查询用户信息及其权限代码
+     * 
+     * 登录时既需要密码哈希又需要权限代码，用一次连接查询代替 findByUsername + findPermissionsByUserId 两次往返，
+     * 只选取用到的列；用户没有角色或角色没有权限时仍返回一行，权限列为NULL
+     * 依赖 t_user(username)、t_user_role(user_id)、t_role_permission(role_id) 上的索引，见 db/indexes.sql
+     * 
+     * @param username 用户名，用户的唯一登录标识
+     * @return 返回用户信息，permissions 为去重后的权限代码；没有找到时返回Optional.empty()
+     * @throws RuntimeException 当数据库访问出现异常时抛出
+     */
+    public Optional<UserDto> findWithPermissionsByUsername(String username) {
+        log.debug("根据用户名查询用户及权限: username={}", username);
+
+        // 前5列与 USER_COLUMNS 顺序一致，由 USER_ROW_MAPPER 读取
+        final String sql = "SELECT u.id, u.username, u.password, u.fullname, u.mobile, p.code " +
+                          "FROM t_user u " +
+                          "LEFT JOIN t_user_role ur ON ur.user_id = u.id " +
+                          "LEFT JOIN t_role_permission rp ON rp.role_id = ur.role_id " +
+                          "LEFT JOIN t_permission p ON p.id = rp.permission_id " +
+                          "WHERE u.username = ?";
+
+        try {
+            UserDto[] found = new UserDto[1];
+            // 多个角色可能包含同一权限，按首次出现的顺序去重
+            LinkedHashSet<String> codes = new LinkedHashSet<>();
+            jdbcTemplate.query(sql, rs -> {
+                if (found[0] == null) {
+                    found[0] = USER_ROW_MAPPER.mapRow(rs, 0);
+                } else if (!found[0].getId().equals(rs.getString(1))) {
+                    // 其他用户的行，只在用户名重复的异常数据下出现
+                    return;
+                }
+                String code = rs.getString(6);
+                if (code != null) {
+                    codes.add(code);
+                }
+            }, username);
+
+            UserDto user = found[0];
+            if (user == null) {
+                log.debug("未找到用户: username={}", username);
+                return Optional.empty();
+            }
+            user.setPermissions(new ArrayList<>(codes));
+            log.debug("成功查询到用户及权限: userId={}, username={}, permissionCount={}",
+                     user.getId(), user.getUsername(), codes.size());
+            return Optional.of(user);
+
+        } catch (Exception e) {
+            log.error("查询用户及权限时发生异常: username={}, error={}", username, e.getMessage(), e);
+            throw new RuntimeException("查询用户信息失败", e);
+        }
+    }
+
     /**
      * 根据用户ID查询用户的权限列表
      * 
@@ -151,7 +229,8 @@ public class UserDao {
     public List<String> findPermissionsByUserId(String userId) {
         log.debug("查询用户权限: userId={}", userId);
         
-        final String sql = "SELECT p.* FROM t_permission p " +
+        // 只用到权限代码，不选取其他列
+        final String sql = "SELECT p.code FROM t_permission p " +
                           "WHERE p.id IN (" +
                           "    SELECT rp.permission_id FROM t_role_permission rp " +
                           "    WHERE rp.role_id IN (" +
@@ -161,15 +240,7 @@ public class UserDao {
                           ")";
         
         try {
-            List<PermissionDto> permissions = jdbcTemplate.query(
-                sql, 
-                new Object[]{userId}, 
-                new BeanPropertyRowMapper<>(PermissionDto.class)
-            );
-            
-            List<String> permissionCodes = permissions.stream()
-                    .map(PermissionDto::getCode)
-                    .collect(Collectors.toList());
+            List<String> permissionCodes = jdbcTemplate.queryForList(sql, String.class, userId);
             
             log.debug("用户权限查询完成: userId={}, permissionCount={}, permissions={}", 
                      userId, permissionCodes.size(), permissionCodes);
@@ -182,6 +253,145 @@ public class UserDao {
         }
     }
 
+    /**
+     * 根据用户ID查询用户的角色ID
+     * 
+     * @param userId 用户ID
+     * @return 角色ID列表，用户没有角色时返回空列表
+     * @throws RuntimeException 当数据库访问出现异常时抛出
+     */
+    public List<String> findRoleIdsByUserId(String userId) {
+        final String sql = "SELECT role_id FROM t_user_role WHERE user_id = ?";
+
+        try {
+            return jdbcTemplate.queryForList(sql, String.class, userId);
+        } catch (Exception e) {
+            log.error("查询用户角色时发生异常: userId={}, error={}", userId, e.getMessage(), e);
+            throw new RuntimeException("查询用户角色失败", e);
+        }
+    }
+
+    /**
+     * 查询一组角色的权限代码
+     * 
+     * 逐行回调，参数为角色ID和权限代码；没有权限的角色不回调
+     * 
+     * @param roleIds 角色ID
+     * @param consumer 回调
+     * @throws RuntimeException 当数据库访问出现异常时抛出
+     */
+    public void forEachRolePermission(Collection<String> roleIds, BiConsumer<String, String> consumer) {
+        if (roleIds.isEmpty()) {
+            return;
+        }
+        final String sql = "SELECT rp.role_id, p.code FROM t_role_permission rp " +
+                          "JOIN t_permission p ON p.id = rp.permission_id " +
+                          "WHERE rp.role_id IN (" + String.join(",", Collections.nCopies(roleIds.size(), "?")) + ")";
+
+        try {
+            jdbcTemplate.query(sql, rs -> {
+                consumer.accept(rs.getString(1), rs.getString(2));
+            }, roleIds.toArray());
+        } catch (Exception e) {
+            log.error("查询角色权限时发生异常: roleIds={}, error={}", roleIds, e.getMessage(), e);
+            throw new RuntimeException("查询角色权限失败", e);
+        }
+    }
+
+    /**
+     * 查询全部权限代码
+     * 
+     * 按权限ID排序，结果顺序即权限目录中的下标顺序，各节点读到相同的权限表时顺序一致
+     * 
+     * @return 全部权限代码
+     * @throws RuntimeException 当数据库访问出现异常时抛出
+     */
+    public List<String> findAllPermissionCodes() {
+        final String sql = "SELECT code FROM t_permission ORDER BY id";
+
+        try {
+            return jdbcTemplate.queryForList(sql, String.class);
+        } catch (Exception e) {
+            log.error("查询权限目录时发生异常: error={}", e.getMessage(), e);
+            throw new RuntimeException("查询权限目录失败", e);
+        }
+    }
+
+    /**
+     * 遍历所有令牌代数大于0的用户
+     * 
+     * 逐行回调，不在内存中构建结果列表，用户量很大时也只占用常量内存
+     * 代数为0（从未批量失效过令牌）的用户不返回，调用方将缺失视为0
+     * 
+     * @param consumer 回调，参数为用户ID和令牌代数
+     * @throws RuntimeException 当数据库访问出现异常时抛出
+     */
+    public void forEachTokenGeneration(ObjIntConsumer<String> consumer) {
+        final String sql = "SELECT id, token_generation FROM t_user WHERE token_generation > 0";
+
+        try {
+            jdbcTemplate.query(sql, rs -> {
+                consumer.accept(rs.getString(1), rs.getInt(2));
+            });
+        } catch (Exception e) {
+            log.error("查询用户令牌代数时发生异常: error={}", e.getMessage(), e);
+            throw new RuntimeException("查询用户令牌代数失败", e);
+        }
+    }
+
+    /**
+     * 递增用户的令牌代数
+     * 
+     * 递增后，该用户所有代数较小的令牌都将失效
+     * 
+     * @param userId 用户ID
+     * @return 递增后的代数，用户不存在时返回empty
+     * @throws RuntimeException 当数据库访问出现异常时抛出
+     */
+    public OptionalInt incrementTokenGeneration(String userId) {
+        log.debug("递增用户令牌代数: userId={}", userId);
+
+        final String updateSql = "UPDATE t_user SET token_generation = token_generation + 1 WHERE id = ?";
+        final String selectSql = "SELECT token_generation FROM t_user WHERE id = ?";
+
+        try {
+            if (jdbcTemplate.update(updateSql, userId) == 0) {
+                log.debug("未找到用户: userId={}", userId);
+                return OptionalInt.empty();
+            }
+            Integer generation = jdbcTemplate.queryForObject(selectSql, Integer.class, userId);
+            return generation == null ? OptionalInt.empty() : OptionalInt.of(generation);
+        } catch (EmptyResultDataAccessException e) {
+            log.debug("未找到用户: userId={}", userId);
+            return OptionalInt.empty();
+        } catch (Exception e) {
+            log.error("递增用户令牌代数时发生异常: userId={}, error={}", userId, e.getMessage(), e);
+            throw new RuntimeException("递增用户令牌代数失败", e);
+        }
+    }
+
+    /**
+     * 替换用户的密码哈希
+     * 
+     * 只有数据库中的哈希仍是 expectedPassword 时才更新，避免覆盖并发修改的密码
+     * 
+     * @param userId 用户ID
+     * @param expectedPassword 当前的密码哈希
+     * @param newPassword 新密码哈希
+     * @return true表示已更新
+     * @throws RuntimeException 当数据库访问出现异常时抛出
+     */
+    public boolean updatePassword(String userId, String expectedPassword, String newPassword) {
+        final String sql = "UPDATE t_user SET password = ? WHERE id = ? AND password = ?";
+
+        try {
+            return jdbcTemplate.update(sql, newPassword, userId, expectedPassword) > 0;
+        } catch (Exception e) {
+            log.error("更新用户密码哈希时发生异常: userId={}, error={}", userId, e.getMessage(), e);
+            throw new RuntimeException("更新用户密码哈希失败", e);
+        }
+    }
+
     // ======================= 兼容性方法 =======================
     // 为了保持向后兼容性，保留原有的方法名
 
@@ -0,0 +1,52 @@
+package cn.gt.kaka.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量签发汇总
+ *
+ * 报告格式示例：
+ * {"requested":1000,"issued":998,"failed":2,"elapsed_millis":85,"tokens_per_second":11741.2}
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkIssueReport {
+
+    /**
+     * 请求签发的用户数
+     */
+    @JsonProperty("requested")
+    private int requested;
+
+    /**
+     * 签发成功数
+     */
+    @JsonProperty("issued")
+    private int issued;
+
+    /**
+     * 签发失败数
+     */
+    @JsonProperty("failed")
+    private int failed;
+
+    /**
+     * 总耗时（毫秒）
+     */
+    @JsonProperty("elapsed_millis")
+    private long elapsedMillis;
+
+    /**
+     * 吞吐量（每秒签发令牌数）
+     */
+    @JsonProperty("tokens_per_second")
+    private double tokensPerSecond;
+}
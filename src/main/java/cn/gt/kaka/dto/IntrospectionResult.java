@@ -0,0 +1,64 @@
+package cn.gt.kaka.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 令牌自省结果
+ *
+ * 字段命名参考RFC 7662，active表示令牌当前是否可用于访问受保护资源，
+ * index 对应请求列表中的位置，结果按完成顺序返回，调用方据此对应请求
+ *
+ * 结果格式示例：
+ * {"index":0,"active":true,"user_id":"1","token_type":"Access","expires_at":1700000000000}
+ * {"index":1,"active":false,"error":"JWT令牌已过期"}
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IntrospectionResult {
+
+    /**
+     * 请求列表中的位置
+     */
+    @JsonProperty("index")
+    private int index;
+
+    /**
+     * 令牌是否有效
+     */
+    @JsonProperty("active")
+    private boolean active;
+
+    /**
+     * 用户ID，令牌无效时为null
+     */
+    @JsonProperty("user_id")
+    private String userId;
+
+    /**
+     * 令牌类型，令牌无效时为null
+     */
+    @JsonProperty("token_type")
+    private TokenType tokenType;
+
+    /**
+     * 过期时间（毫秒时间戳），令牌无效或没有过期时间时为null
+     */
+    @JsonProperty("expires_at")
+    private Long expiresAt;
+
+    /**
+     * 无效原因，令牌有效时为null
+     */
+    @JsonProperty("error")
+    private String error;
+}
@@ -0,0 +1,67 @@
+package cn.gt.kaka.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量签发中单个用户的签发结果
+ *
+ * 签发成功时包含令牌和过期时间，失败时只包含错误信息，
+ * index 对应请求列表中的位置，结果按完成顺序返回，调用方据此对应请求
+ *
+ * 结果格式示例：
+ * {"index":0,"user_id":"svc-001","token":"eyJhbGciOiJIUzI1NiJ9...","expires_at":1700000000000}
+ * {"index":1,"user_id":null,"error":"用户ID不能为空"}
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IssuedToken {
+
+    /**
+     * 请求列表中的位置
+     */
+    @JsonProperty("index")
+    private int index;
+
+    /**
+     * 用户ID
+     */
+    @JsonProperty("user_id")
+    private String userId;
+
+    /**
+     * 访问令牌，签发失败时为null
+     */
+    @JsonProperty("token")
+    private String token;
+
+    /**
+     * 过期时间（毫秒时间戳），签发失败时为null
+     */
+    @JsonProperty("expires_at")
+    private Long expiresAt;
+
+    /**
+     * 失败原因，签发成功时为null
+     */
+    @JsonProperty("error")
+    private String error;
+
+    /**
+     * 是否签发成功
+     *
+     * @return true表示签发成功
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
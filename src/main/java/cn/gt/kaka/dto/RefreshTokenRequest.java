@@ -0,0 +1,36 @@
+package cn.gt.kaka.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+
+/**
+ * 刷新令牌请求数据传输对象
+ * 
+ * 请求格式示例：
+ * {
+ *   "refresh_token": "eyJhbGciOiJIUzI1NiJ9..."
+ * }
+ * 
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshTokenRequest {
+
+    /**
+     * 刷新令牌
+     * 
+     * 登录或上一次刷新时返回的刷新令牌，每个刷新令牌只能使用一次
+     * 对应JSON请求中的"refresh_token"字段
+     */
+    @JsonProperty(value = "refresh_token", required = true)
+    @NotBlank(message = "刷新令牌不能为空")
+    private String refreshToken;
+}
@@ -0,0 +1,31 @@
+package cn.gt.kaka.exception;
+
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * JWT令牌已撤销异常
+ * 
+ * 令牌签名和有效期都正常，但已在过期前被显式撤销（例如用户退出登录）时抛出此异常
+ * 继承自Spring Security的AuthenticationException，
+ * 确保与Spring Security的认证流程正确集成
+ * 
+ * 处理建议：
+ * - 要求用户重新登录
+ * 
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public class JwtRevokedTokenException extends AuthenticationException {
+
+    private static final long serialVersionUID = 3184270965183462573L;
+
+    /**
+     * 构造一个新的JWT令牌已撤销异常
+     * 
+     * @param message 异常详细信息
+     */
+    public JwtRevokedTokenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,45 @@
+package cn.gt.kaka.exception;
+
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * 登录过载异常
+ * 
+ * 密码校验线程池已满或排队超时时抛出此异常，登录请求立即失败，
+ * 由登录失败处理器返回503和Retry-After响应头，客户端应在建议的时间后重试
+ * 继承自Spring Security的AuthenticationException，
+ * 确保与Spring Security的认证流程正确集成
+ * 
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public class LoginOverloadedException extends AuthenticationException {
+
+    private static final long serialVersionUID = -6529436181843160172L;
+
+    /**
+     * 建议客户端重试的等待时间（秒）
+     */
+    private final long retryAfterSeconds;
+
+    /**
+     * 构造一个新的登录过载异常
+     * 
+     * @param message 异常详细信息
+     * @param retryAfterSeconds 建议客户端重试的等待时间（秒）
+     */
+    public LoginOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * 获取建议客户端重试的等待时间
+     * 
+     * @return 等待时间（秒）
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,59 @@
+package cn.gt.kaka.filter;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking reader for the login request body.
+ * Reads only while the container reports data is ready, so no thread
+ * waits on a slow client; hands the complete body to the callback.
+ * Bodies larger than maxSize fail the read instead of growing the buffer.
+ *
+ * @version 2.1
+ */
+class LoginBodyReader implements ReadListener {
+
+    private final ServletInputStream input;
+
+    private final int maxSize;
+
+    private final Consumer<byte[]> onBody;
+
+    private final Consumer<Throwable> onFailure;
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+
+    private final byte[] buffer = new byte[1024];
+
+    LoginBodyReader(ServletInputStream input, int maxSize, Consumer<byte[]> onBody, Consumer<Throwable> onFailure) {
+        this.input = input;
+        this.maxSize = maxSize;
+        this.onBody = onBody;
+        this.onFailure = onFailure;
+    }
+
+    @Override
+    public void onDataAvailable() throws IOException {
+        int read;
+        while (input.isReady() && (read = input.read(buffer)) != -1) {
+            if (body.size() + read > maxSize) {
+                // the container reports this through onError
+                throw new IOException("登录请求体超过 " + maxSize + " 字节");
+            }
+            body.write(buffer, 0, read);
+        }
+    }
+
+    @Override
+    public void onAllDataRead() {
+        onBody.accept(body.toByteArray());
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        onFailure.accept(t);
+    }
+}
@@ -0,0 +1,197 @@
+package cn.gt.kaka.filter;
+
+import cn.gt.kaka.dto.LoginRequest;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+import javax.validation.constraints.Size;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming parser for the login request body.
+ * Reads raw bytes through a hard size cap and picks out only the username
+ * and password fields, stopping as soon as both are read; other fields are
+ * skipped without data-binding. The @Size limits declared on LoginRequest
+ * are checked on the token length before any String is built, so oversized,
+ * malformed or out-of-range bodies are rejected early.
+ *
+ * @version 2.1
+ */
+final class LoginRequestParser {
+
+    private static final String USERNAME = "username";
+
+    private static final String PASSWORD = "password";
+
+    private static final Size USERNAME_SIZE = sizeOf(USERNAME);
+
+    private static final Size PASSWORD_SIZE = sizeOf(PASSWORD);
+
+    private final JsonFactory jsonFactory;
+
+    private final int maxSize;
+
+    LoginRequestParser(JsonFactory jsonFactory, int maxSize) {
+        this.jsonFactory = jsonFactory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Parse a body that has already been read, e.g. by LoginBodyReader.
+     */
+    LoginRequest parse(byte[] body) {
+        if (body.length > maxSize) {
+            throw tooLarge();
+        }
+        try {
+            return read(jsonFactory.createParser(body));
+        } catch (IOException e) {
+            throw new AuthenticationServiceException("登录请求格式错误", e);
+        }
+    }
+
+    /**
+     * Parse straight from the request stream, reading no more than maxSize bytes.
+     */
+    LoginRequest parse(InputStream input) {
+        try {
+            return read(jsonFactory.createParser(new CappedInputStream(input, maxSize)));
+        } catch (BodyTooLargeException e) {
+            throw tooLarge();
+        } catch (JsonProcessingException e) {
+            throw new AuthenticationServiceException("登录请求格式错误", e);
+        } catch (IOException e) {
+            throw new AuthenticationServiceException("读取登录请求失败: " + e.getMessage(), e);
+        }
+    }
+
+    private static LoginRequest read(JsonParser parser) throws IOException {
+        try (JsonParser p = parser) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new AuthenticationServiceException("登录请求格式错误");
+            }
+            String username = null;
+            String password = null;
+            boolean hasUsername = false;
+            boolean hasPassword = false;
+            JsonToken token;
+            while ((token = p.nextToken()) == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                JsonToken value = p.nextToken();
+                if (!hasUsername && USERNAME.equals(field)) {
+                    username = text(p, value, USERNAME_SIZE);
+                    hasUsername = true;
+                } else if (!hasPassword && PASSWORD.equals(field)) {
+                    password = text(p, value, PASSWORD_SIZE);
+                    hasPassword = true;
+                } else {
+                    p.skipChildren();
+                }
+                if (hasUsername && hasPassword) {
+                    // the rest of the body is never read
+                    return new LoginRequest(username, password);
+                }
+            }
+            if (token != JsonToken.END_OBJECT) {
+                throw new AuthenticationServiceException("登录请求格式错误");
+            }
+            return new LoginRequest(username, password);
+        }
+    }
+
+    private static String text(JsonParser p, JsonToken value, Size size) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value != JsonToken.VALUE_STRING) {
+            throw new AuthenticationServiceException("登录请求格式错误: " + p.getCurrentName() + " 必须是字符串");
+        }
+        int length = p.getTextLength();
+        if (size != null && (length < size.min() || length > size.max())) {
+            throw new AuthenticationServiceException(size.message());
+        }
+        return p.getText();
+    }
+
+    private AuthenticationServiceException tooLarge() {
+        return new AuthenticationServiceException("登录请求体超过 " + maxSize + " 字节");
+    }
+
+    private static Size sizeOf(String field) {
+        try {
+            return LoginRequest.class.getDeclaredField(field).getAnnotation(Size.class);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("LoginRequest缺少字段: " + field, e);
+        }
+    }
+
+    /**
+     * Fails the read once more than maxSize bytes have been consumed.
+     */
+    private static final class CappedInputStream extends FilterInputStream {
+
+        private final int maxSize;
+
+        private int count;
+
+        CappedInputStream(InputStream in, int maxSize) {
+            super(in);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            // never ask for more than one byte past the cap
+            int n = super.read(b, off, Math.min(len, maxSize - count + 1));
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, maxSize - count + 1L));
+            count((int) skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(int n) throws BodyTooLargeException {
+            count += n;
+            if (count > maxSize) {
+                throw new BodyTooLargeException();
+            }
+        }
+    }
+
+    private static final class BodyTooLargeException extends IOException {
+
+        BodyTooLargeException() {
+            super("body too large");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package cn.gt.kaka.filter;
 
+import cn.gt.kaka.security.jwt.ParsedToken;
+import cn.gt.kaka.service.TokenRenewalService;
 import cn.gt.kaka.util.Constants;
 import cn.gt.kaka.util.JwtAuthenticationToken;
 import lombok.SneakyThrows;
@@ -39,6 +41,17 @@ public class PostAuthenticationFilter extends BasicAuthenticationFilter {
 
     private RequestMatcher requiresAuthenticationRequestMatcher;
 
+    // Issues a new access token in a response header when the current one is about to expire.
+    private TokenRenewalService tokenRenewalService;
+
+    public TokenRenewalService getTokenRenewalService() {
+        return tokenRenewalService;
+    }
+
+    public void setTokenRenewalService(TokenRenewalService tokenRenewalService) {
+        this.tokenRenewalService = tokenRenewalService;
+    }
+
     public RequestMatcher getRequiresAuthenticationRequestMatcher() {
         return requiresAuthenticationRequestMatcher;
     }
@@ -72,6 +85,7 @@ public class PostAuthenticationFilter extends BasicAuthenticationFilter {
             JwtAuthenticationToken authRequest  = new JwtAuthenticationToken(tokenPayload);
             Authentication authResult = getAuthenticationManager().authenticate(authRequest);
             onSuccessfulAuthentication(request, response, authResult);
+            renewIfExpiring(response, tokenPayload, authResult);
         }
         catch (AuthenticationException failed) {
             SecurityContextHolder.clearContext();
@@ -111,6 +125,7 @@ public class PostAuthenticationFilter extends BasicAuthenticationFilter {
             SecurityContext context = SecurityContextHolder.createEmptyContext();
             context.setAuthentication(authResult);
             SecurityContextHolder.setContext(context);
+            exposeParsedToken(request, authResult);
         }
 
     }
@@ -131,6 +146,7 @@ public class PostAuthenticationFilter extends BasicAuthenticationFilter {
             SecurityContext context = SecurityContextHolder.createEmptyContext();
             context.setAuthentication(authResult);
             SecurityContextHolder.setContext(context);
+            exposeParsedToken(request, authResult);
         }
         chain.doFilter(request, response);
     }
@@ -160,6 +176,43 @@ public class PostAuthenticationFilter extends BasicAuthenticationFilter {
         return tokenHeader.substring(Constants.HEADER_PREFIX.length(), tokenHeader.length());
     }
 
+    /**
+     *
+     * Attach the token parsed by the provider to the request,
+     * so downstream code reads it instead of parsing the token again.
+     * @param request
+     * @param authResult
+     */
+    private void exposeParsedToken(HttpServletRequest request, Authentication authResult) {
+        if (authResult.getDetails() instanceof ParsedToken) {
+            request.setAttribute(Constants.PARSED_TOKEN_ATTRIBUTE, authResult.getDetails());
+        }
+    }
+
+    /**
+     *
+     * Refresh-ahead: when the access token is within the configured window of its expiry,
+     * put a freshly minted token in the response header before the response is committed.
+     * Renewal failures never fail the request, the current token is still valid.
+     * @param response
+     * @param token
+     * @param authResult
+     */
+    private void renewIfExpiring(HttpServletResponse response, String token, Authentication authResult) {
+        if (tokenRenewalService == null || !tokenRenewalService.isEnabled()
+                || !(authResult.getDetails() instanceof ParsedToken)) {
+            return;
+        }
+        try {
+            String renewed = tokenRenewalService.renew(token, (ParsedToken) authResult.getDetails());
+            if (renewed != null) {
+                response.setHeader(Constants.RENEWED_TOKEN_HEADER_NAME, renewed);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Refresh-ahead renewal failed: {}", e.getMessage());
+        }
+    }
+
     private boolean requiresAuthentication(HttpServletRequest request,
                                              HttpServletResponse response) {
         return requiresAuthenticationRequestMatcher.matches(request);
@@ -2,29 +2,56 @@ package cn.gt.kaka.filter;
 
 import cn.gt.kaka.dto.LoginRequest;
 import cn.gt.kaka.exception.AuthMethodNotSupportedException;
+import cn.gt.kaka.exception.LoginOverloadedException;
+import cn.gt.kaka.security.throttle.LoginThrottle;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.AbstractAuthenticationProcessingFilter;
 import org.springframework.security.web.authentication.AuthenticationFailureHandler;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
 import org.springframework.util.StringUtils;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This filter will be  activated when client calls /login api.
  * with username and password  to authenticate.
+ * When a login executor is set, POST logins run asynchronously:
+ * the body is read with a non-blocking ReadListener, the user lookup and
+ * password check run on the login executor, and the response is finished
+ * there through the same success/failure handlers, so container threads
+ * are released for authenticated traffic.
+ * Login bodies are read through LoginRequestParser, which caps the size,
+ * binds only username and password and applies the LoginRequest @Size limits.
+ * When a login throttle is set, clients and usernames with too many recent
+ * failures are answered with 429 before the body is bound (client ip) or
+ * before the authentication manager is called (username). Only wrong
+ * passwords and unknown usernames count as failures; overload and database
+ * errors do not.
  * Created by vishal.domale
  * @version 0.0.1
  */
@@ -35,12 +62,30 @@ public class PreAuthenticationFilter extends AbstractAuthenticationProcessingFil
 
     private final ObjectMapper objectMapper;
 
+    // Runs async logins; null keeps the blocking mode.
+    private Executor loginExecutor;
+
+    // Async login timeout in milliseconds, answered with 503.
+    private long asyncTimeout = 5000L;
+
+    // Largest login body accepted, in bytes.
+    private int maxBodySize = 8192;
+
+    private LoginRequestParser loginRequestParser;
+
+    // Retry-After seconds sent when async logins are shed.
+    private long retryAfterSeconds = 2L;
+
+    // Failed-login throttle; null disables throttling.
+    private LoginThrottle loginThrottle;
+
     public PreAuthenticationFilter(String defaultProcessUrl, AuthenticationSuccessHandler successHandler,
                                    AuthenticationFailureHandler failureHandler, ObjectMapper mapper) {
         super(defaultProcessUrl);
         this.successHandler = successHandler;
         this.failureHandler = failureHandler;
         this.objectMapper = mapper;
+        this.loginRequestParser = new LoginRequestParser(mapper.getFactory(), maxBodySize);
     }
 
     public PreAuthenticationFilter(AuthenticationSuccessHandler successHandler,
@@ -49,6 +94,62 @@ public class PreAuthenticationFilter extends AbstractAuthenticationProcessingFil
         this.successHandler = successHandler;
         this.failureHandler = failureHandler;
         this.objectMapper = mapper;
+        this.loginRequestParser = new LoginRequestParser(mapper.getFactory(), maxBodySize);
+    }
+
+    public void setLoginExecutor(Executor loginExecutor) {
+        this.loginExecutor = loginExecutor;
+    }
+
+    public void setAsyncTimeout(long asyncTimeout) {
+        this.asyncTimeout = asyncTimeout;
+    }
+
+    public void setMaxBodySize(int maxBodySize) {
+        this.maxBodySize = maxBodySize;
+        this.loginRequestParser = new LoginRequestParser(objectMapper.getFactory(), maxBodySize);
+    }
+
+    public void setRetryAfterSeconds(long retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public void setLoginThrottle(LoginThrottle loginThrottle) {
+        this.loginThrottle = loginThrottle;
+    }
+
+    /**
+     *
+     * Start an async login for POST requests to the login url when enabled,
+     * everything else goes through the blocking flow of the parent class.
+     * @param req
+     * @param res
+     * @param chain
+     * @throws IOException
+     * @throws ServletException
+     */
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+        if (loginExecutor == null || !request.isAsyncSupported() || !requiresAuthentication(request, response)
+                || !HttpMethod.POST.name().equals(request.getMethod())) {
+            super.doFilter(req, res, chain);
+            return;
+        }
+
+        if (isThrottled(null, request)) {
+            loginThrottle.writeRejection(response);
+            return;
+        }
+
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(asyncTimeout);
+        AsyncLogin login = new AsyncLogin(asyncContext, request, response);
+        asyncContext.addListener(login);
+        ServletInputStream input = request.getInputStream();
+        input.setReadListener(new LoginBodyReader(input, maxBodySize, login::onBody, login::onReadError));
     }
 
     /**
@@ -69,7 +170,31 @@ public class PreAuthenticationFilter extends AbstractAuthenticationProcessingFil
             throw new AuthMethodNotSupportedException("Authentication method not supported");
         }
 
-        LoginRequest loginRequest = objectMapper.readValue(request.getReader(), LoginRequest.class);
+        if (isThrottled(null, request)) {
+            loginThrottle.writeRejection(response);
+            return null;
+        }
+        if (request.getContentLengthLong() > maxBodySize) {
+            throw new AuthenticationServiceException("登录请求体超过 " + maxBodySize + " 字节");
+        }
+        LoginRequest loginRequest = loginRequestParser.parse(request.getInputStream());
+        if (isThrottled(loginRequest.getUsername(), request)) {
+            // null tells the parent filter that the response is already written
+            loginThrottle.writeRejection(response);
+            return null;
+        }
+        return authenticate(loginRequest, request.getRemoteAddr());
+    }
+
+    /**
+     *
+     * Validate the login request and pass it to the authentication manager,
+     * recording the outcome with the login throttle.
+     * @param loginRequest
+     * @param remoteAddr
+     * @return
+     */
+    private Authentication authenticate(LoginRequest loginRequest, String remoteAddr) {
         String username = loginRequest.getUsername();
         String password = loginRequest.getPassword();
         if (StringUtils.isEmpty(username) || StringUtils.isEmpty(password)) {
@@ -77,7 +202,27 @@ public class PreAuthenticationFilter extends AbstractAuthenticationProcessingFil
         }
 
         UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken(username, password);
-        return this.getAuthenticationManager().authenticate(token);
+        if (loginThrottle == null) {
+            return this.getAuthenticationManager().authenticate(token);
+        }
+        Authentication authResult;
+        try {
+            authResult = this.getAuthenticationManager().authenticate(token);
+        } catch (BadCredentialsException | UsernameNotFoundException e) {
+            // only credential failures count; overload and database errors are not the client's guess
+            loginThrottle.recordFailure(username, remoteAddr);
+            throw e;
+        }
+        loginThrottle.recordSuccess(username);
+        return authResult;
+    }
+
+    private boolean isThrottled(String username, HttpServletRequest request) {
+        return isThrottled(username, request.getRemoteAddr());
+    }
+
+    private boolean isThrottled(String username, String remoteAddr) {
+        return loginThrottle != null && loginThrottle.isThrottled(username, remoteAddr);
     }
 
     /**
@@ -114,4 +259,164 @@ public class PreAuthenticationFilter extends AbstractAuthenticationProcessingFil
         failureHandler.onAuthenticationFailure(request, response, failed);
     }
 
+    /**
+     * Writes one async login response.
+     */
+    private interface ResponseWriter {
+        void write() throws IOException, ServletException;
+    }
+
+    /**
+     * State of one async login: PENDING, WRITING, DONE. Whoever moves the
+     * state from PENDING to WRITING owns the response, writes it and calls
+     * complete(); everybody else leaves the request and response alone.
+     * The owner is the login executor, a read callback, or the container
+     * listener on timeout or error (which completes without writing).
+     * A listener that loses the race waits until the owner has called
+     * complete() before returning, so the container never recycles the
+     * request or response while they are still in use. The executor reads
+     * nothing from the request before it owns the response; the client
+     * address is captured up front.
+     */
+    private final class AsyncLogin implements AsyncListener {
+
+        // no response written yet
+        private static final int PENDING = 0;
+
+        // the owner is writing the response, complete() not yet called
+        private static final int WRITING = 1;
+
+        // complete() has been called
+        private static final int DONE = 2;
+
+        private final AsyncContext asyncContext;
+
+        private final HttpServletRequest request;
+
+        private final HttpServletResponse response;
+
+        private final String remoteAddr;
+
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        // released once the owner has called complete()
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        AsyncLogin(AsyncContext asyncContext, HttpServletRequest request, HttpServletResponse response) {
+            this.asyncContext = asyncContext;
+            this.request = request;
+            this.response = response;
+            this.remoteAddr = request.getRemoteAddr();
+        }
+
+        void onBody(byte[] body) {
+            try {
+                loginExecutor.execute(() -> authenticate(body));
+            } catch (RejectedExecutionException e) {
+                logger.warn("Login executor is full, rejecting login");
+                fail(new LoginOverloadedException("登录请求过多，请稍后重试", retryAfterSeconds));
+            }
+        }
+
+        void onReadError(Throwable t) {
+            logger.debug("Failed to read login request: {}", t.getMessage());
+            fail(new AuthenticationServiceException("读取登录请求失败: " + t.getMessage(), t));
+        }
+
+        private void authenticate(byte[] body) {
+            if (state.get() != PENDING) {
+                // timed out while queued
+                return;
+            }
+            Authentication authResult;
+            try {
+                LoginRequest loginRequest = loginRequestParser.parse(body);
+                if (isThrottled(loginRequest.getUsername(), remoteAddr)) {
+                    respond("rejection", () -> loginThrottle.writeRejection(response));
+                    return;
+                }
+                authResult = PreAuthenticationFilter.this.authenticate(loginRequest, remoteAddr);
+            } catch (AuthenticationException e) {
+                fail(e);
+                return;
+            } catch (RuntimeException e) {
+                error(e);
+                return;
+            }
+            respond("success", () -> successHandler.onAuthenticationSuccess(request, response, authResult));
+        }
+
+        private void fail(AuthenticationException failed) {
+            respond("failure", () -> failureHandler.onAuthenticationFailure(request, response, failed));
+        }
+
+        // same outcome as an exception escaping the blocking filter
+        private void error(RuntimeException e) {
+            logger.error("Login failed with an unexpected error", e);
+            respond("error", () -> response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage()));
+        }
+
+        /**
+         * Write the response and complete the context if nobody else owns it yet.
+         * @return false when the response was already taken over
+         */
+        private boolean respond(String kind, ResponseWriter writer) {
+            if (!state.compareAndSet(PENDING, WRITING)) {
+                return false;
+            }
+            try {
+                writer.write();
+            } catch (IOException | ServletException | RuntimeException e) {
+                logger.error("Failed to write login {} response", kind, e);
+            } finally {
+                try {
+                    asyncContext.complete();
+                } finally {
+                    state.set(DONE);
+                    completed.countDown();
+                }
+            }
+            return true;
+        }
+
+        // called on a container thread that must not return before complete()
+        private void awaitCompletion() {
+            if (state.get() != WRITING) {
+                return;
+            }
+            try {
+                if (!completed.await(asyncTimeout, TimeUnit.MILLISECONDS)) {
+                    logger.warn("Async login response still being written after {} ms", asyncTimeout);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            logger.warn("Async login timed out after {} ms", asyncTimeout);
+            if (!respond("timeout", () -> failureHandler.onAuthenticationFailure(request, response,
+                    new LoginOverloadedException("登录处理超时，请稍后重试", retryAfterSeconds)))) {
+                awaitCompletion();
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            logger.debug("Async login error: {}", String.valueOf(event.getThrowable()));
+            // the connection is gone, complete without writing
+            if (!respond("error", () -> { })) {
+                awaitCompletion();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
 }
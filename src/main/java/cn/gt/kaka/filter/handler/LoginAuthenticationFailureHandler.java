@@ -2,11 +2,13 @@ package cn.gt.kaka.filter.handler;
 
 
 import cn.gt.kaka.exception.AuthMethodNotSupportedException;
+import cn.gt.kaka.exception.LoginOverloadedException;
 import cn.gt.kaka.util.CommonResponse;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.DisabledException;
@@ -52,7 +54,14 @@ public class LoginAuthenticationFailureHandler implements AuthenticationFailureH
     public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response,
                                         AuthenticationException e) throws IOException, ServletException {
         logger.info("Authentication failed!");
-        response.setStatus(HttpStatus.UNAUTHORIZED.value());
+        if (e instanceof LoginOverloadedException) {
+            // shed load: tell the client when to retry instead of reporting bad credentials
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER,
+                    String.valueOf(((LoginOverloadedException) e).getRetryAfterSeconds()));
+        } else {
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+        }
         response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
         String message = e.getMessage();
         Integer subCode  = 500;
@@ -65,6 +74,8 @@ public class LoginAuthenticationFailureHandler implements AuthenticationFailureH
         }else if(e instanceof DisabledException){
             subCode = 400;
             message = "用户已删除";
+        }else if(e instanceof LoginOverloadedException){
+            subCode = 503;
         }
         CommonResponse commonResponse =  CommonResponse.failure(subCode,"error code",message);
         mapper.writeValue(response.getWriter(), commonResponse);
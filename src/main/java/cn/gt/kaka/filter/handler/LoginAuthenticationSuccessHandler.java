@@ -4,6 +4,8 @@ package cn.gt.kaka.filter.handler;
 
 import cn.gt.kaka.dto.LoginResponse;
 import cn.gt.kaka.model.UserDto;
+import cn.gt.kaka.security.jwt.TokenFormat;
+import cn.gt.kaka.security.jwt.TokenPair;
 import cn.gt.kaka.util.CommonResponse;
 import cn.gt.kaka.util.JwtUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -54,9 +56,10 @@ public class LoginAuthenticationSuccessHandler implements AuthenticationSuccessH
     public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
                                         Authentication authentication) throws IOException, ServletException {
     	logger.debug("User successfully authenticated.");
+        TokenPair tokenPair = generateTokenPair(authentication, TokenFormat.fromHeader(request.getHeader(TokenFormat.HEADER_NAME)));
         LoginResponse loginResponse = new LoginResponse();
-        loginResponse.setToken(generateToken(authentication));
-        loginResponse.setRefreshToken(generateRefreshToken(authentication));
+        loginResponse.setToken(tokenPair.getAccessToken());
+        loginResponse.setRefreshToken(tokenPair.getRefreshToken());
         response.setStatus(HttpStatus.OK.value());
         response.setContentType(MediaType.APPLICATION_JSON_VALUE);
         CommonResponse<LoginResponse> loginResponseCommonResponse = CommonResponse.success(loginResponse);
@@ -65,6 +68,26 @@ public class LoginAuthenticationSuccessHandler implements AuthenticationSuccessH
     }
 
     
+    /**
+     * generate access token and refresh token in one pass
+     * @param authentication
+     * @return
+     */
+    protected TokenPair generateTokenPair(Authentication authentication) {
+        return generateTokenPair(authentication, TokenFormat.JWT);
+    }
+
+    /**
+     * generate access token and refresh token in the format requested by the client
+     * @param authentication
+     * @param format token format selected by the X-Token-Format request header
+     * @return
+     */
+    protected TokenPair generateTokenPair(Authentication authentication, TokenFormat format) {
+        UserDto userDto = (UserDto) authentication.getPrincipal();
+        return jwtUtil.generateTokenPair(userDto, format);
+    }
+
     /**
      * generate user token
      * @param authentication
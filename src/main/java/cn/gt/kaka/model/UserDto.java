@@ -1,9 +1,12 @@
 package cn.gt.kaka.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * 用户数据传输对象
  * 
@@ -50,6 +53,14 @@ public class UserDto {
      */
     private String mobile;
 
+    /**
+     * 用户权限代码
+     * 与用户信息在同一次查询中加载时才有值，为null表示未加载，需要时另行查询
+     * 不参与JSON序列化和反序列化，客户端不能通过请求体指定
+     */
+    @JsonIgnore
+    private List<String> permissions;
+
     /**
      * 仅包含用户ID的构造函数
      * 
@@ -60,4 +71,8 @@ public class UserDto {
     public UserDto(String id) {
         this.id = id;
     }
+
+    public UserDto(String id, String username, String password, String fullname, String mobile) {
+        this(id, username, password, fullname, mobile, null);
+    }
 }
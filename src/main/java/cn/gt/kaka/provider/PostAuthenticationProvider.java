@@ -1,24 +1,26 @@
 package cn.gt.kaka.provider;
 
 
+import cn.gt.kaka.cache.VerifiedTokenCache;
+import cn.gt.kaka.dto.TokenType;
+import cn.gt.kaka.exception.JwtRevokedTokenException;
 import cn.gt.kaka.model.UserDto;
-import cn.gt.kaka.util.Constants;
+import cn.gt.kaka.security.jwt.ParsedToken;
+import cn.gt.kaka.security.permission.PermissionCatalog;
+import cn.gt.kaka.security.revocation.TokenRevocationStore;
+import cn.gt.kaka.security.revocation.UserTokenGenerationStore;
 import cn.gt.kaka.util.JwtAuthenticationToken;
 import cn.gt.kaka.util.JwtUtil;
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jws;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.AuthorityUtils;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Collection;
 
 /**
  * This class support  JwtAuthenticationToken.class object.
@@ -36,6 +38,22 @@ public class PostAuthenticationProvider implements AuthenticationProvider {
     @Autowired
     protected JwtUtil jwtUtil;
 
+    // cache of already verified tokens, keyed by token digest.
+    @Autowired
+    protected VerifiedTokenCache verifiedTokenCache;
+
+    // revoked token ids, checked on every request including cache hits.
+    @Autowired
+    protected TokenRevocationStore tokenRevocationStore;
+
+    // per-user token generations, bumped to invalidate all tokens of one user.
+    @Autowired
+    protected UserTokenGenerationStore userTokenGenerationStore;
+
+    // builds authorities from the permission bitset in the token, falls back to the database.
+    @Autowired
+    protected PermissionCatalog permissionCatalog;
+
     @Override
     public boolean supports(Class<?> authentication) {
         return (JwtAuthenticationToken.class.equals(authentication));
@@ -43,7 +61,9 @@ public class PostAuthenticationProvider implements AuthenticationProvider {
 
     /**
      * This method will parsing jwt token
-     * and validate that token
+     * and validate that token.
+     * The parsed token is kept as authentication details
+     * so the filter can expose it to the rest of the request.
      *
      * @param authentication
      * @return
@@ -51,41 +71,52 @@ public class PostAuthenticationProvider implements AuthenticationProvider {
     @Override
     public Authentication authenticate(Authentication authentication) {
         JwtAuthenticationToken authToken = (JwtAuthenticationToken) authentication;
-        Claims claims = validateAccessToken(authToken.getToken());
+        ParsedToken parsedToken = validateAccessToken(authToken.getToken());
         UserDto userDto;
         // user token
-        String userId = getUseId(claims);
-        logger.debug("User: {} has authorities: {}", userId);
+        String userId = parsedToken.getUserId();
+        Collection<GrantedAuthority> authorities = permissionCatalog.authoritiesOf(parsedToken);
+        logger.debug("User: {} has authorities: {}", userId, authorities);
         userDto = new UserDto(userId);
-		Set<GrantedAuthority> accesses=new HashSet<GrantedAuthority>(AuthorityUtils.commaSeparatedStringToAuthorityList("user"));
-        return new JwtAuthenticationToken(userDto, null, null);
-    }
-
-    /**
-     * This  method will return
-     * a username form claims object.
-     *
-     * @param claims
-     * @return
-     */
-    private String getUseId(Claims claims) {
-        return (String) claims.get(Constants.USER_ID);
+        JwtAuthenticationToken result = new JwtAuthenticationToken(userDto, null, authorities);
+        result.setDetails(parsedToken);
+        return result;
     }
 
     /**
      * This method will parse string jwt token and
-     * return a claims(payload of JWT TOKEN)
+     * return the parsed token(payload of JWT TOKEN).
+     * It is public so token introspection applies exactly
+     * the same checks as request authentication.
      *
      * @param authToken
-     * @return Claims
+     * @return ParsedToken
      */
-    protected Claims validateAccessToken(String authToken) {
+    public ParsedToken validateAccessToken(String authToken) {
         logger.debug("Validating access token");
-        logger.debug("Signing JWT token ");
-        Jws<Claims> jwsClaims = jwtUtil.parseClaims(authToken);
-        logger.debug("Signed JWT token ");
-        Claims claims = jwsClaims.getBody();
+        ParsedToken parsedToken = verifiedTokenCache.getOrVerify(authToken, token -> {
+            logger.debug("Signing JWT token ");
+            ParsedToken parsed = jwtUtil.parseToken(token);
+            logger.debug("Signed JWT token ");
+            return parsed;
+        });
         //Check claim
+        // refresh tokens are only accepted by /users/refresh
+        if (parsedToken.getTokenType() != TokenType.Access) {
+            logger.debug("Rejecting {} token on a resource request", parsedToken.getTokenType());
+            throw new BadCredentialsException("只能使用访问令牌访问资源");
+        }
+        // revocation is checked after the cache so a revoked token stops working immediately
+        if (tokenRevocationStore.isRevoked(parsedToken.getTokenId())) {
+            logger.debug("JWT token {} has been revoked", parsedToken.getTokenId());
+            throw new JwtRevokedTokenException("JWT令牌已被撤销");
+        }
+        // tokens minted before the user's last generation bump are no longer valid
+        if (parsedToken.getGeneration() < userTokenGenerationStore.currentGeneration(parsedToken.getUserId())) {
+            logger.debug("JWT token generation {} of user {} is outdated",
+                    parsedToken.getGeneration(), parsedToken.getUserId());
+            throw new JwtRevokedTokenException("JWT令牌已失效，请重新登录");
+        }
 
         //Check validity date of auth token
 //        Date expiryDate = claims.getExpiration();
@@ -93,7 +124,7 @@ public class PostAuthenticationProvider implements AuthenticationProvider {
 //            throw new JwtExpiredTokenException("JWT Token expired");
 //        }
         logger.debug("Validation of access token is successfully done ");
-        return claims;
+        return parsedToken;
     }
 
 }
\ No newline at end of file
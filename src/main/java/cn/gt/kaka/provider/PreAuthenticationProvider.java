@@ -1,7 +1,13 @@
 package cn.gt.kaka.provider;
 
 import cn.gt.kaka.model.UserDto;
+import cn.gt.kaka.security.password.CredentialDigest;
 import cn.gt.kaka.service.IUserService;
+import cn.gt.kaka.util.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,16 +23,24 @@ import org.springframework.stereotype.Component;
  * This class support  UsernamePasswordAuthenticationToken.class object.
  * If authentication manager  will having that object.
  * it call this class's authenticate method.
+ *
+ * Concurrent attempts with identical credentials (aggressive client retries)
+ * share one in-flight user lookup and password check; every caller still
+ * gets its own authentication and tokens. Coalesced attempts are exported as
+ * the login.coalesced metric.
  * Created by vishal.domale
  * @version 0.0.1
  */
 @Component
-public class PreAuthenticationProvider implements AuthenticationProvider {
+public class PreAuthenticationProvider implements AuthenticationProvider, MeterBinder {
 	private static final Logger logger = LoggerFactory.getLogger(PreAuthenticationProvider.class);
 	
 	@Autowired
     private IUserService userService;
 
+    // keyed by CredentialDigest so in-flight keys never hold the raw password
+    private final SingleFlight<String, UserDto> logins = new SingleFlight<>();
+
 
     /**
      * This method will check Username and Password is valid or not
@@ -40,15 +54,19 @@ public class PreAuthenticationProvider implements AuthenticationProvider {
         String username = (String) authentication.getPrincipal();
         logger.debug("{} login request", username);
         String password = (String) authentication.getCredentials();
-        
 
-        
-		UserDto	user = userService.getByNameAndPassword(username, password)
-        			.orElseThrow(() -> new BadCredentialsException(
-						"Authentication Failed. Username or Password not valid."));
+		UserDto	user = username == null || password == null
+				? verify(username, password)
+				: logins.execute(CredentialDigest.of(username, password), () -> verify(username, password));
 
 		return new UsernamePasswordAuthenticationToken(user, null, null);
     }
+
+    private UserDto verify(String username, String password) {
+        return userService.getByNameAndPassword(username, password)
+                .orElseThrow(() -> new BadCredentialsException(
+                        "Authentication Failed. Username or Password not valid."));
+    }
     
     
     /**
@@ -62,4 +80,14 @@ public class PreAuthenticationProvider implements AuthenticationProvider {
     public boolean supports(Class<?> authentication) {
         return (UsernamePasswordAuthenticationToken.class.equals(authentication));
     }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("login.coalesced", logins, SingleFlight::coalescedCount)
+                .description("与进行中的相同登录合并、未单独校验的登录次数")
+                .register(registry);
+        Gauge.builder("login.inflight", logins, SingleFlight::inFlightCount)
+                .description("正在校验的不同登录凭据数")
+                .register(registry);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package cn.gt.kaka.security.jwt;
+
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.SignatureException;
+
+/**
+ * 非对称JWS签名器
+ *
+ * 持有当前签发令牌使用的私钥及其kid，每个线程缓存一个已 initSign 的Signature实例
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public final class AsymmetricSigner {
+
+    private final String keyId;
+
+    private final JwsAlgorithm algorithm;
+
+    private final PrivateKey privateKey;
+
+    private final ThreadLocal<Signature> signers;
+
+    /**
+     * 构造签名器
+     *
+     * @param keyId 密钥ID，写入令牌头部的kid
+     * @param algorithm 非对称签名算法
+     * @param privateKey 私钥
+     * @throws IllegalArgumentException 当私钥与算法不匹配时抛出
+     */
+    public AsymmetricSigner(String keyId, JwsAlgorithm algorithm, PrivateKey privateKey) {
+        if (!algorithm.isAsymmetric()) {
+            throw new IllegalArgumentException("非对称签名器不支持算法: " + algorithm);
+        }
+        this.keyId = keyId;
+        this.algorithm = algorithm;
+        this.privateKey = privateKey;
+        newSigner();
+        this.signers = ThreadLocal.withInitial(this::newSigner);
+    }
+
+    public String getKeyId() {
+        return keyId;
+    }
+
+    public JwsAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 对数据片段签名
+     *
+     * @param data 数据
+     * @param offset 起始偏移
+     * @param length 长度
+     * @return JWS格式的签名（ES256为 r||s）
+     * @throws IllegalStateException 当签名失败时抛出
+     */
+    public byte[] sign(byte[] data, int offset, int length) {
+        Signature signer = signers.get();
+        try {
+            signer.update(data, offset, length);
+            byte[] signature = signer.sign();
+            return algorithm == JwsAlgorithm.ES256 ? EcdsaTranscoder.derToJose(signature, 32) : signature;
+        } catch (SignatureException e) {
+            signers.remove();
+            throw new IllegalStateException("JWT签名失败: " + e.getMessage(), e);
+        }
+    }
+
+    private Signature newSigner() {
+        try {
+            Signature signer = algorithm.newSignature();
+            signer.initSign(privateKey);
+            return signer;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("无法使用密钥 " + keyId + " 初始化 " + algorithm + " 签名: "
+                    + e.getMessage(), e);
+        }
+    }
+}
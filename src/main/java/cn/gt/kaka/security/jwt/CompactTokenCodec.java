@@ -0,0 +1,348 @@
+package cn.gt.kaka.security.jwt;
+
+import cn.gt.kaka.dto.TokenType;
+import cn.gt.kaka.exception.JwtExpiredTokenException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 二进制紧凑令牌编解码器
+ *
+ * 不需要与JWT互通的客户端可以选择本格式，令牌形如 "kt1." + Base64URL(载荷 || 标签)：
+ *
+ * 载荷：
+ * - 1字节版本号，当前为1
+ * - 若干字段，每个字段为1字节字段编号加字段值：
+ *   1 用户ID：变长整数长度 + UTF-8字节
+ *   2 令牌类型：1字节，1=访问令牌，2=刷新令牌
+ *   3 令牌ID：16字节随机数
+ *   4 令牌代数：变长整数
+ *   5 过期时间：变长整数，秒级时间戳
+ *   6 权限目录版本：8字节大端整数（可选，与7同时出现）
+ *   7 权限位图：变长整数长度 + 位图字节（可选）
+ *   8 认证时间：变长整数，秒级时间戳（可选）
+ *
+ * 标签：以从 jwt.secret 派生的专用密钥计算载荷的HMAC-SHA256，截取前16字节（128位）
+ *
+ * 与JWT相比不重复携带sub，不写JSON字段名和头部，同样的声明体积约为JWT的三分之一；
+ * 校验时只做一次Base64解码、一次HMAC和一次顺序扫描，不经过JSON解析
+ * 本格式始终使用对称密钥，持有 jwt.secret 的节点都能签发，因此只能在HS256签名时通过 jwt.compact.enabled 开启
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+public final class CompactTokenCodec {
+
+    /**
+     * 令牌前缀，JWS令牌以 "eyJ" 开头，不会与之混淆
+     */
+    public static final String PREFIX = "kt1.";
+
+    private static final byte VERSION = 1;
+
+    private static final int TAG_LENGTH = 16;
+
+    private static final int TOKEN_ID_LENGTH = 16;
+
+    /**
+     * 32位变长整数的最大字节数，用于长度前缀和令牌代数
+     */
+    private static final int MAX_VARINT32_LENGTH = 5;
+
+    /**
+     * 64位变长整数的最大字节数，用于过期时间
+     */
+    private static final int MAX_VARINT64_LENGTH = 10;
+
+    /**
+     * 载荷与标签中除用户ID字节、权限字段外的最大长度：
+     * 版本 + 用户ID的编号和长度 + 令牌类型 + 令牌ID + 令牌代数 + 认证时间 + 过期时间 + 标签
+     */
+    private static final int MAX_FIXED_LENGTH = 1
+            + 1 + MAX_VARINT32_LENGTH
+            + 2
+            + 1 + TOKEN_ID_LENGTH
+            + 1 + MAX_VARINT32_LENGTH
+            + 1 + MAX_VARINT64_LENGTH
+            + 1 + MAX_VARINT64_LENGTH
+            + TAG_LENGTH;
+
+    /**
+     * 权限字段除位图字节外的最大长度：权限目录版本 + 位图的编号和长度
+     */
+    private static final int MAX_PERMISSION_OVERHEAD = 1 + 8 + 1 + MAX_VARINT32_LENGTH;
+
+    private static final int FIELD_USER_ID = 1;
+    private static final int FIELD_TOKEN_TYPE = 2;
+    private static final int FIELD_TOKEN_ID = 3;
+    private static final int FIELD_GENERATION = 4;
+    private static final int FIELD_EXPIRES_AT = 5;
+    private static final int FIELD_PERMISSION_VERSION = 6;
+    private static final int FIELD_PERMISSIONS = 7;
+    private static final int FIELD_AUTH_TIME = 8;
+
+    private static final int TYPE_ACCESS = 1;
+    private static final int TYPE_REFRESH = 2;
+
+    /**
+     * 派生标签密钥使用的上下文，保证紧凑令牌的标签不能被当作其他用途的HMAC使用
+     */
+    private static final byte[] KEY_CONTEXT = "kaka-compact-token-v1".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final HmacSha256 tagKey;
+
+    /**
+     * 构造编解码器
+     *
+     * @param hmacSha256 以 jwt.secret 构造的HS256签名器，用于派生专用的标签密钥
+     */
+    public CompactTokenCodec(HmacSha256 hmacSha256) {
+        this.tagKey = new HmacSha256(hmacSha256.sign(KEY_CONTEXT, 0, KEY_CONTEXT.length));
+    }
+
+    /**
+     * 签发紧凑令牌
+     *
+     * @param userId 用户ID
+     * @param generation 用户当前的令牌代数
+     * @param tokenType 令牌类型
+     * @param expiresAt 过期时间（毫秒时间戳），写入时截断到秒
+     * @return 紧凑令牌
+     */
+    public String mint(String userId, int generation, TokenType tokenType, long expiresAt) {
+        return mint(userId, generation, null, tokenType, expiresAt);
+    }
+
+    /**
+     * 签发携带权限位图的紧凑令牌
+     *
+     * @param userId 用户ID
+     * @param generation 用户当前的令牌代数
+     * @param permissions 权限位图，为null时不写入权限字段
+     * @param tokenType 令牌类型
+     * @param expiresAt 过期时间（毫秒时间戳），写入时截断到秒
+     * @return 紧凑令牌
+     */
+    public String mint(String userId, int generation, PermissionSet permissions, TokenType tokenType,
+                       long expiresAt) {
+        return mint(userId, generation, permissions, tokenType, 0L, expiresAt);
+    }
+
+    /**
+     * 签发携带权限位图和认证时间的紧凑令牌
+     *
+     * @param userId 用户ID
+     * @param generation 用户当前的令牌代数
+     * @param permissions 权限位图，为null时不写入权限字段
+     * @param tokenType 令牌类型
+     * @param authTime 认证时间（毫秒时间戳），写入时截断到秒，不大于0时不写入认证时间字段
+     * @param expiresAt 过期时间（毫秒时间戳），写入时截断到秒
+     * @return 紧凑令牌
+     */
+    public String mint(String userId, int generation, PermissionSet permissions, TokenType tokenType,
+                       long authTime, long expiresAt) {
+        byte[] userIdBytes = userId == null ? null : userId.getBytes(StandardCharsets.UTF_8);
+        byte[] permissionBytes = permissions == null ? null : permissions.bytes();
+        byte[] buffer = new byte[MAX_FIXED_LENGTH + (userIdBytes == null ? 0 : userIdBytes.length)
+                + (permissionBytes == null ? 0 : MAX_PERMISSION_OVERHEAD + permissionBytes.length)];
+        int pos = 0;
+        buffer[pos++] = VERSION;
+        if (userIdBytes != null) {
+            buffer[pos++] = FIELD_USER_ID;
+            pos = writeVarint(buffer, pos, userIdBytes.length);
+            System.arraycopy(userIdBytes, 0, buffer, pos, userIdBytes.length);
+            pos += userIdBytes.length;
+        }
+        buffer[pos++] = FIELD_TOKEN_TYPE;
+        buffer[pos++] = (byte) (tokenType == TokenType.Refresh ? TYPE_REFRESH : TYPE_ACCESS);
+        buffer[pos++] = FIELD_TOKEN_ID;
+        byte[] tokenId = new byte[TOKEN_ID_LENGTH];
+        ThreadLocalRandom.current().nextBytes(tokenId);
+        System.arraycopy(tokenId, 0, buffer, pos, TOKEN_ID_LENGTH);
+        pos += TOKEN_ID_LENGTH;
+        buffer[pos++] = FIELD_GENERATION;
+        pos = writeVarint(buffer, pos, generation & 0xFFFFFFFFL);
+        if (permissionBytes != null) {
+            buffer[pos++] = FIELD_PERMISSION_VERSION;
+            long version = permissions.getCatalogVersion();
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[pos++] = (byte) (version >>> shift);
+            }
+            buffer[pos++] = FIELD_PERMISSIONS;
+            pos = writeVarint(buffer, pos, permissionBytes.length);
+            System.arraycopy(permissionBytes, 0, buffer, pos, permissionBytes.length);
+            pos += permissionBytes.length;
+        }
+        if (authTime > 0) {
+            buffer[pos++] = FIELD_AUTH_TIME;
+            pos = writeVarint(buffer, pos, authTime / 1000L);
+        }
+        buffer[pos++] = FIELD_EXPIRES_AT;
+        pos = writeVarint(buffer, pos, expiresAt / 1000L);
+
+        byte[] tag = tagKey.sign(buffer, 0, pos);
+        System.arraycopy(tag, 0, buffer, pos, TAG_LENGTH);
+        pos += TAG_LENGTH;
+        return PREFIX + ENCODER.encodeToString(Arrays.copyOf(buffer, pos));
+    }
+
+    /**
+     * 校验紧凑令牌并返回已解析令牌
+     *
+     * @param token 紧凑令牌
+     * @return 已解析令牌
+     * @throws BadCredentialsException 当令牌格式错误或标签无效时抛出
+     * @throws JwtExpiredTokenException 当令牌已过期时抛出
+     */
+    public ParsedToken verify(String token) {
+        if (token == null || !token.startsWith(PREFIX)) {
+            throw invalid("令牌前缀错误");
+        }
+        byte[] bytes;
+        try {
+            bytes = DECODER.decode(token.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw invalid("令牌Base64URL编码错误");
+        }
+        int bodyLength = bytes.length - TAG_LENGTH;
+        if (bodyLength < 1 || bytes[0] != VERSION) {
+            throw invalid("令牌版本或长度错误");
+        }
+
+        byte[] expected = tagKey.sign(bytes, 0, bodyLength);
+        if (!MessageDigest.isEqual(Arrays.copyOf(expected, TAG_LENGTH),
+                Arrays.copyOfRange(bytes, bodyLength, bytes.length))) {
+            throw invalid("令牌标签与本地计算的标签不一致");
+        }
+
+        String userId = null;
+        TokenType tokenType = null;
+        String tokenId = null;
+        int generation = 0;
+        long permissionVersion = 0L;
+        byte[] permissionBits = null;
+        long authTime = 0L;
+        long expiresAt = Long.MAX_VALUE;
+        int[] cursor = {1};
+        while (cursor[0] < bodyLength) {
+            int field = bytes[cursor[0]++];
+            switch (field) {
+                case FIELD_USER_ID:
+                    int userIdLength = readLength(bytes, cursor, bodyLength);
+                    userId = new String(bytes, cursor[0] - userIdLength, userIdLength, StandardCharsets.UTF_8);
+                    break;
+                case FIELD_TOKEN_TYPE:
+                    tokenType = readTokenType(bytes, cursor, bodyLength);
+                    break;
+                case FIELD_TOKEN_ID:
+                    if (cursor[0] + TOKEN_ID_LENGTH > bodyLength) {
+                        throw invalid("令牌ID长度错误");
+                    }
+                    tokenId = ENCODER.encodeToString(
+                            Arrays.copyOfRange(bytes, cursor[0], cursor[0] + TOKEN_ID_LENGTH));
+                    cursor[0] += TOKEN_ID_LENGTH;
+                    break;
+                case FIELD_GENERATION:
+                    generation = (int) readVarint(bytes, cursor, bodyLength);
+                    break;
+                case FIELD_EXPIRES_AT:
+                    expiresAt = readVarint(bytes, cursor, bodyLength) * 1000L;
+                    break;
+                case FIELD_PERMISSION_VERSION:
+                    if (cursor[0] + 8 > bodyLength) {
+                        throw invalid("权限目录版本长度错误");
+                    }
+                    for (int i = 0; i < 8; i++) {
+                        permissionVersion = (permissionVersion << 8) | (bytes[cursor[0]++] & 0xFF);
+                    }
+                    break;
+                case FIELD_PERMISSIONS:
+                    int permissionLength = readLength(bytes, cursor, bodyLength);
+                    permissionBits = Arrays.copyOfRange(bytes, cursor[0] - permissionLength, cursor[0]);
+                    break;
+                case FIELD_AUTH_TIME:
+                    authTime = readVarint(bytes, cursor, bodyLength) * 1000L;
+                    break;
+                default:
+                    throw invalid("未知的字段编号: " + field);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        if (now > expiresAt) {
+            log.warn("紧凑令牌已过期: 过期时间 {}, 当前时间 {}", expiresAt, now);
+            throw new JwtExpiredTokenException("JWT令牌已过期");
+        }
+        return ParsedToken.fromCompact(userId, tokenType, tokenId, generation,
+                permissionBits == null ? null : new PermissionSet(permissionVersion, permissionBits), authTime,
+                expiresAt);
+    }
+
+    private static TokenType readTokenType(byte[] bytes, int[] cursor, int limit) {
+        if (cursor[0] >= limit) {
+            throw invalid("令牌类型缺失");
+        }
+        int code = bytes[cursor[0]++];
+        if (code == TYPE_ACCESS) {
+            return TokenType.Access;
+        }
+        if (code == TYPE_REFRESH) {
+            return TokenType.Refresh;
+        }
+        throw invalid("无法识别的令牌类型: " + code);
+    }
+
+    /**
+     * 读取变长整数长度前缀并跳过其后的数据，返回数据长度
+     */
+    private static int readLength(byte[] bytes, int[] cursor, int limit) {
+        long length = readVarint(bytes, cursor, limit);
+        // 10字节的变长整数可以解码出负数，不检查会使游标回退
+        if (length < 0 || length > limit - cursor[0]) {
+            throw invalid("字段长度错误");
+        }
+        cursor[0] += (int) length;
+        return (int) length;
+    }
+
+    private static int writeVarint(byte[] buffer, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static long readVarint(byte[] bytes, int[] cursor, int limit) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (cursor[0] >= limit) {
+                throw invalid("变长整数被截断");
+            }
+            byte b = bytes[cursor[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw invalid("变长整数过长");
+    }
+
+    private static BadCredentialsException invalid(String message) {
+        log.error("紧凑令牌验证失败: {}", message);
+        return new BadCredentialsException("无效的JWT令牌");
+    }
+}
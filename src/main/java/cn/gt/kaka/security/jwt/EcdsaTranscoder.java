@@ -0,0 +1,115 @@
+package cn.gt.kaka.security.jwt;
+
+import java.security.SignatureException;
+
+/**
+ * ECDSA签名格式转换
+ *
+ * JCA输出和接受的是DER编码的 SEQUENCE { INTEGER r, INTEGER s }，
+ * 而JWS (RFC 7518) 要求 ES256 签名为定长的 r||s，各32字节
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+final class EcdsaTranscoder {
+
+    private EcdsaTranscoder() {
+        throw new AssertionError("EcdsaTranscoder工具类不应被实例化");
+    }
+
+    /**
+     * DER编码签名转换为JOSE格式
+     *
+     * @param der DER编码签名
+     * @param partLength r、s各自的字节长度
+     * @return JOSE格式签名
+     * @throws SignatureException 当DER编码不合法时抛出
+     */
+    static byte[] derToJose(byte[] der, int partLength) throws SignatureException {
+        if (der.length < 8 || der[0] != 0x30) {
+            throw new SignatureException("无效的ECDSA DER签名");
+        }
+        int offset = 2;
+        if ((der[1] & 0xFF) == 0x81) {
+            offset = 3;
+        } else if ((der[1] & 0x80) != 0) {
+            throw new SignatureException("无效的ECDSA DER签名");
+        }
+
+        byte[] jose = new byte[partLength * 2];
+        offset = copyInteger(der, offset, jose, 0, partLength);
+        offset = copyInteger(der, offset, jose, partLength, partLength);
+        if (offset != der.length) {
+            throw new SignatureException("无效的ECDSA DER签名");
+        }
+        return jose;
+    }
+
+    /**
+     * JOSE格式签名转换为DER编码
+     *
+     * @param jose JOSE格式签名 r||s
+     * @return DER编码签名
+     */
+    static byte[] joseToDer(byte[] jose) {
+        int partLength = jose.length / 2;
+        byte[] r = toUnsignedInteger(jose, 0, partLength);
+        byte[] s = toUnsignedInteger(jose, partLength, partLength);
+
+        int sequenceLength = 2 + r.length + 2 + s.length;
+        boolean longForm = sequenceLength > 0x7F;
+        byte[] der = new byte[(longForm ? 3 : 2) + sequenceLength];
+        int offset = 0;
+        der[offset++] = 0x30;
+        if (longForm) {
+            der[offset++] = (byte) 0x81;
+        }
+        der[offset++] = (byte) sequenceLength;
+        der[offset++] = 0x02;
+        der[offset++] = (byte) r.length;
+        System.arraycopy(r, 0, der, offset, r.length);
+        offset += r.length;
+        der[offset++] = 0x02;
+        der[offset++] = (byte) s.length;
+        System.arraycopy(s, 0, der, offset, s.length);
+        return der;
+    }
+
+    private static int copyInteger(byte[] der, int offset, byte[] jose, int joseOffset, int partLength)
+            throws SignatureException {
+        if (offset + 2 > der.length || der[offset] != 0x02) {
+            throw new SignatureException("无效的ECDSA DER签名");
+        }
+        int length = der[offset + 1] & 0xFF;
+        int start = offset + 2;
+        if (length == 0 || length > 0x7F || start + length > der.length) {
+            throw new SignatureException("无效的ECDSA DER签名");
+        }
+
+        // 去掉符号位补的前导0
+        int valueStart = start;
+        int valueLength = length;
+        while (valueLength > partLength && der[valueStart] == 0) {
+            valueStart++;
+            valueLength--;
+        }
+        if (valueLength > partLength) {
+            throw new SignatureException("无效的ECDSA DER签名");
+        }
+        System.arraycopy(der, valueStart, jose, joseOffset + partLength - valueLength, valueLength);
+        return start + length;
+    }
+
+    private static byte[] toUnsignedInteger(byte[] source, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        while (start < end - 1 && source[start] == 0) {
+            start++;
+        }
+        boolean needsPadding = (source[start] & 0x80) != 0;
+        byte[] integer = new byte[end - start + (needsPadding ? 1 : 0)];
+        System.arraycopy(source, start, integer, needsPadding ? 1 : 0, end - start);
+        return integer;
+    }
+}
@@ -0,0 +1,156 @@
+package cn.gt.kaka.security.jwt;
+
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.DefaultJwtBuilder;
+import io.jsonwebtoken.impl.DefaultJwtParser;
+import io.jsonwebtoken.impl.crypto.JwtSignatureValidator;
+import io.jsonwebtoken.impl.crypto.JwtSigner;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * HS256签名器
+ *
+ * 启动时一次性构造签名密钥，并为每个线程缓存一个已初始化的Mac实例，
+ * 避免每次签发或校验令牌时重复执行 secret.getBytes()、new SecretKeySpec() 和 Mac.getInstance()/init()
+ *
+ * 同时提供接入jjwt的解析器和构建器：HS256签名及校验走本类缓存的Mac，
+ * 其他算法仍交给jjwt默认实现，保持原有行为不变
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public final class HmacSha256 {
+
+    /**
+     * JCA中HS256对应的算法名称
+     */
+    public static final String JCA_NAME = "HmacSHA256";
+
+    private final SecretKeySpec key;
+
+    private final ThreadLocal<Mac> macs;
+
+    /**
+     * 根据密钥字节构造签名器
+     *
+     * @param secret 密钥字节
+     * @throws IllegalStateException 当JVM不支持HmacSHA256或密钥无效时抛出
+     */
+    public HmacSha256(byte[] secret) {
+        this.key = new SecretKeySpec(secret, JCA_NAME);
+        // 构造时先初始化一次，密钥有问题时启动即失败，而不是等到第一个请求
+        newMac();
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * 获取预先构造的签名密钥
+     *
+     * @return HS256密钥
+     */
+    public SecretKeySpec getKey() {
+        return key;
+    }
+
+    /**
+     * 计算数据片段的HMAC
+     *
+     * @param data 数据
+     * @param offset 起始偏移
+     * @param length 长度
+     * @return 32字节签名
+     */
+    public byte[] sign(byte[] data, int offset, int length) {
+        Mac mac = macs.get();
+        mac.update(data, offset, length);
+        // doFinal 会重置Mac状态，线程内可直接复用
+        return mac.doFinal();
+    }
+
+    /**
+     * 以常量时间比较校验数据片段的HMAC
+     *
+     * @param data 数据
+     * @param offset 起始偏移
+     * @param length 长度
+     * @param signature 待校验的签名
+     * @return true表示签名正确
+     */
+    public boolean verify(byte[] data, int offset, int length, byte[] signature) {
+        return MessageDigest.isEqual(sign(data, offset, length), signature);
+    }
+
+    /**
+     * 创建使用本签名器的jjwt解析器，签名密钥已设置
+     *
+     * @return JWT解析器
+     */
+    public JwtParser newParser() {
+        return new HmacJwtParser().setSigningKey(key);
+    }
+
+    /**
+     * 创建使用本签名器的jjwt构建器，签名算法和密钥已设置
+     *
+     * @return JWT构建器
+     */
+    public JwtBuilder newBuilder() {
+        return new HmacJwtBuilder().signWith(SignatureAlgorithm.HS256, key);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(JCA_NAME);
+            mac.init(key);
+            return mac;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("无法初始化HS256签名器: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * HS256签名校验使用线程缓存Mac的解析器
+     */
+    private final class HmacJwtParser extends DefaultJwtParser {
+
+        @Override
+        protected JwtSignatureValidator createSignatureValidator(SignatureAlgorithm alg, Key signingKey) {
+            if (alg != SignatureAlgorithm.HS256) {
+                return super.createSignatureValidator(alg, signingKey);
+            }
+            return (jwtWithoutSignature, base64UrlEncodedSignature) -> {
+                byte[] data = jwtWithoutSignature.getBytes(StandardCharsets.US_ASCII);
+                byte[] signature = Base64.getUrlDecoder().decode(base64UrlEncodedSignature);
+                return verify(data, 0, data.length, signature);
+            };
+        }
+    }
+
+    /**
+     * HS256签名使用线程缓存Mac的构建器
+     */
+    private final class HmacJwtBuilder extends DefaultJwtBuilder {
+
+        @Override
+        protected JwtSigner createSigner(SignatureAlgorithm alg, Key signingKey) {
+            if (alg != SignatureAlgorithm.HS256) {
+                return super.createSigner(alg, signingKey);
+            }
+            return jwtWithoutSignature -> {
+                byte[] data = jwtWithoutSignature.getBytes(StandardCharsets.US_ASCII);
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(sign(data, 0, data.length));
+            };
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package cn.gt.kaka.security.jwt;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 支持的JWS签名算法
+ *
+ * 枚举名称即JWS头部中的alg取值
+ * - HS256: HMAC-SHA256，对称密钥，使用 jwt.secret
+ * - RS256: RSASSA-PKCS1-v1_5 + SHA-256
+ * - ES256: ECDSA P-256 + SHA-256，签名为JOSE格式的 r||s 64字节
+ * - EdDSA: Ed25519，需要运行在JDK 15及以上
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public enum JwsAlgorithm {
+
+    HS256("HmacSHA256"),
+
+    RS256("SHA256withRSA"),
+
+    ES256("SHA256withECDSA"),
+
+    EdDSA("Ed25519");
+
+    /**
+     * JCA中对应的算法名称
+     */
+    private final String jcaName;
+
+    JwsAlgorithm(String jcaName) {
+        this.jcaName = jcaName;
+    }
+
+    public String getJcaName() {
+        return jcaName;
+    }
+
+    /**
+     * 是否为非对称签名算法
+     *
+     * @return true表示使用公私钥对签名
+     */
+    public boolean isAsymmetric() {
+        return this != HS256;
+    }
+
+    /**
+     * 创建该算法的JCA签名实例，仅用于非对称算法
+     *
+     * @return 未初始化的签名实例
+     * @throws NoSuchAlgorithmException 当JVM不支持该算法时抛出
+     */
+    public Signature newSignature() throws NoSuchAlgorithmException {
+        return Signature.getInstance(jcaName);
+    }
+
+    /**
+     * 以本算法签发令牌时，校验端接受的算法
+     *
+     * HS256签发时同时接受密钥环中的非对称算法，便于先在校验节点加入公钥再切换签发私钥；
+     * 非对称签发时不接受HS256，否则持有 jwt.secret 的校验节点仍能伪造令牌
+     *
+     * @return 接受的算法集合
+     */
+    public Set<JwsAlgorithm> acceptedWhenSigningWith() {
+        return isAsymmetric() ? EnumSet.complementOf(EnumSet.of(HS256)) : EnumSet.allOf(JwsAlgorithm.class);
+    }
+
+    /**
+     * 根据JWS头部的alg取值查找算法
+     *
+     * @param alg 头部alg取值
+     * @return 对应算法，不支持时返回null
+     */
+    public static JwsAlgorithm fromHeader(String alg) {
+        if (alg == null) {
+            return null;
+        }
+        for (JwsAlgorithm algorithm : values()) {
+            if (algorithm.name().equals(alg)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 根据公钥类型推断签名算法
+     *
+     * @param key 公钥
+     * @return 对应的非对称签名算法
+     * @throws IllegalArgumentException 当公钥类型不受支持时抛出
+     */
+    public static JwsAlgorithm forKey(PublicKey key) {
+        switch (key.getAlgorithm()) {
+            case "RSA":
+                return RS256;
+            case "EC":
+                if (key instanceof ECPublicKey
+                        && ((ECPublicKey) key).getParams().getCurve().getField().getFieldSize() != 256) {
+                    throw new IllegalArgumentException("ES256仅支持P-256曲线的公钥");
+                }
+                return ES256;
+            case "EdDSA":
+            case "Ed25519":
+                return EdDSA;
+            default:
+                throw new IllegalArgumentException("不支持的公钥类型: " + key.getAlgorithm());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package cn.gt.kaka.security.jwt;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.PublicKey;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JWT验签密钥环
+ *
+ * 以kid为索引保存多把同时有效的验签公钥，验签时按令牌头部的kid直接查找
+ * 密钥轮换流程：先把新公钥加入密钥环（所有校验节点），再切换签发私钥，
+ * 等旧私钥签发的令牌全部过期后再移除旧公钥，整个过程不会使现有会话失效
+ *
+ * 密钥来源：
+ * 1. 启动时加载 jwt.keyring.location 目录下的 *.pem 公钥文件，文件名（不含扩展名）即kid
+ * 2. 运行时通过 addKey/removeKey 增删，或调用 reload 重新扫描目录
+ *
+ * 签名算法由公钥类型决定：RSA对应RS256，EC(P-256)对应ES256，Ed25519对应EdDSA
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@Component
+public class JwtKeyring {
+
+    private static final String KEY_FILE_SUFFIX = ".pem";
+
+    /**
+     * 公钥目录，为空时不从文件加载
+     */
+    @Value("${jwt.keyring.location:}")
+    private String location;
+
+    private final ConcurrentHashMap<String, VerificationKey> keys = new ConcurrentHashMap<>();
+
+    /**
+     * 启动时加载公钥目录
+     */
+    @PostConstruct
+    public void init() {
+        if (StringUtils.hasText(location)) {
+            reload();
+        }
+    }
+
+    /**
+     * 重新扫描公钥目录，加入新出现的公钥并替换内容变化的公钥
+     *
+     * 目录中已删除的文件不会自动移除对应公钥，需显式调用 removeKey，避免误删导致令牌集中失效
+     *
+     * @throws IllegalStateException 当目录无法读取时抛出
+     */
+    public void reload() {
+        String base = location.endsWith("/") ? location : location + "/";
+        Resource[] resources;
+        try {
+            resources = new PathMatchingResourcePatternResolver().getResources(base + "*" + KEY_FILE_SUFFIX);
+        } catch (IOException e) {
+            throw new IllegalStateException("无法读取JWT公钥目录: " + location, e);
+        }
+
+        for (Resource resource : resources) {
+            String filename = resource.getFilename();
+            if (filename == null) {
+                continue;
+            }
+            String keyId = filename.substring(0, filename.length() - KEY_FILE_SUFFIX.length());
+            try (InputStream in = resource.getInputStream()) {
+                addKey(keyId, PemKeys.parsePublicKey(StreamUtils.copyToString(in, StandardCharsets.US_ASCII)));
+            } catch (IOException | IllegalArgumentException e) {
+                log.error("加载JWT公钥失败: kid={}, 文件={}, 原因={}", keyId, filename, e.getMessage());
+            }
+        }
+        log.info("JWT密钥环加载完成: 目录={}, 当前密钥={}", location, keys.keySet());
+    }
+
+    /**
+     * 加入或替换公钥，签名算法由公钥类型推断
+     *
+     * @param keyId 密钥ID
+     * @param publicKey 公钥
+     * @return 加入的验签公钥
+     * @throws IllegalArgumentException 当公钥类型不受支持时抛出
+     */
+    public VerificationKey addKey(String keyId, PublicKey publicKey) {
+        return addKey(keyId, JwsAlgorithm.forKey(publicKey), publicKey);
+    }
+
+    /**
+     * 加入或替换公钥
+     *
+     * @param keyId 密钥ID
+     * @param algorithm 签名算法
+     * @param publicKey 公钥
+     * @return 加入的验签公钥
+     * @throws IllegalArgumentException 当kid为空或公钥与算法不匹配时抛出
+     */
+    public VerificationKey addKey(String keyId, JwsAlgorithm algorithm, PublicKey publicKey) {
+        if (!StringUtils.hasText(keyId)) {
+            throw new IllegalArgumentException("密钥ID不能为空");
+        }
+        VerificationKey key = new VerificationKey(keyId, algorithm, publicKey);
+        VerificationKey previous = keys.put(keyId, key);
+        log.info("{}JWT验签公钥: kid={}, 算法={}", previous == null ? "加入" : "替换", keyId, algorithm);
+        return key;
+    }
+
+    /**
+     * 移除公钥，之后该kid签发的令牌将无法通过校验
+     * 已进入 VerifiedTokenCache 的校验结果不受影响，需要立即失效时应同时清空该缓存
+     *
+     * @param keyId 密钥ID
+     * @return true表示确实移除了公钥
+     */
+    public boolean removeKey(String keyId) {
+        boolean removed = keys.remove(keyId) != null;
+        if (removed) {
+            log.info("移除JWT验签公钥: kid={}", keyId);
+        }
+        return removed;
+    }
+
+    /**
+     * 按kid查找验签公钥
+     *
+     * @param keyId 密钥ID
+     * @return 验签公钥，不存在时返回null
+     */
+    public VerificationKey getKey(String keyId) {
+        return keyId == null ? null : keys.get(keyId);
+    }
+
+    /**
+     * 获取当前全部kid
+     *
+     * @return 只读的kid集合
+     */
+    public Set<String> getKeyIds() {
+        return Collections.unmodifiableSet(keys.keySet());
+    }
+}
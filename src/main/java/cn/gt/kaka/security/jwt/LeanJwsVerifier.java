@@ -0,0 +1,301 @@
+package cn.gt.kaka.security.jwt;
+
+import cn.gt.kaka.dto.TokenType;
+import cn.gt.kaka.exception.JwtExpiredTokenException;
+import cn.gt.kaka.exception.JwtTokenMalformedException;
+import cn.gt.kaka.util.Constants;
+import cn.gt.kaka.util.JacksonUtil;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 精简的紧凑JWS校验器
+ *
+ * jjwt对每个令牌都会用通用ObjectMapper构建完整的头部和声明Map，而认证流程只用到用户ID、令牌类型和过期时间。
+ * 本校验器直接在令牌字节上校验头部和签名，签名通过后用流式解析器只读取这几个声明，
+ * 其他声明以原始载荷字节的形式交给 {@link ParsedToken}，被读取时才解码
+ *
+ * 校验顺序：
+ * 1. 拆分三段，头部与预编码的 {"alg":"HS256"} 直接比较字节，不一致时才解码头部读取alg和kid
+ * 2. alg不在允许列表中时直接拒绝：以非对称算法签发时不接受HS256，校验节点持有的 jwt.secret 不能用来伪造令牌
+ * 3. HS256用线程缓存的Mac校验签名；RS256/ES256/EdDSA按kid从密钥环取公钥校验，签名不通过时不解析载荷
+ * 4. 流式读取 exp、nbf、user_id、token_type、jti、gen、pv、perm，跳过其他字段
+ * 5. 检查过期时间和生效时间
+ *
+ * 异常与 JwtUtil.parseClaims 保持一致：
+ * - 格式错误、签名无效、算法不支持：BadCredentialsException
+ * - 令牌已过期：JwtExpiredTokenException
+ * - 声明类型错误（例如exp不是数字、令牌类型无法识别）：JwtTokenMalformedException
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+public final class LeanJwsVerifier {
+
+    /**
+     * 本系统签发令牌的头部 {"alg":"HS256"} 的Base64URL编码
+     */
+    private static final byte[] HS256_HEADER = Base64.getUrlEncoder().withoutPadding()
+            .encode("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.US_ASCII));
+
+    /**
+     * HS256签名长度（字节）
+     */
+    private static final int SIGNATURE_LENGTH = 32;
+
+    private static final JsonFactory JSON_FACTORY = JacksonUtil.OBJECT_MAPPER.getFactory();
+
+    private final HmacSha256 hmacSha256;
+
+    private final JwtKeyring keyring;
+
+    /**
+     * 接受的签名算法
+     */
+    private final Set<JwsAlgorithm> acceptedAlgorithms;
+
+    /**
+     * 构造校验器
+     *
+     * @param hmacSha256 HS256签名器，不接受HS256时可以为null
+     * @param keyring 非对称验签密钥环
+     * @param acceptedAlgorithms 接受的签名算法，参见 {@link JwsAlgorithm#acceptedWhenSigningWith}
+     * @throws IllegalArgumentException 当接受HS256但没有提供HS256签名器时抛出
+     */
+    public LeanJwsVerifier(HmacSha256 hmacSha256, JwtKeyring keyring, Set<JwsAlgorithm> acceptedAlgorithms) {
+        if (acceptedAlgorithms.contains(JwsAlgorithm.HS256) && hmacSha256 == null) {
+            throw new IllegalArgumentException("接受HS256时必须提供HS256签名器");
+        }
+        this.hmacSha256 = hmacSha256;
+        this.keyring = keyring;
+        this.acceptedAlgorithms = EnumSet.copyOf(acceptedAlgorithms);
+    }
+
+    /**
+     * 校验令牌并返回已解析令牌
+     *
+     * @param token 紧凑格式的JWS令牌
+     * @return 已解析令牌
+     * @throws BadCredentialsException 当令牌格式错误或签名无效时抛出
+     * @throws JwtExpiredTokenException 当令牌已过期时抛出
+     * @throws JwtTokenMalformedException 当声明类型错误时抛出
+     */
+    public ParsedToken verify(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new BadCredentialsException("无效的JWT令牌");
+        }
+
+        byte[] bytes = token.getBytes(StandardCharsets.US_ASCII);
+        int firstDot = indexOf(bytes, 0);
+        int secondDot = firstDot < 0 ? -1 : indexOf(bytes, firstDot + 1);
+        if (firstDot <= 0 || secondDot < 0 || indexOf(bytes, secondDot + 1) >= 0
+                || secondDot == bytes.length - 1) {
+            throw invalid("JWT令牌结构错误", null);
+        }
+
+        VerificationKey key = resolveKey(bytes, firstDot);
+
+        byte[] signature = decode(bytes, secondDot + 1, bytes.length - secondDot - 1);
+        boolean valid = key == null
+                ? signature.length == SIGNATURE_LENGTH && hmacSha256.verify(bytes, 0, secondDot, signature)
+                : key.verify(bytes, 0, secondDot, signature);
+        if (!valid) {
+            throw invalid("JWT签名与本地计算的签名不一致", null);
+        }
+
+        byte[] payload = decode(bytes, firstDot + 1, secondDot - firstDot - 1);
+        return readClaims(payload);
+    }
+
+    /**
+     * 根据头部确定验签密钥
+     *
+     * @return 非对称算法对应的公钥，HS256时返回null
+     */
+    private VerificationKey resolveKey(byte[] bytes, int length) {
+        if (regionEquals(bytes, length, HS256_HEADER)) {
+            if (!acceptedAlgorithms.contains(JwsAlgorithm.HS256)) {
+                throw invalid("不接受的JWT签名算法: HS256", null);
+            }
+            return null;
+        }
+
+        // 非本系统标准HS256头部：解码后读取alg和kid，不接受压缩载荷
+        byte[] header = decode(bytes, 0, length);
+        String alg = null;
+        String keyId = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(header)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw invalid("JWT头部不是JSON对象", null);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("alg".equals(field)) {
+                    alg = parser.getValueAsString();
+                } else if ("kid".equals(field)) {
+                    keyId = parser.getValueAsString();
+                } else if ("zip".equals(field) || "crit".equals(field)) {
+                    throw invalid("不支持的JWT头部参数: " + field, null);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw invalid("JWT头部解析失败", e);
+        }
+
+        JwsAlgorithm algorithm = JwsAlgorithm.fromHeader(alg);
+        if (algorithm == null) {
+            throw invalid("不支持的JWT签名算法: " + alg, null);
+        }
+        if (!acceptedAlgorithms.contains(algorithm)) {
+            throw invalid("不接受的JWT签名算法: " + alg, null);
+        }
+        if (!algorithm.isAsymmetric()) {
+            return null;
+        }
+
+        VerificationKey key = keyring.getKey(keyId);
+        if (key == null) {
+            throw invalid("未知的JWT密钥ID: " + keyId, null);
+        }
+        if (key.getAlgorithm() != algorithm) {
+            throw invalid("JWT签名算法与密钥不匹配: kid=" + keyId + ", alg=" + alg, null);
+        }
+        return key;
+    }
+
+    private ParsedToken readClaims(byte[] payload) {
+        String userId = null;
+        TokenType tokenType = null;
+        String tokenId = null;
+        int generation = 0;
+        Long permissionVersion = null;
+        String permissionBits = null;
+        long expiresAt = Long.MAX_VALUE;
+        long notBefore = Long.MIN_VALUE;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw invalid("JWT载荷不是JSON对象", null);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (Constants.USER_ID.equals(field)) {
+                    userId = value == JsonToken.VALUE_NULL ? null : scalarText(parser, value, field);
+                } else if (Constants.TOKEN_TYPE.equals(field)) {
+                    tokenType = value == JsonToken.VALUE_NULL
+                            ? null : ParsedToken.parseTokenType(scalarText(parser, value, field));
+                } else if (Constants.TOKEN_ID.equals(field)) {
+                    tokenId = value == JsonToken.VALUE_NULL ? null : scalarText(parser, value, field);
+                } else if (Constants.TOKEN_GENERATION.equals(field)) {
+                    if (value != JsonToken.VALUE_NUMBER_INT) {
+                        throw new JwtTokenMalformedException("JWT声明类型不匹配: " + field);
+                    }
+                    generation = parser.getIntValue();
+                } else if (Constants.PERMISSION_VERSION.equals(field)) {
+                    if (value != JsonToken.VALUE_NUMBER_INT) {
+                        throw new JwtTokenMalformedException("JWT声明类型不匹配: " + field);
+                    }
+                    permissionVersion = parser.getLongValue();
+                } else if (Constants.PERMISSIONS.equals(field)) {
+                    if (value != JsonToken.VALUE_STRING) {
+                        throw new JwtTokenMalformedException("JWT声明类型不匹配: " + field);
+                    }
+                    permissionBits = parser.getText();
+                } else if ("exp".equals(field)) {
+                    expiresAt = epochMillis(parser, value, field);
+                } else if ("nbf".equals(field)) {
+                    notBefore = epochMillis(parser, value, field);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw invalid("JWT载荷解析失败", e);
+        }
+
+        long now = System.currentTimeMillis();
+        if (now > expiresAt) {
+            log.warn("JWT令牌已过期: 过期时间 {}, 当前时间 {}", expiresAt, now);
+            throw new JwtExpiredTokenException("JWT令牌已过期");
+        }
+        if (now < notBefore) {
+            throw invalid("JWT令牌尚未生效", null);
+        }
+        return new ParsedToken(userId, tokenType, tokenId, generation,
+                ParsedToken.parsePermissions(permissionVersion, permissionBits), expiresAt, payload);
+    }
+
+    private static String scalarText(JsonParser parser, JsonToken value, String field) throws IOException {
+        if (!value.isScalarValue()) {
+            throw new JwtTokenMalformedException("JWT声明类型不匹配: " + field);
+        }
+        return parser.getText();
+    }
+
+    private static long epochMillis(JsonParser parser, JsonToken value, String field) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue() * 1000L;
+        }
+        if (value == JsonToken.VALUE_NUMBER_FLOAT) {
+            return (long) (parser.getDoubleValue() * 1000D);
+        }
+        throw new JwtTokenMalformedException("JWT声明类型不匹配: " + field);
+    }
+
+    private static byte[] decode(byte[] source, int offset, int length) {
+        try {
+            ByteBuffer decoded = Base64.getUrlDecoder().decode(ByteBuffer.wrap(source, offset, length));
+            if (decoded.hasArray() && decoded.arrayOffset() == 0 && decoded.position() == 0
+                    && decoded.remaining() == decoded.array().length) {
+                return decoded.array();
+            }
+            byte[] copy = new byte[decoded.remaining()];
+            decoded.get(copy);
+            return copy;
+        } catch (IllegalArgumentException e) {
+            throw invalid("JWT令牌Base64URL编码错误", e);
+        }
+    }
+
+    private static int indexOf(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == '.') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionEquals(byte[] bytes, int length, byte[] expected) {
+        if (length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static BadCredentialsException invalid(String message, Throwable cause) {
+        log.error("JWT令牌验证失败: {}", message);
+        return new BadCredentialsException("无效的JWT令牌", cause);
+    }
+}
@@ -0,0 +1,346 @@
+package cn.gt.kaka.security.jwt;
+
+import cn.gt.kaka.dto.TokenType;
+import cn.gt.kaka.exception.JwtTokenMalformedException;
+import cn.gt.kaka.util.Constants;
+import cn.gt.kaka.util.JacksonUtil;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.jsonwebtoken.Claims;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 已解析令牌
+ *
+ * 令牌通过签名校验后的不可变视图，提供用户ID、令牌类型、令牌ID、令牌代数、权限位图、过期时间和自定义声明的类型化访问
+ * 一个令牌只解析一次，认证成功后由过滤器挂到请求属性 {@link Constants#PARSED_TOKEN_ATTRIBUTE} 上，
+ * 后续代码直接读取，不需要再次调用 JwtUtil 解析
+ *
+ * 由 {@link LeanJwsVerifier} 构造时只提取常用声明，其余声明保留为原始载荷字节，
+ * 在真正被读取时才用流式解析器解码，没人读取的声明不会产生任何对象
+ * 由 {@link CompactTokenCodec} 构造时没有JSON载荷，声明集合按JWT中的同名声明合成
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public final class ParsedToken {
+
+    private final String userId;
+
+    private final TokenType tokenType;
+
+    /**
+     * 令牌ID（jti），旧版本签发的令牌没有该声明时为null
+     */
+    private final String tokenId;
+
+    /**
+     * 令牌代数，旧版本签发的令牌没有该声明时为0
+     */
+    private final int generation;
+
+    /**
+     * 权限位图，令牌中没有 perm/pv 声明时为null
+     */
+    private final PermissionSet permissions;
+
+    /**
+     * 过期时间（毫秒时间戳），令牌没有exp声明时为 Long.MAX_VALUE
+     */
+    private final long expiresAt;
+
+    /**
+     * 已校验签名的载荷JSON字节，声明由jjwt解析得到时为null
+     */
+    private final byte[] payload;
+
+    /**
+     * 全部声明，按需从载荷解码后缓存
+     */
+    private volatile Map<String, Object> claims;
+
+    ParsedToken(String userId, TokenType tokenType, String tokenId, int generation, PermissionSet permissions,
+                long expiresAt, byte[] payload) {
+        this.userId = userId;
+        this.tokenType = tokenType;
+        this.tokenId = tokenId;
+        this.generation = generation;
+        this.permissions = permissions;
+        this.expiresAt = expiresAt;
+        this.payload = payload;
+    }
+
+    private ParsedToken(String userId, TokenType tokenType, String tokenId, int generation, PermissionSet permissions,
+                        long expiresAt, Map<String, Object> claims) {
+        this(userId, tokenType, tokenId, generation, permissions, expiresAt, (byte[]) null);
+        this.claims = claims;
+    }
+
+    /**
+     * 根据jjwt解析出的声明构造
+     *
+     * @param body 已校验签名的声明
+     * @return 已解析令牌
+     * @throws JwtTokenMalformedException 当令牌类型声明无法识别时抛出
+     */
+    public static ParsedToken from(Claims body) {
+        Object userId = body.get(Constants.USER_ID);
+        Object tokenType = body.get(Constants.TOKEN_TYPE);
+        Object generation = body.get(Constants.TOKEN_GENERATION);
+        if (generation != null && !(generation instanceof Number)) {
+            throw new JwtTokenMalformedException("JWT声明类型不匹配: " + Constants.TOKEN_GENERATION);
+        }
+        Date expiration = body.getExpiration();
+        return new ParsedToken(
+                userId == null ? null : userId.toString(),
+                tokenType == null ? null : parseTokenType(tokenType.toString()),
+                body.getId(),
+                generation == null ? 0 : ((Number) generation).intValue(),
+                parsePermissions(body.get(Constants.PERMISSION_VERSION), body.get(Constants.PERMISSIONS)),
+                expiration == null ? Long.MAX_VALUE : expiration.getTime(),
+                Collections.unmodifiableMap(new LinkedHashMap<>(body)));
+    }
+
+    /**
+     * 根据紧凑令牌中的字段构造，声明集合与同样内容的JWT保持一致
+     */
+    static ParsedToken fromCompact(String userId, TokenType tokenType, String tokenId, int generation,
+                                   PermissionSet permissions, long authTime, long expiresAt) {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", userId);
+        claims.put(Constants.USER_ID, userId);
+        claims.put(Constants.TOKEN_GENERATION, generation);
+        claims.put(Constants.TOKEN_TYPE, tokenType == null ? null : tokenType.name());
+        claims.put(Constants.TOKEN_ID, tokenId);
+        if (permissions != null) {
+            claims.put(Constants.PERMISSION_VERSION, permissions.getCatalogVersion());
+            claims.put(Constants.PERMISSIONS, permissions.encode());
+        }
+        if (authTime > 0) {
+            claims.put(Constants.AUTH_TIME, jsonNumber(authTime / 1000L));
+        }
+        if (expiresAt != Long.MAX_VALUE) {
+            claims.put("exp", jsonNumber(expiresAt / 1000L));
+        }
+        return new ParsedToken(userId, tokenType, tokenId, generation, permissions, expiresAt,
+                Collections.unmodifiableMap(claims));
+    }
+
+    /**
+     * 获取用户ID
+     *
+     * @return 用户ID，令牌中没有该声明时返回null
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * 获取令牌类型
+     *
+     * @return 令牌类型，令牌中没有该声明时返回null
+     */
+    public TokenType getTokenType() {
+        return tokenType;
+    }
+
+    /**
+     * 获取令牌ID
+     *
+     * @return 令牌ID（jti），令牌中没有该声明时返回null
+     */
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    /**
+     * 获取令牌代数
+     *
+     * @return 令牌代数，令牌中没有该声明时返回0
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * 获取权限位图
+     *
+     * @return 权限位图，令牌中没有权限声明时返回null
+     */
+    public PermissionSet getPermissions() {
+        return permissions;
+    }
+
+    /**
+     * 获取过期时间（毫秒时间戳）
+     *
+     * @return 过期时间
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * 获取过期时间
+     *
+     * @return 过期时间，令牌中没有exp声明时返回null
+     */
+    public Date getExpiration() {
+        return expiresAt == Long.MAX_VALUE ? null : new Date(expiresAt);
+    }
+
+    /**
+     * 判断令牌在指定时刻是否已过期
+     *
+     * @param now 当前毫秒时间戳
+     * @return true表示已过期
+     */
+    public boolean isExpired(long now) {
+        return now > expiresAt;
+    }
+
+    /**
+     * 获取认证时间（毫秒时间戳）
+     *
+     * 读取 auth_time 声明，JWT令牌在首次读取时才从载荷中解码
+     *
+     * @return 认证时间，令牌中没有该声明时返回0
+     * @throws JwtTokenMalformedException 当声明不是数字时抛出
+     */
+    public long getAuthTime() {
+        Number authTime = getClaim(Constants.AUTH_TIME, Number.class);
+        return authTime == null ? 0L : authTime.longValue() * 1000L;
+    }
+
+    /**
+     * 获取全部声明（只读）
+     *
+     * 首次调用时解码载荷并缓存结果
+     *
+     * @return 声明集合
+     * @throws JwtTokenMalformedException 当载荷无法解码时抛出
+     */
+    public Map<String, Object> getClaims() {
+        Map<String, Object> result = claims;
+        if (result == null) {
+            result = Collections.unmodifiableMap(decodeAll());
+            claims = result;
+        }
+        return result;
+    }
+
+    /**
+     * 获取指定声明
+     *
+     * 全部声明尚未解码时，只流式扫描载荷读取这一个声明
+     *
+     * @param name 声明名称
+     * @return 声明值，不存在时返回null
+     * @throws JwtTokenMalformedException 当载荷无法解码时抛出
+     */
+    public Object getClaim(String name) {
+        Map<String, Object> decoded = claims;
+        return decoded != null ? decoded.get(name) : decodeOne(name);
+    }
+
+    /**
+     * 获取指定类型的声明
+     *
+     * @param <T> 声明类型
+     * @param name 声明名称
+     * @param requiredType 期望的类型
+     * @return 声明值，不存在时返回null
+     * @throws JwtTokenMalformedException 当声明值类型与期望类型不一致时抛出
+     */
+    public <T> T getClaim(String name, Class<T> requiredType) {
+        Object value = getClaim(name);
+        if (value == null) {
+            return null;
+        }
+        if (!requiredType.isInstance(value)) {
+            throw new JwtTokenMalformedException("JWT声明类型不匹配: " + name);
+        }
+        return requiredType.cast(value);
+    }
+
+    /**
+     * 与Jackson解码JSON数字的结果保持一致
+     */
+    private static Object jsonNumber(long seconds) {
+        return seconds >= Integer.MIN_VALUE && seconds <= Integer.MAX_VALUE
+                ? (Object) (int) seconds : (Object) seconds;
+    }
+
+    static TokenType parseTokenType(String value) {
+        try {
+            return TokenType.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            throw new JwtTokenMalformedException("无法识别的令牌类型: " + value, e);
+        }
+    }
+
+    /**
+     * 由 pv 和 perm 声明构造权限位图，两者缺一时返回null
+     *
+     * @throws JwtTokenMalformedException 当声明类型或编码错误时抛出
+     */
+    static PermissionSet parsePermissions(Object version, Object bits) {
+        if (version == null || bits == null) {
+            return null;
+        }
+        if (!(version instanceof Number) || !(bits instanceof String)) {
+            throw new JwtTokenMalformedException("JWT声明类型不匹配: " + Constants.PERMISSIONS);
+        }
+        try {
+            return PermissionSet.decode(((Number) version).longValue(), (String) bits);
+        } catch (IllegalArgumentException e) {
+            throw new JwtTokenMalformedException("JWT权限声明编码错误", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> decodeAll() {
+        try {
+            return JacksonUtil.OBJECT_MAPPER.readValue(payload, LinkedHashMap.class);
+        } catch (IOException e) {
+            throw new JwtTokenMalformedException("JWT载荷解码失败: " + e.getMessage(), e);
+        }
+    }
+
+    private Object decodeOne(String name) {
+        try (JsonParser parser = JacksonUtil.OBJECT_MAPPER.getFactory().createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JwtTokenMalformedException("JWT载荷不是JSON对象");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (name.equals(field)) {
+                    return parser.readValueAs(Object.class);
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            throw new JwtTokenMalformedException("JWT载荷解码失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ParsedToken{" +
+                "userId='" + userId + '\'' +
+                ", tokenType=" + tokenType +
+                ", tokenId='" + tokenId + '\'' +
+                ", generation=" + generation +
+                ", permissions=" + permissions +
+                ", expiresAt=" + expiresAt +
+                '}';
+    }
+}
@@ -0,0 +1,96 @@
+package cn.gt.kaka.security.jwt;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * 令牌中携带的权限位图
+ *
+ * 第i位表示权限目录中第i个权限，目录由版本号唯一确定；
+ * 位图按字节小端排列（第i位位于第 i/8 个字节的第 i%8 位），末尾全0的字节不写入
+ *
+ * 在JWT中写为 pv（目录版本，数字）和 perm（位图的Base64URL编码）两个声明，
+ * 在紧凑令牌中写为两个二进制字段；位图的含义由 PermissionCatalog 解释，本类只负责携带
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public final class PermissionSet {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final long catalogVersion;
+
+    private final byte[] bits;
+
+    /**
+     * 构造权限位图
+     *
+     * @param catalogVersion 权限目录版本
+     * @param bits 位图，调用方不应再修改
+     */
+    public PermissionSet(long catalogVersion, byte[] bits) {
+        this.catalogVersion = catalogVersion;
+        this.bits = bits;
+    }
+
+    /**
+     * 从令牌声明解码
+     *
+     * @param catalogVersion 权限目录版本
+     * @param encoded 位图的Base64URL编码
+     * @return 权限位图
+     * @throws IllegalArgumentException 当编码不合法时抛出
+     */
+    public static PermissionSet decode(long catalogVersion, String encoded) {
+        return new PermissionSet(catalogVersion, DECODER.decode(encoded));
+    }
+
+    public long getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    /**
+     * 判断第i位是否置位
+     *
+     * @param index 权限在目录中的下标
+     * @return true表示拥有该权限
+     */
+    public boolean get(int index) {
+        int offset = index >>> 3;
+        return offset < bits.length && (bits[offset] & (1 << (index & 7))) != 0;
+    }
+
+    /**
+     * 位图覆盖的位数（字节数乘8），大于该值的位均为0
+     *
+     * @return 位数
+     */
+    public int length() {
+        return bits.length << 3;
+    }
+
+    /**
+     * 位图的Base64URL编码，即 perm 声明的值
+     *
+     * @return 编码后的位图
+     */
+    public String encode() {
+        return ENCODER.encodeToString(bits);
+    }
+
+    byte[] bytes() {
+        return bits;
+    }
+
+    @Override
+    public String toString() {
+        return "PermissionSet{" +
+                "catalogVersion=" + catalogVersion +
+                ", bits=" + Arrays.toString(bits) +
+                '}';
+    }
+}
@@ -0,0 +1,50 @@
+package cn.gt.kaka.security.jwt;
+
+/**
+ * 令牌编码格式
+ *
+ * 客户端在登录请求头 {@link #HEADER_NAME} 中指定，未指定时使用JWT；
+ * 刷新令牌时沿用所提交刷新令牌的格式，校验时按令牌前缀自动识别
+ * 紧凑格式需要服务端开启 jwt.compact.enabled，未开启时一律签发JWT
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public enum TokenFormat {
+
+    /**
+     * 标准JWS紧凑格式，可与其他JWT库互通
+     */
+    JWT,
+
+    /**
+     * 本系统专用的二进制紧凑格式，体积约为JWT的三分之一，解析不需要JSON
+     */
+    COMPACT;
+
+    /**
+     * 客户端选择令牌格式的请求头
+     */
+    public static final String HEADER_NAME = "X-Token-Format";
+
+    /**
+     * 根据请求头取值选择格式
+     *
+     * @param value 请求头取值，忽略大小写
+     * @return 令牌格式，为空或无法识别时返回JWT
+     */
+    public static TokenFormat fromHeader(String value) {
+        return value != null && COMPACT.name().equalsIgnoreCase(value.trim()) ? COMPACT : JWT;
+    }
+
+    /**
+     * 根据令牌内容识别格式
+     *
+     * @param token 令牌
+     * @return 令牌格式
+     */
+    public static TokenFormat of(String token) {
+        return token != null && token.startsWith(CompactTokenCodec.PREFIX) ? COMPACT : JWT;
+    }
+}
@@ -0,0 +1,38 @@
+package cn.gt.kaka.security.jwt;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 一次签发的访问令牌和刷新令牌
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Getter
+@ToString(exclude = {"accessToken", "refreshToken"})
+@AllArgsConstructor
+public final class TokenPair {
+
+    /**
+     * 访问令牌
+     */
+    private final String accessToken;
+
+    /**
+     * 刷新令牌
+     */
+    private final String refreshToken;
+
+    /**
+     * 访问令牌过期时间（毫秒时间戳）
+     */
+    private final long accessExpiresAt;
+
+    /**
+     * 刷新令牌过期时间（毫秒时间戳）
+     */
+    private final long refreshExpiresAt;
+}
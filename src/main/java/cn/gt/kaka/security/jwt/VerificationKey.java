@@ -0,0 +1,100 @@
+package cn.gt.kaka.security.jwt;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+
+/**
+ * 密钥环中的验签公钥
+ *
+ * 公钥在加入密钥环时解析一次，每个线程缓存一个已 initVerify 的Signature实例，
+ * 验签时只需 update + verify，密钥数量和轮换不影响单次验签开销
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public final class VerificationKey {
+
+    private final String keyId;
+
+    private final JwsAlgorithm algorithm;
+
+    private final PublicKey publicKey;
+
+    private final ThreadLocal<Signature> verifiers;
+
+    /**
+     * 构造验签公钥
+     *
+     * @param keyId 密钥ID，对应令牌头部的kid
+     * @param algorithm 非对称签名算法
+     * @param publicKey 公钥
+     * @throws IllegalArgumentException 当算法不是非对称算法或公钥与算法不匹配时抛出
+     */
+    public VerificationKey(String keyId, JwsAlgorithm algorithm, PublicKey publicKey) {
+        if (!algorithm.isAsymmetric()) {
+            throw new IllegalArgumentException("密钥环只接受非对称签名算法: " + algorithm);
+        }
+        this.keyId = keyId;
+        this.algorithm = algorithm;
+        this.publicKey = publicKey;
+        // 先初始化一次，公钥与算法不匹配时立即失败
+        newVerifier();
+        this.verifiers = ThreadLocal.withInitial(this::newVerifier);
+    }
+
+    public String getKeyId() {
+        return keyId;
+    }
+
+    public JwsAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    /**
+     * 校验JWS签名
+     *
+     * @param data 签名输入所在的字节数组
+     * @param offset 起始偏移
+     * @param length 长度
+     * @param signature JWS格式的签名（ES256为 r||s）
+     * @return true表示签名有效
+     */
+    public boolean verify(byte[] data, int offset, int length, byte[] signature) {
+        byte[] jcaSignature = signature;
+        if (algorithm == JwsAlgorithm.ES256) {
+            if (signature.length != 64) {
+                return false;
+            }
+            jcaSignature = EcdsaTranscoder.joseToDer(signature);
+        }
+
+        Signature verifier = verifiers.get();
+        try {
+            verifier.update(data, offset, length);
+            // verify 完成后Signature回到 initVerify 之后的状态，可直接复用
+            return verifier.verify(jcaSignature);
+        } catch (SignatureException e) {
+            // 签名编码异常时实例状态不确定，丢弃后重新创建
+            verifiers.remove();
+            return false;
+        }
+    }
+
+    private Signature newVerifier() {
+        try {
+            Signature verifier = algorithm.newSignature();
+            verifier.initVerify(publicKey);
+            return verifier;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("无法使用密钥 " + keyId + " 初始化 " + algorithm + " 验签: "
+                    + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package cn.gt.kaka.security.password;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.scrypt.SCryptPasswordEncoder;
+import org.springframework.util.ClassUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按目标耗时选择工作因子的密码编码器
+ *
+ * 新哈希使用配置的算法和工作因子，以 {id} 前缀写入，例如 {bcrypt}$2a$12$...；
+ * 校验时按前缀选择算法，工作因子从哈希中读取，因此任何算法、任何工作因子的已有哈希都能校验，
+ * 没有前缀的旧哈希按BCrypt校验
+ *
+ * 工作因子可以固定配置，也可以在启动时由 {@link #calibrate} 实测本机后选择，
+ * 使单次哈希耗时接近目标值：硬件变快时自动提高，变慢时降低，登录的CPU开销保持可预期
+ *
+ * 登录成功后用 {@link #needsRehash} 判断存储的哈希是否需要按当前参数重新计算：
+ * 算法不同、没有前缀，或工作因子对应的耗时与当前参数相差超过一倍时需要；
+ * 相差一倍以内不重新计算，避免校准结果略有差异的节点之间来回改写同一用户的哈希
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+public final class AdaptivePasswordEncoder implements PasswordEncoder {
+
+    static final int MIN_BCRYPT_COST = 10;
+    static final int MAX_BCRYPT_COST = 16;
+
+    static final int MIN_PBKDF2_ITERATIONS = 50_000;
+    static final int MAX_PBKDF2_ITERATIONS = 5_000_000;
+
+    /**
+     * scrypt的N取值范围，r=8时每次哈希占用内存为 128*N*r 字节，上限为64MB
+     */
+    static final int MIN_SCRYPT_LOG_N = 14;
+    static final int MAX_SCRYPT_LOG_N = 16;
+
+    private static final int SCRYPT_BLOCK_SIZE = 8;
+    private static final int SCRYPT_PARALLELIZATION = 1;
+    private static final int SCRYPT_KEY_LENGTH = 32;
+    private static final int SCRYPT_SALT_LENGTH = 16;
+
+    private static final boolean SCRYPT_PRESENT =
+            ClassUtils.isPresent("org.bouncycastle.crypto.generators.SCrypt", AdaptivePasswordEncoder.class.getClassLoader());
+
+    private final PasswordHashAlgorithm algorithm;
+
+    private final int workFactor;
+
+    private final DelegatingPasswordEncoder delegate;
+
+    /**
+     * 以固定的工作因子构造
+     *
+     * @param algorithm 新哈希使用的算法
+     * @param workFactor 工作因子：BCrypt为cost，PBKDF2为迭代次数，scrypt为log2(N)
+     * @throws IllegalStateException 当选择scrypt但缺少BouncyCastle时抛出
+     */
+    public AdaptivePasswordEncoder(PasswordHashAlgorithm algorithm, int workFactor) {
+        if (algorithm == PasswordHashAlgorithm.SCRYPT && !SCRYPT_PRESENT) {
+            throw new IllegalStateException("scrypt需要BouncyCastle（org.bouncycastle:bcprov-jdk15on）");
+        }
+        this.algorithm = algorithm;
+        this.workFactor = workFactor;
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(
+                algorithm == PasswordHashAlgorithm.BCRYPT ? workFactor : MIN_BCRYPT_COST);
+        encoders.put(PasswordHashAlgorithm.BCRYPT.getId(), bcrypt);
+        encoders.put(PasswordHashAlgorithm.PBKDF2.getId(), new Pbkdf2Sha256PasswordEncoder(
+                algorithm == PasswordHashAlgorithm.PBKDF2 ? workFactor : MIN_PBKDF2_ITERATIONS));
+        if (SCRYPT_PRESENT) {
+            encoders.put(PasswordHashAlgorithm.SCRYPT.getId(), scryptEncoder(
+                    algorithm == PasswordHashAlgorithm.SCRYPT ? workFactor : MIN_SCRYPT_LOG_N));
+        }
+        this.delegate = new DelegatingPasswordEncoder(algorithm.getId(), encoders);
+        // 引入前缀之前存储的哈希都是BCrypt
+        this.delegate.setDefaultPasswordEncoderForMatches(bcrypt);
+    }
+
+    /**
+     * 实测本机后选择工作因子并构造
+     *
+     * @param algorithm 新哈希使用的算法
+     * @param targetMillis 单次哈希的目标耗时（毫秒）
+     * @return 密码编码器
+     */
+    public static AdaptivePasswordEncoder calibrate(PasswordHashAlgorithm algorithm, long targetMillis) {
+        long start = System.currentTimeMillis();
+        int workFactor = WorkFactorCalibrator.calibrate(algorithm, targetMillis);
+        AdaptivePasswordEncoder encoder = new AdaptivePasswordEncoder(algorithm, workFactor);
+        log.info("密码哈希参数校准完成: 算法={}, 工作因子={}, 目标耗时={}ms, 实测耗时={}ms, 校准用时={}ms",
+                algorithm.getId(), workFactor, targetMillis,
+                String.format("%.1f", WorkFactorCalibrator.measure(encoder)), System.currentTimeMillis() - start);
+        return encoder;
+    }
+
+    public PasswordHashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getWorkFactor() {
+        return workFactor;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return delegate.matches(rawPassword, encodedPassword);
+    }
+
+    /**
+     * 判断已校验通过的哈希是否需要按当前算法和工作因子重新计算
+     *
+     * @param encodedPassword 存储的哈希
+     * @return true表示应在登录成功后用明文密码重新计算并保存
+     */
+    public boolean needsRehash(String encodedPassword) {
+        if (encodedPassword == null || !encodedPassword.startsWith("{")) {
+            return encodedPassword != null;
+        }
+        int end = encodedPassword.indexOf('}');
+        if (end < 0 || !algorithm.getId().equals(encodedPassword.substring(1, end))) {
+            return true;
+        }
+
+        String hash = encodedPassword.substring(end + 1);
+        switch (algorithm) {
+            case BCRYPT:
+                return outsideTolerance(logScaleFactor(hash, 4));
+            case SCRYPT:
+                return outsideTolerance(scryptLogN(hash));
+            case PBKDF2:
+                int iterations = Pbkdf2Sha256PasswordEncoder.iterationsOf(hash);
+                return iterations > 0 && (iterations * 2L < workFactor || iterations > workFactor * 2L);
+            default:
+                return false;
+        }
+    }
+
+    static SCryptPasswordEncoder scryptEncoder(int logN) {
+        return new SCryptPasswordEncoder(1 << logN, SCRYPT_BLOCK_SIZE, SCRYPT_PARALLELIZATION,
+                SCRYPT_KEY_LENGTH, SCRYPT_SALT_LENGTH);
+    }
+
+    /**
+     * 对数型工作因子相差2及以上（耗时相差超过一倍）时需要重新计算，无法解析时不处理
+     */
+    private boolean outsideTolerance(int stored) {
+        return stored >= 0 && Math.abs(stored - workFactor) >= 2;
+    }
+
+    /**
+     * 读取BCrypt哈希 $2a$10$... 中的cost
+     */
+    private static int logScaleFactor(String hash, int offset) {
+        try {
+            return hash.length() < offset + 2 ? -1 : Integer.parseInt(hash.substring(offset, offset + 2));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 读取scrypt哈希 $参数$盐$密钥 中的log2(N)，参数为十六进制的 log2(N)<<16 | r<<8 | p
+     */
+    private static int scryptLogN(String hash) {
+        String[] parts = hash.split("\\$");
+        if (parts.length != 4) {
+            return -1;
+        }
+        try {
+            return (int) (Long.parseLong(parts[1], 16) >> 16 & 0xFFFF);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package cn.gt.kaka.security.password;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * 登录凭据摘要
+ *
+ * 以 HMAC-SHA256(用户名长度 + 用户名 + 密码) 标识一组凭据，用作内存中缓存和调用合并的键，
+ * 使内存中不保存明文密码或无密钥的密码摘要。HMAC密钥在启动时随机生成、只存在于内存中，
+ * 因此摘要只在本进程内有意义，不能持久化或跨节点比较
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public final class CredentialDigest {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final SecretKeySpec KEY;
+
+    private static final ThreadLocal<Mac> MACS;
+
+    static {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        KEY = new SecretKeySpec(secret, HMAC_ALGORITHM);
+        MACS = ThreadLocal.withInitial(CredentialDigest::newMac);
+    }
+
+    private CredentialDigest() {
+        throw new AssertionError("CredentialDigest工具类不应被实例化");
+    }
+
+    /**
+     * 计算凭据摘要
+     *
+     * 用户名前写入其字节长度，避免不同的用户名和密码拼接出相同的输入
+     *
+     * @param username 用户名
+     * @param rawPassword 原始密码
+     * @return Base64编码的摘要
+     */
+    public static String of(String username, String rawPassword) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        Mac mac = MACS.get();
+        mac.update(ByteBuffer.allocate(Integer.BYTES).putInt(name.length).array());
+        mac.update(name);
+        return Base64.getEncoder().encodeToString(mac.doFinal(rawPassword.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(KEY);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("当前JVM不支持" + HMAC_ALGORITHM, e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package cn.gt.kaka.security.password;
+
+/**
+ * 密码哈希算法
+ *
+ * 存储的哈希以 {id} 前缀标明算法，没有前缀的旧哈希按BCrypt处理
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public enum PasswordHashAlgorithm {
+
+    /**
+     * BCrypt，工作因子为cost（每加1耗时翻倍），写在哈希中
+     */
+    BCRYPT("bcrypt"),
+
+    /**
+     * PBKDF2-HMAC-SHA256，工作因子为迭代次数，写在哈希中
+     */
+    PBKDF2("pbkdf2-sha256"),
+
+    /**
+     * scrypt，工作因子为CPU/内存开销N的以2为底的对数，写在哈希中；需要BouncyCastle
+     */
+    SCRYPT("scrypt");
+
+    private final String id;
+
+    PasswordHashAlgorithm(String id) {
+        this.id = id;
+    }
+
+    /**
+     * 获取写在哈希前缀中的算法ID
+     *
+     * @return 算法ID
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 根据算法ID或枚举名查找算法
+     *
+     * @param value 算法ID或枚举名，忽略大小写
+     * @return 算法
+     * @throws IllegalArgumentException 当算法不受支持时抛出
+     */
+    public static PasswordHashAlgorithm of(String value) {
+        for (PasswordHashAlgorithm algorithm : values()) {
+            if (algorithm.id.equalsIgnoreCase(value) || algorithm.name().equalsIgnoreCase(value)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("不支持的密码哈希算法: " + value);
+    }
+}
@@ -0,0 +1,101 @@
+package cn.gt.kaka.security.password;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PBKDF2-HMAC-SHA256密码编码器
+ *
+ * 哈希格式为 迭代次数$盐$派生密钥（盐和密钥为Base64），迭代次数写在哈希中，
+ * 调整迭代次数后旧哈希仍能校验；Spring Security自带的 Pbkdf2PasswordEncoder 不保存迭代次数，因此不使用
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public final class Pbkdf2Sha256PasswordEncoder implements PasswordEncoder {
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+
+    private static final int SALT_LENGTH = 16;
+
+    private static final int KEY_LENGTH_BITS = 256;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final int iterations;
+
+    /**
+     * 构造编码器
+     *
+     * @param iterations 新哈希使用的迭代次数
+     */
+    public Pbkdf2Sha256PasswordEncoder(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return iterations + "$" + encoder.encodeToString(salt) + "$"
+                + encoder.encodeToString(derive(rawPassword, salt, iterations));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        String[] parts = encodedPassword == null ? null : encodedPassword.split("\\$");
+        if (parts == null || parts.length != 3) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[0]);
+            Base64.Decoder decoder = Base64.getDecoder();
+            byte[] expected = decoder.decode(parts[2]);
+            return MessageDigest.isEqual(expected, derive(rawPassword, decoder.decode(parts[1]), storedIterations));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 读取哈希中的迭代次数
+     *
+     * @param encodedPassword 不含 {id} 前缀的哈希
+     * @return 迭代次数，格式错误时返回-1
+     */
+    static int iterationsOf(String encodedPassword) {
+        int end = encodedPassword.indexOf('$');
+        try {
+            return end <= 0 ? -1 : Integer.parseInt(encodedPassword.substring(0, end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] derive(CharSequence rawPassword, byte[] salt, int iterations) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("迭代次数必须大于0");
+        }
+        char[] password = rawPassword.toString().toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, KEY_LENGTH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2计算失败: " + e.getMessage(), e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package cn.gt.kaka.security.password;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * 工作因子校准
+ *
+ * 在本机上以较低的工作因子实测单次哈希耗时，按各算法的耗时增长规律外推，
+ * 选出耗时不超过目标值的最大工作因子，并限制在安全下限和资源上限之间：
+ * - BCrypt：cost每加1耗时翻倍
+ * - PBKDF2：耗时与迭代次数成正比，结果取整到1000
+ * - scrypt：耗时和内存与N成正比，N取2的幂
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+final class WorkFactorCalibrator {
+
+    private static final String SAMPLE_PASSWORD = "calibration-Pa55word";
+
+    private static final int BCRYPT_PROBE_COST = 8;
+
+    private static final int PBKDF2_PROBE_ITERATIONS = 10_000;
+
+    private static final int SCRYPT_PROBE_LOG_N = 12;
+
+    /**
+     * 每个工作因子测量的次数，取最短耗时，排除GC和调度的干扰
+     */
+    private static final int ROUNDS = 3;
+
+    private WorkFactorCalibrator() {
+        throw new AssertionError("WorkFactorCalibrator工具类不应被实例化");
+    }
+
+    /**
+     * 为算法选择工作因子
+     *
+     * @param algorithm 密码哈希算法
+     * @param targetMillis 单次哈希的目标耗时（毫秒）
+     * @return 工作因子：BCrypt为cost，PBKDF2为迭代次数，scrypt为log2(N)
+     */
+    static int calibrate(PasswordHashAlgorithm algorithm, long targetMillis) {
+        switch (algorithm) {
+            case BCRYPT: {
+                double probe = measure(new BCryptPasswordEncoder(BCRYPT_PROBE_COST));
+                int cost = AdaptivePasswordEncoder.MIN_BCRYPT_COST;
+                while (cost < AdaptivePasswordEncoder.MAX_BCRYPT_COST
+                        && probe * (1L << (cost + 1 - BCRYPT_PROBE_COST)) <= targetMillis) {
+                    cost++;
+                }
+                return cost;
+            }
+            case PBKDF2: {
+                double probe = measure(new Pbkdf2Sha256PasswordEncoder(PBKDF2_PROBE_ITERATIONS));
+                long iterations = Math.round(targetMillis / probe * PBKDF2_PROBE_ITERATIONS / 1000D) * 1000L;
+                return (int) Math.max(AdaptivePasswordEncoder.MIN_PBKDF2_ITERATIONS,
+                        Math.min(AdaptivePasswordEncoder.MAX_PBKDF2_ITERATIONS, iterations));
+            }
+            case SCRYPT: {
+                double probe = measure(AdaptivePasswordEncoder.scryptEncoder(SCRYPT_PROBE_LOG_N));
+                int logN = AdaptivePasswordEncoder.MIN_SCRYPT_LOG_N;
+                while (logN < AdaptivePasswordEncoder.MAX_SCRYPT_LOG_N
+                        && probe * (1L << (logN + 1 - SCRYPT_PROBE_LOG_N)) <= targetMillis) {
+                    logN++;
+                }
+                return logN;
+            }
+            default:
+                throw new IllegalArgumentException("不支持的密码哈希算法: " + algorithm);
+        }
+    }
+
+    /**
+     * 测量单次哈希耗时
+     *
+     * @param encoder 密码编码器
+     * @return 多次测量中的最短耗时（毫秒）
+     */
+    static double measure(PasswordEncoder encoder) {
+        // 预热一次，排除类加载和JIT编译
+        encoder.encode(SAMPLE_PASSWORD);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1_000_000D;
+    }
+}
@@ -0,0 +1,309 @@
+package cn.gt.kaka.security.permission;
+
+import cn.gt.kaka.cache.RolePermissionCache;
+import cn.gt.kaka.dao.UserDao;
+import cn.gt.kaka.model.UserDto;
+import cn.gt.kaka.security.jwt.ParsedToken;
+import cn.gt.kaka.security.jwt.PermissionSet;
+import cn.gt.kaka.util.Hashing;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 权限目录
+ *
+ * t_permission 中全部权限按id排序后的列表，第i个权限对应令牌权限位图的第i位
+ * 签发访问令牌时把用户权限编码为位图写入令牌（pv、perm声明），
+ * 认证时直接用位图和预先构造的 GrantedAuthority 实例组装权限集合，不查询数据库也不查询缓存
+ *
+ * 目录版本：
+ * - 版本号是权限代码列表的64位内容哈希，各节点只要读到相同的权限表就得到相同的版本，无需协调
+ * - 权限表变化后，重新加载得到新版本；最近的若干个版本保留在内存中，旧版本签发的令牌仍按旧目录解释
+ * - 令牌的目录版本不在内存中（太旧，或其他节点已加载而本节点尚未加载的新版本）、
+ *   令牌中没有权限声明（未开启或旧版本签发）时，回退为查询数据库
+ *
+ * 令牌中的权限是签发时的快照，与令牌其他声明一样在过期前有效；
+ * 需要立即收回权限时应递增用户的令牌代数，使其重新登录
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@Component
+public class PermissionCatalog implements MeterBinder {
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private RolePermissionCache rolePermissionCache;
+
+    /**
+     * 是否在访问令牌中写入权限位图
+     */
+    @Value("${jwt.permission.embed:true}")
+    private boolean embed;
+
+    /**
+     * 从数据库重新加载权限目录的间隔（秒），0表示只在启动时加载
+     */
+    @Value("${jwt.permission.reloadInterval:300}")
+    private long reloadInterval;
+
+    /**
+     * 内存中保留的目录版本数，包括当前版本
+     */
+    @Value("${jwt.permission.retainedVersions:4}")
+    private int retainedVersions;
+
+    /**
+     * 保留的目录版本，最新的在前，整体替换
+     */
+    private volatile Catalog[] catalogs = new Catalog[0];
+
+    private final LongAdder tokenResolves = new LongAdder();
+
+    private final LongAdder databaseResolves = new LongAdder();
+
+    private ScheduledExecutorService reloader;
+
+    /**
+     * 启动时加载权限目录，并按配置启动定期重新加载
+     */
+    @PostConstruct
+    public void init() {
+        reload();
+        if (reloadInterval > 0) {
+            reloader = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("permission-catalog-"));
+            reloader.scheduleWithFixedDelay(this::reloadQuietly, reloadInterval, reloadInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    /**
+     * 从数据库重新加载权限目录
+     *
+     * 内容未变化时不产生新版本
+     *
+     * @throws RuntimeException 当数据库访问出现异常时抛出
+     */
+    public synchronized void reload() {
+        Catalog loaded = new Catalog(userDao.findAllPermissionCodes());
+        Catalog[] current = catalogs;
+        for (Catalog catalog : current) {
+            if (catalog.version == loaded.version) {
+                return;
+            }
+        }
+
+        Catalog[] updated = new Catalog[Math.min(current.length + 1, Math.max(1, retainedVersions))];
+        updated[0] = loaded;
+        System.arraycopy(current, 0, updated, 1, updated.length - 1);
+        catalogs = updated;
+        log.info("权限目录已加载: 版本={}, 权限数={}, 保留版本数={}",
+                loaded.version, loaded.authorities.length, updated.length);
+    }
+
+    /**
+     * 查询用户权限并编码为位图，供签发访问令牌使用
+     *
+     * @param userId 用户ID
+     * @return 权限位图；未开启权限内嵌，或用户拥有目录中不存在的权限时返回null，此时令牌不携带权限
+     * @throws RuntimeException 当数据库访问出现异常时抛出
+     */
+    public PermissionSet permissionsOf(String userId) {
+        if (!embed || userId == null) {
+            return null;
+        }
+        return encode(userId, rolePermissionCache.permissionsOf(userId));
+    }
+
+    /**
+     * 编码用户权限为位图，用户信息中已加载权限代码时不再查询数据库
+     *
+     * @param user 用户信息
+     * @return 权限位图；未开启权限内嵌，或用户拥有目录中不存在的权限时返回null，此时令牌不携带权限
+     * @throws RuntimeException 当需要查询数据库且数据库访问出现异常时抛出
+     */
+    public PermissionSet permissionsOf(UserDto user) {
+        if (!embed || user.getPermissions() == null) {
+            return permissionsOf(user.getId());
+        }
+        return encode(user.getId(), user.getPermissions());
+    }
+
+    private PermissionSet encode(String userId, List<String> codes) {
+        PermissionSet permissions = catalogs[0].encode(codes);
+        if (permissions == null) {
+            // 用户权限中有目录加载之后新增的权限，重新加载一次目录
+            reload();
+            permissions = catalogs[0].encode(codes);
+            if (permissions == null) {
+                log.warn("用户权限不在权限目录中，令牌不携带权限: userId={}, permissions={}", userId, codes);
+            }
+        }
+        return permissions;
+    }
+
+    /**
+     * 获取令牌对应的权限集合
+     *
+     * 优先按令牌中的权限位图组装；令牌没有权限声明或目录版本未知时查询数据库
+     *
+     * @param parsedToken 已校验的访问令牌
+     * @return 只读的权限集合
+     * @throws RuntimeException 当需要查询数据库且数据库访问出现异常时抛出
+     */
+    public Collection<GrantedAuthority> authoritiesOf(ParsedToken parsedToken) {
+        PermissionSet permissions = parsedToken.getPermissions();
+        if (permissions != null) {
+            for (Catalog catalog : catalogs) {
+                if (catalog.version == permissions.getCatalogVersion()) {
+                    Collection<GrantedAuthority> authorities = catalog.decode(permissions);
+                    if (authorities != null) {
+                        tokenResolves.increment();
+                        return authorities;
+                    }
+                    break;
+                }
+            }
+            log.debug("令牌的权限目录版本未知，查询数据库: userId={}, 版本={}",
+                    parsedToken.getUserId(), permissions.getCatalogVersion());
+        }
+
+        databaseResolves.increment();
+        return toAuthorities(rolePermissionCache.permissionsOf(parsedToken.getUserId()));
+    }
+
+    /**
+     * 把权限代码转换为权限集合，目录中已有的权限复用预先构造的实例
+     *
+     * @param codes 权限代码
+     * @return 只读的权限集合
+     */
+    public Collection<GrantedAuthority> toAuthorities(Collection<String> codes) {
+        Catalog catalog = catalogs[0];
+        List<GrantedAuthority> authorities = new ArrayList<>(codes.size());
+        for (String code : codes) {
+            authorities.add(catalog.authority(code));
+        }
+        return Collections.unmodifiableList(authorities);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jwt.permission.resolves", tokenResolves, LongAdder::sum)
+                .tag("source", "token")
+                .description("由令牌权限位图组装权限的次数")
+                .register(registry);
+        FunctionCounter.builder("jwt.permission.resolves", databaseResolves, LongAdder::sum)
+                .tag("source", "database")
+                .description("回退为查询数据库获取权限的次数")
+                .register(registry);
+        Gauge.builder("jwt.permission.catalog.size", this, c -> c.catalogs[0].authorities.length)
+                .description("当前权限目录中的权限数")
+                .register(registry);
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            log.error("重新加载权限目录失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 一个版本的权限目录，创建后不再修改
+     */
+    private static final class Catalog {
+
+        private final long version;
+
+        private final GrantedAuthority[] authorities;
+
+        private final Map<String, Integer> indexes;
+
+        Catalog(List<String> codes) {
+            StringBuilder content = new StringBuilder(codes.size() * 16);
+            authorities = new GrantedAuthority[codes.size()];
+            indexes = new HashMap<>(codes.size() * 2);
+            for (int i = 0; i < authorities.length; i++) {
+                String code = codes.get(i);
+                content.append(code).append('\n');
+                authorities[i] = new SimpleGrantedAuthority(code);
+                indexes.put(code, i);
+            }
+            version = Hashing.hash64(content);
+        }
+
+        GrantedAuthority authority(String code) {
+            Integer index = indexes.get(code);
+            return index == null ? new SimpleGrantedAuthority(code) : authorities[index];
+        }
+
+        /**
+         * @return 权限位图，有不在目录中的权限时返回null
+         */
+        PermissionSet encode(Collection<String> codes) {
+            byte[] bits = new byte[(authorities.length + 7) >>> 3];
+            int used = 0;
+            for (String code : codes) {
+                Integer index = indexes.get(code);
+                if (index == null) {
+                    return null;
+                }
+                bits[index >>> 3] |= (byte) (1 << (index & 7));
+                used = Math.max(used, (index >>> 3) + 1);
+            }
+            return new PermissionSet(version, used == bits.length ? bits : Arrays.copyOf(bits, used));
+        }
+
+        /**
+         * @return 权限集合，位图中有超出目录范围的位时返回null
+         */
+        Collection<GrantedAuthority> decode(PermissionSet permissions) {
+            int length = permissions.length();
+            List<GrantedAuthority> granted = new ArrayList<>();
+            for (int i = 0; i < length; i++) {
+                if (permissions.get(i)) {
+                    if (i >= authorities.length) {
+                        return null;
+                    }
+                    granted.add(authorities[i]);
+                }
+            }
+            return Collections.unmodifiableList(granted);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package cn.gt.kaka.security.revocation;
+
+import cn.gt.kaka.util.Hashing;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 字符串布隆过滤器
+ *
+ * 用于令牌撤销检查的前置过滤：绝大多数令牌没有被撤销，过滤器判定"一定不存在"时
+ * 只需计算一次哈希和读取几个位，不查询精确集合，也不分配任何对象
+ *
+ * 位数组使用 AtomicLongArray，写入对并发读取立即可见；
+ * 哈希采用双重哈希 h1 + i * h2，两个64位哈希由同一次遍历字符串得到
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+final class BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    private final int capacity;
+
+    /**
+     * 按预期元素数和误判率构造
+     *
+     * @param expectedEntries 预期元素数
+     * @param falsePositiveRate 期望误判率，取值 (0, 1)
+     */
+    BloomFilter(int expectedEntries, double falsePositiveRate) {
+        int n = Math.max(1, expectedEntries);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1L, (m + 63) >>> 6);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.capacity = n;
+    }
+
+    /**
+     * 预期元素数，元素数超过该值后误判率会明显上升
+     *
+     * @return 预期元素数
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 加入元素
+     *
+     * @param value 元素
+     */
+    void put(String value) {
+        long h1 = Hashing.hash64(value);
+        long h2 = Hashing.mix64(h1) | 1L;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    /**
+     * 判断元素是否可能存在
+     *
+     * @param value 元素
+     * @return false表示一定不存在，true表示可能存在
+     */
+    boolean mightContain(String value) {
+        long h1 = Hashing.hash64(value);
+        long h2 = Hashing.mix64(h1) | 1L;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
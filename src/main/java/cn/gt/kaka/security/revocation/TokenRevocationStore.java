@@ -0,0 +1,340 @@
+package cn.gt.kaka.security.revocation;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 令牌撤销列表
+ *
+ * 按令牌ID（jti）记录在过期前被撤销的令牌，请求认证时检查
+ *
+ * 查询路径：
+ * 1. 布隆过滤器判定一定不存在时直接返回，这是绝大多数请求的路径，不查询精确集合、不分配对象
+ * 2. 过滤器判定可能存在时再查精确集合 jti -> 过期时间，排除误判
+ *
+ * 条目在令牌自身的exp之后没有意义，后台定期清除过期条目并按剩余条目重建布隆过滤器；
+ * 撤销列表定期写入本地快照文件，启动时加载，服务重启后撤销依然有效
+ *
+ * 撤销是低频操作，写入路径加锁以保证与过滤器重建互斥；查询路径无锁
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@Component
+public class TokenRevocationStore implements MeterBinder {
+
+    /**
+     * 布隆过滤器预期条目数，实际条目超过该值时过滤器会按两倍容量重建
+     */
+    @Value("${jwt.revocation.expectedEntries:100000}")
+    private int expectedEntries;
+
+    /**
+     * 布隆过滤器误判率
+     */
+    @Value("${jwt.revocation.falsePositiveRate:0.01}")
+    private double falsePositiveRate;
+
+    /**
+     * 快照文件路径，绝对路径或相对 app.dataDir 的路径，为空时不持久化
+     */
+    @Value("${jwt.revocation.snapshotFile:}")
+    private String snapshotFile;
+
+    /**
+     * 应用数据目录（绝对路径），相对路径的快照文件按此目录解析
+     */
+    @Value("${app.dataDir:}")
+    private String dataDir;
+
+    /**
+     * 清除过期条目和写快照的间隔（秒）
+     */
+    @Value("${jwt.revocation.sweepInterval:60}")
+    private long sweepInterval;
+
+    /**
+     * 精确集合：jti -> 令牌过期时间（毫秒时间戳）
+     */
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private final Object writeLock = new Object();
+
+    private volatile BloomFilter filter;
+
+    /**
+     * 解析后的快照文件绝对路径，未配置快照文件时为null
+     */
+    private Path snapshotPath;
+
+    /**
+     * 自上次快照以来是否有变更
+     */
+    private volatile boolean dirty;
+
+    private ScheduledExecutorService sweeper;
+
+    private final LongAdder filterRejects = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder revokedHits = new LongAdder();
+
+    /**
+     * 加载快照并启动后台清理
+     *
+     * @throws IllegalStateException 当快照文件为相对路径而 app.dataDir 未配置或不是绝对路径时抛出
+     */
+    @PostConstruct
+    public void init() {
+        filter = new BloomFilter(expectedEntries, falsePositiveRate);
+        snapshotPath = resolveSnapshotPath();
+        if (snapshotPath == null) {
+            log.info("未配置令牌撤销快照文件，撤销记录不跨重启保留");
+        } else {
+            log.info("令牌撤销快照文件: {}", snapshotPath);
+        }
+        loadSnapshot();
+        sweeper = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("token-revocation-"));
+        sweeper.scheduleWithFixedDelay(this::sweepAndSnapshot, sweepInterval, sweepInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止后台清理并写入最终快照
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        snapshot();
+    }
+
+    /**
+     * 撤销令牌
+     *
+     * @param tokenId 令牌ID（jti）
+     * @param expiresAt 令牌过期时间（毫秒时间戳），过期后条目自动清除
+     * @return true表示本次调用撤销了该令牌，false表示令牌已被撤销、已过期或没有jti
+     */
+    public boolean revoke(String tokenId, long expiresAt) {
+        if (tokenId == null || expiresAt <= System.currentTimeMillis()) {
+            return false;
+        }
+        synchronized (writeLock) {
+            if (revoked.putIfAbsent(tokenId, expiresAt) != null) {
+                return false;
+            }
+            filter.put(tokenId);
+            if (revoked.size() > filter.capacity()) {
+                rebuildFilter();
+            }
+            dirty = true;
+        }
+        log.info("令牌已撤销: jti={}, 过期时间={}", tokenId, expiresAt);
+        return true;
+    }
+
+    /**
+     * 判断令牌是否已被撤销
+     *
+     * @param tokenId 令牌ID（jti），为null时视为未撤销
+     * @return true表示已撤销
+     */
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null) {
+            return false;
+        }
+        if (!filter.mightContain(tokenId)) {
+            filterRejects.increment();
+            return false;
+        }
+        if (revoked.containsKey(tokenId)) {
+            revokedHits.increment();
+            return true;
+        }
+        falsePositives.increment();
+        return false;
+    }
+
+    /**
+     * 当前撤销条目数
+     *
+     * @return 条目数
+     */
+    public int size() {
+        return revoked.size();
+    }
+
+    /**
+     * 清除已过期的条目，并按剩余条目重建布隆过滤器
+     *
+     * @return 清除的条目数
+     */
+    public int sweep() {
+        long now = System.currentTimeMillis();
+        synchronized (writeLock) {
+            int before = revoked.size();
+            revoked.values().removeIf(expiresAt -> expiresAt <= now);
+            int removed = before - revoked.size();
+            if (removed > 0) {
+                rebuildFilter();
+                dirty = true;
+                log.debug("清除过期撤销条目: {}, 剩余: {}", removed, revoked.size());
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * 把撤销列表写入快照文件
+     *
+     * 先写临时文件再原子替换，写入过程中崩溃不会损坏已有快照
+     */
+    public synchronized void snapshot() {
+        if (snapshotPath == null || !dirty) {
+            return;
+        }
+        dirty = false;
+        Path target = snapshotPath;
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> entry : revoked.entrySet()) {
+                    writer.write(Long.toString(entry.getValue()));
+                    writer.write('\t');
+                    writer.write(entry.getKey());
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            log.error("写入令牌撤销快照失败: {}, 原因: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jwt.token.revocation.checks", filterRejects, LongAdder::sum)
+                .tag("result", "filtered")
+                .description("布隆过滤器直接排除的撤销检查次数")
+                .register(registry);
+        FunctionCounter.builder("jwt.token.revocation.checks", falsePositives, LongAdder::sum)
+                .tag("result", "false_positive")
+                .description("布隆过滤器误判、需查询精确集合的撤销检查次数")
+                .register(registry);
+        FunctionCounter.builder("jwt.token.revocation.checks", revokedHits, LongAdder::sum)
+                .tag("result", "revoked")
+                .description("命中已撤销令牌的次数")
+                .register(registry);
+        Gauge.builder("jwt.token.revocation.size", revoked, Map::size)
+                .description("撤销列表当前条目数")
+                .register(registry);
+    }
+
+    private void sweepAndSnapshot() {
+        try {
+            sweep();
+            snapshot();
+        } catch (RuntimeException e) {
+            log.error("令牌撤销列表清理失败", e);
+        }
+    }
+
+    /**
+     * 重建布隆过滤器，调用方必须持有写锁
+     */
+    private void rebuildFilter() {
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, revoked.size() * 2), falsePositiveRate);
+        for (String tokenId : revoked.keySet()) {
+            rebuilt.put(tokenId);
+        }
+        filter = rebuilt;
+    }
+
+    /**
+     * 解析快照文件路径：绝对路径直接使用，相对路径按 app.dataDir 解析，不依赖进程的工作目录
+     */
+    private Path resolveSnapshotPath() {
+        if (!StringUtils.hasText(snapshotFile)) {
+            return null;
+        }
+        Path path = Paths.get(snapshotFile);
+        if (path.isAbsolute()) {
+            return path.normalize();
+        }
+        if (!StringUtils.hasText(dataDir)) {
+            throw new IllegalStateException("令牌撤销快照文件为相对路径时必须配置 app.dataDir: "
+                    + "jwt.revocation.snapshotFile=" + snapshotFile);
+        }
+        Path base = Paths.get(dataDir);
+        if (!base.isAbsolute()) {
+            throw new IllegalStateException("app.dataDir 必须为绝对路径: " + dataDir);
+        }
+        return base.resolve(path).normalize();
+    }
+
+    private void loadSnapshot() {
+        if (snapshotPath == null) {
+            return;
+        }
+        Path path = snapshotPath;
+        if (!Files.exists(path)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0) {
+                    skipped++;
+                    continue;
+                }
+                try {
+                    long expiresAt = Long.parseLong(line.substring(0, tab));
+                    if (expiresAt > now) {
+                        revoked.put(line.substring(tab + 1), expiresAt);
+                    }
+                } catch (NumberFormatException e) {
+                    skipped++;
+                }
+            }
+        } catch (IOException e) {
+            log.error("读取令牌撤销快照失败: {}, 原因: {}", snapshotPath, e.getMessage());
+        }
+        synchronized (writeLock) {
+            rebuildFilter();
+        }
+        log.info("令牌撤销快照加载完成: 有效条目={}, 无法识别的行={}", revoked.size(), skipped);
+    }
+}
@@ -0,0 +1,132 @@
+package cn.gt.kaka.security.revocation;
+
+import cn.gt.kaka.dao.UserDao;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户令牌代数
+ *
+ * 每个用户有一个单调递增的令牌代数，签发令牌时写入gen声明，认证时与当前代数比较，
+ * 令牌代数小于当前代数即视为失效；修改密码或账号被盗时递增代数，即可一次性使该用户的全部令牌失效，
+ * 无需逐个记录令牌
+ *
+ * 存储：
+ * - 数据库 t_user.token_generation 是权威数据，递增时先写数据库再写内存（写穿）
+ * - 内存中以用户ID本身为键保存，只保存代数大于0的用户；不使用哈希值作键，
+ *   否则两个用户的哈希碰撞时，代数较小一方的递增会被较大的值吞掉，其现有令牌在“全部下线”后仍然有效
+ * - 启动时加载，之后定期重新加载，使其他节点上的递增在本节点生效
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@Component
+public class UserTokenGenerationStore implements MeterBinder {
+
+    @Autowired
+    private UserDao userDao;
+
+    /**
+     * 预期的代数大于0的用户数
+     */
+    @Value("${jwt.generation.expectedUsers:100000}")
+    private int expectedUsers;
+
+    /**
+     * 从数据库重新加载代数的间隔（秒），0表示只在启动时加载
+     */
+    @Value("${jwt.generation.reloadInterval:60}")
+    private long reloadInterval;
+
+    private ConcurrentHashMap<String, Integer> generations;
+
+    private ScheduledExecutorService reloader;
+
+    /**
+     * 启动时加载代数，并按配置启动定期重新加载
+     */
+    @PostConstruct
+    public void init() {
+        generations = new ConcurrentHashMap<>(expectedUsers);
+        reload();
+        if (reloadInterval > 0) {
+            reloader = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("token-generation-"));
+            reloader.scheduleWithFixedDelay(this::reloadQuietly, reloadInterval, reloadInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取用户当前的令牌代数
+     *
+     * @param userId 用户ID
+     * @return 当前代数，从未递增过的用户为0
+     */
+    public int currentGeneration(String userId) {
+        return userId == null ? 0 : generations.getOrDefault(userId, 0);
+    }
+
+    /**
+     * 递增用户的令牌代数，使其现有令牌全部失效
+     *
+     * @param userId 用户ID
+     * @return 递增后的代数，用户不存在时返回empty
+     * @throws RuntimeException 当数据库访问出现异常时抛出
+     */
+    public OptionalInt bump(String userId) {
+        OptionalInt generation = userDao.incrementTokenGeneration(userId);
+        if (generation.isPresent()) {
+            generations.merge(userId, generation.getAsInt(), Math::max);
+            log.info("用户令牌代数已递增: userId={}, 代数={}", userId, generation.getAsInt());
+        }
+        return generation;
+    }
+
+    /**
+     * 从数据库重新加载全部代数
+     *
+     * 代数只增不减，加载时只接受更大的值，与并发的递增不会互相覆盖
+     */
+    public void reload() {
+        long start = System.currentTimeMillis();
+        userDao.forEachTokenGeneration((userId, generation) -> generations.merge(userId, generation, Math::max));
+        log.debug("用户令牌代数加载完成: 用户数={}, 耗时={}ms", generations.size(), System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("jwt.token.generation.users", generations, map -> map.size())
+                .description("令牌代数大于0的用户数")
+                .register(registry);
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            log.error("重新加载用户令牌代数失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package cn.gt.kaka.security.throttle;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定容量、分段加锁的衰减计数表
+ *
+ * 以64位键哈希为键保存按指数衰减的计数：每经过一个半衰期计数减半，相当于没有固定边界的滑动窗口。
+ * 全部槽位在构造时一次性分配，之后不再分配内存：
+ * - 槽位按键哈希分成若干段，每段一把锁，不同段的更新互不阻塞
+ * - 每个键只能落在所属桶的 {@value #WAYS} 个槽位中，桶满时替换其中衰减后计数最小的槽位
+ *
+ * 大量不同的键（例如撒网式尝试海量用户名）只会互相替换低计数槽位，内存不增长，
+ * 失败次数多的键计数高，不容易被挤出
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+final class DecayingCounterTable {
+
+    /**
+     * 每个桶的槽位数
+     */
+    static final int WAYS = 4;
+
+    /**
+     * 衰减后低于该值的计数视为0，槽位可直接复用
+     */
+    private static final double NEGLIGIBLE = 0.01D;
+
+    private final int stripeMask;
+
+    private final int bucketsPerStripe;
+
+    private final int bucketMask;
+
+    private final Object[] locks;
+
+    private final long[] keys;
+
+    private final double[] scores;
+
+    private final long[] updatedAt;
+
+    /**
+     * 每毫秒的衰减率 ln2/半衰期
+     */
+    private final double decayRate;
+
+    private final AtomicInteger occupied = new AtomicInteger();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 构造计数表
+     *
+     * @param capacity 槽位总数，向上取整为2的幂
+     * @param stripes 锁分段数，向上取整为2的幂
+     * @param halfLifeMillis 计数的半衰期（毫秒）
+     */
+    DecayingCounterTable(int capacity, int stripes, long halfLifeMillis) {
+        int stripeCount = ceilingPowerOfTwo(Math.max(1, stripes));
+        int buckets = Math.max(stripeCount, ceilingPowerOfTwo(Math.max(WAYS, capacity)) / WAYS);
+        this.stripeMask = stripeCount - 1;
+        this.bucketsPerStripe = buckets / stripeCount;
+        this.bucketMask = bucketsPerStripe - 1;
+        this.locks = new Object[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            locks[i] = new Object();
+        }
+        this.keys = new long[buckets * WAYS];
+        this.scores = new double[buckets * WAYS];
+        this.updatedAt = new long[buckets * WAYS];
+        this.decayRate = Math.log(2) / Math.max(1L, halfLifeMillis);
+    }
+
+    /**
+     * 读取键当前的衰减后计数
+     *
+     * @param key 键哈希
+     * @param now 当前时间（毫秒）
+     * @return 计数，不存在时为0
+     */
+    double get(long key, long now) {
+        key = nonZero(key);
+        int stripe = stripeOf(key);
+        int base = bucketOf(key, stripe);
+        synchronized (locks[stripe]) {
+            for (int i = base; i < base + WAYS; i++) {
+                if (keys[i] == key) {
+                    return decayed(i, now);
+                }
+            }
+        }
+        return 0D;
+    }
+
+    /**
+     * 增加键的计数
+     *
+     * @param key 键哈希
+     * @param amount 增量
+     * @param now 当前时间（毫秒）
+     * @return 增加后的计数
+     */
+    double add(long key, double amount, long now) {
+        key = nonZero(key);
+        int stripe = stripeOf(key);
+        int base = bucketOf(key, stripe);
+        synchronized (locks[stripe]) {
+            int victim = base;
+            double victimScore = Double.MAX_VALUE;
+            for (int i = base; i < base + WAYS; i++) {
+                if (keys[i] == key) {
+                    return store(i, key, decayed(i, now) + amount, now);
+                }
+                double score = keys[i] == 0L ? -1D : decayed(i, now);
+                if (score < victimScore) {
+                    victim = i;
+                    victimScore = score;
+                }
+            }
+
+            if (keys[victim] == 0L) {
+                occupied.incrementAndGet();
+            } else if (victimScore >= NEGLIGIBLE) {
+                evictions.increment();
+            }
+            return store(victim, key, amount, now);
+        }
+    }
+
+    /**
+     * 清除键的计数
+     *
+     * @param key 键哈希
+     */
+    void remove(long key) {
+        key = nonZero(key);
+        int stripe = stripeOf(key);
+        int base = bucketOf(key, stripe);
+        synchronized (locks[stripe]) {
+            for (int i = base; i < base + WAYS; i++) {
+                if (keys[i] == key) {
+                    keys[i] = 0L;
+                    scores[i] = 0D;
+                    occupied.decrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 已使用的槽位数，包括计数已衰减到0但尚未被复用的槽位
+     */
+    int size() {
+        return occupied.get();
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * 计数未衰减完就被替换的次数
+     */
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    private double store(int slot, long key, double score, long now) {
+        keys[slot] = key;
+        scores[slot] = score;
+        updatedAt[slot] = now;
+        return score;
+    }
+
+    private double decayed(int slot, long now) {
+        long elapsed = now - updatedAt[slot];
+        return elapsed <= 0L ? scores[slot] : scores[slot] * Math.exp(-decayRate * elapsed);
+    }
+
+    private int stripeOf(long key) {
+        return (int) key & stripeMask;
+    }
+
+    private int bucketOf(long key, int stripe) {
+        return (stripe * bucketsPerStripe + ((int) (key >>> 32) & bucketMask)) * WAYS;
+    }
+
+    private static long nonZero(long key) {
+        // 0 表示空槽位
+        return key == 0L ? 1L : key;
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        int highest = Integer.highestOneBit(value);
+        return highest == value ? value : highest << 1;
+    }
+}
@@ -0,0 +1,212 @@
+package cn.gt.kaka.security.throttle;
+
+import cn.gt.kaka.util.CommonResponse;
+import cn.gt.kaka.util.Hashing;
+import cn.gt.kaka.util.JacksonUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 登录失败限流
+ *
+ * 撞库攻击的每次尝试都要付出一次数据库查询和一次密码哈希计算。本类按用户名和客户端IP分别记录失败次数，
+ * 失败次数达到上限的登录在解析出用户名（或IP）后立即拒绝，不再进入认证管理器：
+ * - 失败次数按半衰期 login.throttle.halfLife 指数衰减，停止尝试后自动恢复
+ * - 用户名转为小写后计数，大小写变化不能绕过限制；登录成功时清除该用户名的计数，IP计数不清除
+ * - 两张计数表都是固定容量的分段加锁表（见 {@link DecayingCounterTable}），
+ *   撒网式尝试海量不同用户名时内存不增长
+ * - 拒绝时返回启动时预先序列化好的429响应，不经过失败处理器
+ *
+ * 客户端IP取 request.getRemoteAddr()，部署在反向代理之后时需由容器（例如Tomcat RemoteIpValve）还原真实IP
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@Component
+public class LoginThrottle implements MeterBinder {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * 是否启用登录失败限流
+     */
+    @Value("${login.throttle.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 同一用户名允许的失败次数
+     */
+    @Value("${login.throttle.usernameLimit:5}")
+    private double usernameLimit;
+
+    /**
+     * 同一IP允许的失败次数
+     */
+    @Value("${login.throttle.ipLimit:50}")
+    private double ipLimit;
+
+    /**
+     * 失败次数的半衰期（秒）
+     */
+    @Value("${login.throttle.halfLife:300}")
+    private long halfLife;
+
+    /**
+     * 每张计数表的槽位数
+     */
+    @Value("${login.throttle.capacity:65536}")
+    private int capacity;
+
+    /**
+     * 计数表的锁分段数
+     */
+    @Value("${login.throttle.stripes:64}")
+    private int stripes;
+
+    private DecayingCounterTable usernames;
+
+    private DecayingCounterTable addresses;
+
+    private byte[] rejectionBody;
+
+    private String retryAfter;
+
+    private final LongAdder usernameRejections = new LongAdder();
+
+    private final LongAdder addressRejections = new LongAdder();
+
+    /**
+     * 分配计数表并预先序列化拒绝响应
+     *
+     * @throws IllegalStateException 当拒绝响应无法序列化时抛出
+     */
+    @PostConstruct
+    public void init() {
+        long halfLifeMillis = TimeUnit.SECONDS.toMillis(halfLife);
+        this.usernames = new DecayingCounterTable(capacity, stripes, halfLifeMillis);
+        this.addresses = new DecayingCounterTable(capacity, stripes, halfLifeMillis);
+        // 计数从上限衰减到上限以下大约需要一个半衰期
+        this.retryAfter = String.valueOf(halfLife);
+        try {
+            this.rejectionBody = JacksonUtil.OBJECT_MAPPER.writeValueAsBytes(
+                    CommonResponse.failure(TOO_MANY_REQUESTS, "error code", "登录失败次数过多，请稍后重试"));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("无法序列化登录限流响应", e);
+        }
+        log.info("登录失败限流{}: 用户名上限={}, IP上限={}, 半衰期={}s, 每表槽位数={}",
+                enabled ? "已启用" : "未启用", usernameLimit, ipLimit, halfLife, usernames.capacity());
+    }
+
+    /**
+     * 判断登录是否应被拒绝
+     *
+     * @param username 用户名，尚未解析出用户名时传null，只检查IP
+     * @param clientIp 客户端IP
+     * @return true表示失败次数已达上限
+     */
+    public boolean isThrottled(String username, String clientIp) {
+        if (!enabled) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (clientIp != null && addresses.get(Hashing.hash64(clientIp), now) >= ipLimit) {
+            addressRejections.increment();
+            return true;
+        }
+        if (username != null && usernames.get(usernameKey(username), now) >= usernameLimit) {
+            usernameRejections.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 记录一次登录失败
+     *
+     * @param username 用户名
+     * @param clientIp 客户端IP
+     */
+    public void recordFailure(String username, String clientIp) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (clientIp != null) {
+            addresses.add(Hashing.hash64(clientIp), 1D, now);
+        }
+        if (username != null && usernames.add(usernameKey(username), 1D, now) >= usernameLimit) {
+            log.warn("用户登录失败次数达到上限，暂停登录: username={}, clientIp={}", username, clientIp);
+        }
+    }
+
+    /**
+     * 记录一次登录成功，清除该用户名的失败计数
+     *
+     * @param username 用户名
+     */
+    public void recordSuccess(String username) {
+        if (enabled && username != null) {
+            usernames.remove(usernameKey(username));
+        }
+    }
+
+    /**
+     * 写出预先序列化的429响应
+     *
+     * @param response HTTP响应
+     * @throws IOException 当写响应失败时抛出
+     */
+    public void writeRejection(HttpServletResponse response) throws IOException {
+        response.setStatus(TOO_MANY_REQUESTS);
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        response.setContentLength(rejectionBody.length);
+        response.getOutputStream().write(rejectionBody);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("login.throttle.rejected", usernameRejections, LongAdder::doubleValue)
+                .tag("key", "username")
+                .description("因失败次数过多被拒绝的登录次数")
+                .register(registry);
+        FunctionCounter.builder("login.throttle.rejected", addressRejections, LongAdder::doubleValue)
+                .tag("key", "ip")
+                .description("因失败次数过多被拒绝的登录次数")
+                .register(registry);
+        bindTable(registry, "username", usernames);
+        bindTable(registry, "ip", addresses);
+    }
+
+    private static void bindTable(MeterRegistry registry, String key, DecayingCounterTable table) {
+        Gauge.builder("login.throttle.entries", table, DecayingCounterTable::size)
+                .tag("key", key)
+                .description("登录失败计数表已使用的槽位数")
+                .register(registry);
+        FunctionCounter.builder("login.throttle.evictions", table, DecayingCounterTable::evictionCount)
+                .tag("key", key)
+                .description("计数未衰减完就被替换的槽位数")
+                .register(registry);
+    }
+
+    private static long usernameKey(String username) {
+        return Hashing.hash64(username.toLowerCase(Locale.ROOT));
+    }
+}
@@ -44,7 +44,9 @@ public interface IUserService {
      * @param username 用户名，用户的登录标识
      * @param password 密码，用户输入的原始密码（未加密）
      * @return Optional包装的用户信息，验证成功返回用户信息，失败返回empty
-     * @throws RuntimeException 当用户不存在或密码错误时抛出异常
+     * @throws org.springframework.security.authentication.BadCredentialsException 当密码错误时抛出
+     * @throws UsernameNotFoundException 当用户不存在时抛出
+     * @throws RuntimeException 当数据库访问出现异常时抛出
      */
     Optional<UserDto> getByNameAndPassword(String username, String password);
 
@@ -0,0 +1,195 @@
+package cn.gt.kaka.service;
+
+import cn.gt.kaka.exception.LoginOverloadedException;
+import cn.gt.kaka.security.password.AdaptivePasswordEncoder;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 密码校验器
+ * 
+ * BCrypt校验是刻意设计得很慢的CPU密集计算，在Web容器线程上执行时，
+ * 集中登录会占满全部容器线程，已登录用户的普通API请求只能排队
+ * 本类把校验放到专用的有界线程池（passwordVerifyExecutor）上执行，同时进行的校验数不超过线程数：
+ * - 队列已满时不排队，立即抛出 {@link LoginOverloadedException}，登录返回503和Retry-After
+ * - 排队等待超过 login.passwordVerify.maxWait 毫秒时同样放弃，并取消尚未开始的校验任务
+ * 
+ * 密码匹配且存储的哈希需要按当前算法和工作因子重新计算时（见 {@link AdaptivePasswordEncoder#needsRehash}），
+ * 新哈希在同一个校验任务中计算，通过 {@link Result#getUpgradedHash()} 返回给调用方保存
+ * 
+ * 导出的指标：
+ * - login.password.verify.queue：排队中的校验任务数
+ * - login.password.verify.active：正在执行的校验任务数
+ * - login.password.verify.wait：校验任务从提交到开始执行的等待时间
+ * - login.password.verify.rejected：因过载被拒绝的登录次数
+ * 
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@Component
+public class PasswordVerifier implements MeterBinder {
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    @Qualifier("passwordVerifyExecutor")
+    private ThreadPoolExecutor passwordVerifyExecutor;
+
+    /**
+     * 等待校验结果的最长时间（毫秒），包括排队和校验本身
+     */
+    @Value("${login.passwordVerify.maxWait:2000}")
+    private long maxWait;
+
+    /**
+     * 过载时建议客户端重试的等待时间（秒），写入Retry-After响应头
+     */
+    @Value("${login.passwordVerify.retryAfter:2}")
+    private long retryAfter;
+
+    private final LongAdder waitCount = new LongAdder();
+
+    private final LongAdder waitNanos = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * 在专用线程池上校验密码，调用线程等待结果
+     * 
+     * @param rawPassword 用户输入的原始密码
+     * @param encodedPassword 数据库中的密码哈希
+     * @return true表示密码匹配
+     * @throws LoginOverloadedException 当线程池已满或等待超时时抛出
+     */
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return verify(rawPassword, encodedPassword, false).isMatched();
+    }
+
+    /**
+     * 在专用线程池上校验密码，密码匹配且哈希参数已过时的情况下同时计算新哈希
+     * 
+     * @param rawPassword 用户输入的原始密码
+     * @param encodedPassword 数据库中的密码哈希
+     * @return 校验结果
+     * @throws LoginOverloadedException 当线程池已满或等待超时时抛出
+     */
+    public Result verify(CharSequence rawPassword, String encodedPassword) {
+        return verify(rawPassword, encodedPassword, true);
+    }
+
+    private Result verify(CharSequence rawPassword, String encodedPassword, boolean rehash) {
+        long submittedAt = System.nanoTime();
+        Future<Result> future;
+        try {
+            future = passwordVerifyExecutor.submit(() -> {
+                waitNanos.add(System.nanoTime() - submittedAt);
+                waitCount.increment();
+                if (!passwordEncoder.matches(rawPassword, encodedPassword)) {
+                    return Result.MISMATCH;
+                }
+                if (rehash && passwordEncoder instanceof AdaptivePasswordEncoder
+                        && ((AdaptivePasswordEncoder) passwordEncoder).needsRehash(encodedPassword)) {
+                    return new Result(true, passwordEncoder.encode(rawPassword));
+                }
+                return Result.MATCH;
+            });
+        } catch (RejectedExecutionException e) {
+            throw overloaded("密码校验队列已满");
+        }
+
+        try {
+            return future.get(maxWait, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 尚未开始的任务直接取消，不再占用CPU；已开始的任务很快结束，不中断
+            future.cancel(false);
+            throw overloaded("密码校验等待超时");
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("密码校验被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new AuthenticationServiceException("密码校验失败: " + cause.getMessage(), cause);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("login.password.verify.queue", passwordVerifyExecutor, executor -> executor.getQueue().size())
+                .description("排队中的密码校验任务数")
+                .register(registry);
+        Gauge.builder("login.password.verify.active", passwordVerifyExecutor, ThreadPoolExecutor::getActiveCount)
+                .description("正在执行的密码校验任务数")
+                .register(registry);
+        FunctionTimer.builder("login.password.verify.wait", this,
+                verifier -> verifier.waitCount.sum(), verifier -> verifier.waitNanos.sum(), TimeUnit.NANOSECONDS)
+                .description("密码校验任务从提交到开始执行的等待时间")
+                .register(registry);
+        FunctionCounter.builder("login.password.verify.rejected", rejected, LongAdder::sum)
+                .description("因密码校验过载被拒绝的登录次数")
+                .register(registry);
+    }
+
+    private LoginOverloadedException overloaded(String reason) {
+        rejected.increment();
+        log.warn("登录过载，拒绝请求: {}, 排队任务数={}, 执行中任务数={}", reason,
+                passwordVerifyExecutor.getQueue().size(), passwordVerifyExecutor.getActiveCount());
+        return new LoginOverloadedException("登录请求过多，请稍后重试", retryAfter);
+    }
+
+    /**
+     * 密码校验结果
+     */
+    public static final class Result {
+
+        static final Result MISMATCH = new Result(false, null);
+
+        static final Result MATCH = new Result(true, null);
+
+        private final boolean matched;
+
+        private final String upgradedHash;
+
+        Result(boolean matched, String upgradedHash) {
+            this.matched = matched;
+            this.upgradedHash = upgradedHash;
+        }
+
+        public boolean isMatched() {
+            return matched;
+        }
+
+        /**
+         * 按当前算法和工作因子重新计算的哈希
+         * 
+         * @return 新哈希，不需要重新计算时返回null
+         */
+        public String getUpgradedHash() {
+            return upgradedHash;
+        }
+    }
+}
@@ -1,13 +1,16 @@
 package cn.gt.kaka.service;
 
+import cn.gt.kaka.cache.RolePermissionCache;
+import cn.gt.kaka.cache.UserCache;
+import cn.gt.kaka.cache.VerifiedCredentialCache;
 import cn.gt.kaka.dao.UserDao;
 import cn.gt.kaka.model.UserDto;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -40,10 +43,28 @@ public class SpringDataUserDetailsService implements IUserService {
     private UserDao userDao;
 
     /**
-     * 密码编码器，用于密码的加密和验证
+     * 密码校验器，在专用线程池上执行BCrypt校验，过载时拒绝登录
      */
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordVerifier passwordVerifier;
+
+    /**
+     * 已验证凭据缓存，短时间内重复登录的凭据跳过密码哈希校验
+     */
+    @Autowired
+    private VerifiedCredentialCache credentialCache;
+
+    /**
+     * 用户信息缓存，按用户名缓存用户信息（包括不存在的用户），并发未命中只查询一次
+     */
+    @Autowired
+    private UserCache userCache;
+
+    /**
+     * 两级权限缓存，按 用户→角色、角色→权限 分别缓存
+     */
+    @Autowired
+    private RolePermissionCache rolePermissionCache;
 
     /**
      * 根据用户名加载用户详情信息（Spring Security接口方法）
@@ -64,8 +85,8 @@ public class SpringDataUserDetailsService implements IUserService {
             throw new UsernameNotFoundException("用户名不能为空");
         }
 
-        // 查询用户基本信息
-        Optional<UserDto> userOptional = userDao.findByUsername(username);
+        // 查询用户基本信息，未命中缓存时权限一并加载
+        Optional<UserDto> userOptional = userCache.get(username);
         if (!userOptional.isPresent()) {
             log.warn("用户不存在: username={}", username);
             throw new UsernameNotFoundException("用户不存在: " + username);
@@ -74,8 +95,8 @@ public class SpringDataUserDetailsService implements IUserService {
         UserDto user = userOptional.get();
         log.debug("找到用户信息: userId={}, username={}", user.getId(), user.getUsername());
 
-        // 查询用户权限
-        List<String> permissions = userDao.findPermissionsByUserId(user.getId());
+        List<String> permissions = user.getPermissions() != null
+                ? user.getPermissions() : rolePermissionCache.permissionsOf(user.getId());
         String[] authorities = permissions.toArray(new String[0]);
 
         log.debug("用户权限加载完成: username={}, permissions={}", username, permissions);
@@ -115,7 +136,7 @@ public class SpringDataUserDetailsService implements IUserService {
         }
 
         try {
-            Optional<UserDto> userOptional = userDao.findByUsername(username);
+            Optional<UserDto> userOptional = userCache.get(username);
             if (userOptional.isPresent()) {
                 log.debug("用户查询成功: userId={}, username={}", 
                          userOptional.get().getId(), userOptional.get().getUsername());
@@ -138,8 +159,11 @@ public class SpringDataUserDetailsService implements IUserService {
      * 
      * @param username 用户名，用户的登录标识
      * @param password 密码，用户输入的原始密码（未加密）
-     * @return Optional包装的用户信息，验证成功返回用户信息，失败返回empty
-     * @throws RuntimeException 当用户不存在或密码错误时抛出异常
+     * @return Optional包装的用户信息，验证成功返回用户信息
+     * @throws BadCredentialsException 当用户名或密码为空、密码错误时抛出
+     * @throws UsernameNotFoundException 当用户不存在时抛出
+     * @throws cn.gt.kaka.exception.LoginOverloadedException 当密码校验过载时抛出
+     * @throws RuntimeException 当数据库访问出现异常时抛出
      */
     @Override
     public Optional<UserDto> getByNameAndPassword(String username, String password) {
@@ -148,29 +172,38 @@ public class SpringDataUserDetailsService implements IUserService {
         // 参数验证
         if (!StringUtils.hasText(username)) {
             log.warn("用户名为空，无法进行密码验证");
-            throw new RuntimeException("用户名不能为空");
+            throw new BadCredentialsException("用户名不能为空");
         }
 
         if (!StringUtils.hasText(password)) {
             log.warn("密码为空，无法进行密码验证: username={}", username);
-            throw new RuntimeException("密码不能为空");
+            throw new BadCredentialsException("密码不能为空");
         }
 
         try {
-            // 查询用户信息
-            Optional<UserDto> userOptional = userDao.findByUsername(username);
+            // 查询用户信息；未命中缓存时权限一并加载，签发令牌时不再单独查询
+            Optional<UserDto> userOptional = userCache.get(username);
             if (!userOptional.isPresent()) {
                 log.warn("用户不存在，密码验证失败: username={}", username);
-                throw new RuntimeException("用户不存在");
+                throw new UsernameNotFoundException("用户不存在");
             }
 
             UserDto user = userOptional.get();
 
-            // 验证密码
-            if (!passwordEncoder.matches(password, user.getPassword())) {
+            // 验证密码：近期校验通过且数据库中哈希未变时直接通过
+            if (credentialCache.matches(username, password, user.getPassword())) {
+                log.debug("凭据缓存命中，跳过密码哈希校验: userId={}", user.getId());
+                return Optional.of(user);
+            }
+            PasswordVerifier.Result result = passwordVerifier.verify(password, user.getPassword());
+            if (!result.isMatched()) {
                 log.warn("密码验证失败: username={}", username);
-                throw new RuntimeException("密码错误");
+                throw new BadCredentialsException("密码错误");
             }
+            if (result.getUpgradedHash() != null) {
+                upgradePassword(user, result.getUpgradedHash());
+            }
+            credentialCache.put(username, password, user.getPassword());
 
             log.debug("用户名和密码验证成功: userId={}, username={}", user.getId(), user.getUsername());
             return Optional.of(user);
@@ -184,6 +217,29 @@ public class SpringDataUserDetailsService implements IUserService {
         }
     }
 
+    /**
+     * 保存按当前算法和工作因子重新计算的密码哈希
+     * 
+     * 保存失败只记录日志，不影响本次登录，下次登录时会再次尝试
+     * 
+     * @param user 已通过密码验证的用户
+     * @param upgradedHash 新密码哈希
+     */
+    private void upgradePassword(UserDto user, String upgradedHash) {
+        try {
+            boolean updated = userDao.updatePassword(user.getId(), user.getPassword(), upgradedHash);
+            userCache.invalidate(user.getUsername());
+            if (updated) {
+                log.info("用户密码哈希已按当前参数更新: userId={}", user.getId());
+                user.setPassword(upgradedHash);
+            } else {
+                log.debug("用户密码已被修改，跳过哈希更新: userId={}", user.getId());
+            }
+        } catch (RuntimeException e) {
+            log.warn("更新用户密码哈希失败: userId={}, error={}", user.getId(), e.getMessage());
+        }
+    }
+
     /**
      * 检查用户是否存在
      * 
@@ -209,7 +265,7 @@ public class SpringDataUserDetailsService implements IUserService {
         }
         
         try {
-            List<String> permissions = userDao.findPermissionsByUserId(userId);
+            List<String> permissions = rolePermissionCache.permissionsOf(userId);
             log.debug("权限获取成功: userId={}, permissionCount={}", userId, permissions.size());
             return permissions;
         } catch (Exception e) {
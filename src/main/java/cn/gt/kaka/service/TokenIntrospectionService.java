@@ -0,0 +1,85 @@
+package cn.gt.kaka.service;
+
+import cn.gt.kaka.dto.IntrospectionResult;
+import cn.gt.kaka.exception.JwtTokenMalformedException;
+import cn.gt.kaka.provider.PostAuthenticationProvider;
+import cn.gt.kaka.security.jwt.ParsedToken;
+import cn.gt.kaka.util.BatchExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * 令牌自省服务
+ *
+ * 供网关和边车服务批量校验令牌，省去每个令牌经过完整过滤器链访问受保护资源的往返开销
+ * 校验直接调用 PostAuthenticationProvider.validateAccessToken，与请求认证使用同一套规则和已验证令牌缓存
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@Service
+public class TokenIntrospectionService {
+
+    @Autowired
+    private PostAuthenticationProvider postAuthenticationProvider;
+
+    @Autowired
+    @Qualifier("tokenVerifyExecutor")
+    private ExecutorService tokenVerifyExecutor;
+
+    /**
+     * 批量校验时同时在途的最大任务数
+     */
+    @Value("${jwt.introspect.maxInFlight:256}")
+    private int maxInFlight;
+
+    /**
+     * 并行校验一批令牌，结果按完成顺序交给消费者
+     *
+     * @param tokens 令牌列表，不含 Bearer 前缀
+     * @param consumer 结果消费者，在调用线程上执行
+     * @throws IllegalStateException 当调用线程被中断时抛出
+     */
+    public void introspect(List<String> tokens, Consumer<IntrospectionResult> consumer) {
+        BatchExecutor.forEachCompleted(tokenVerifyExecutor, maxInFlight, tokens, this::introspect, consumer);
+    }
+
+    /**
+     * 校验单个令牌
+     *
+     * @param index 令牌在请求列表中的位置
+     * @param token 令牌
+     * @return 自省结果，令牌无效时 active 为false
+     */
+    public IntrospectionResult introspect(int index, String token) {
+        if (!StringUtils.hasText(token)) {
+            return inactive(index, "令牌不能为空");
+        }
+        try {
+            ParsedToken parsedToken = postAuthenticationProvider.validateAccessToken(token);
+            Long expiresAt = parsedToken.getExpiresAt() == Long.MAX_VALUE ? null : parsedToken.getExpiresAt();
+            return new IntrospectionResult(index, true, parsedToken.getUserId(), parsedToken.getTokenType(),
+                    expiresAt, null);
+        } catch (AuthenticationException | JwtTokenMalformedException e) {
+            return inactive(index, e.getMessage());
+        } catch (RuntimeException e) {
+            log.warn("令牌自省失败: {}", e.getMessage());
+            return inactive(index, "令牌校验失败");
+        }
+    }
+
+    private static IntrospectionResult inactive(int index, String error) {
+        return new IntrospectionResult(index, false, null, null, null, error);
+    }
+}
@@ -0,0 +1,153 @@
+package cn.gt.kaka.service;
+
+import cn.gt.kaka.dao.RefreshTokenDao;
+import cn.gt.kaka.dto.TokenType;
+import cn.gt.kaka.exception.JwtRevokedTokenException;
+import cn.gt.kaka.model.UserDto;
+import cn.gt.kaka.security.jwt.ParsedToken;
+import cn.gt.kaka.security.jwt.TokenFormat;
+import cn.gt.kaka.security.jwt.TokenPair;
+import cn.gt.kaka.security.revocation.TokenRevocationStore;
+import cn.gt.kaka.security.revocation.UserTokenGenerationStore;
+import cn.gt.kaka.util.JwtUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌刷新服务
+ * 
+ * 用刷新令牌换取新的访问令牌和刷新令牌，只校验刷新令牌的签名和声明并记录其使用，
+ * 不查询用户、不校验密码，访问令牌过期后无需用户重新登录
+ * 
+ * 刷新令牌一次性使用（轮换）：
+ * 1. 每次刷新都在数据库 t_refresh_token_use 表中记录所用刷新令牌的jti，并签发新的令牌对
+ * 2. 已使用过的刷新令牌再次出现，说明令牌可能已泄露（攻击者和合法客户端至少有一方持有旧令牌），
+ *    此时递增该用户的令牌代数，使其全部令牌（包括刚轮换出的新令牌）失效，用户需要重新登录
+ * 
+ * 使用记录以jti为主键，重用判断由数据库的插入冲突决定，多节点部署时同一个刷新令牌在不同节点上各用一次，
+ * 或两次并发刷新落到不同节点，同样只有一次成功；退出登录时也写入使用记录，之后再用该刷新令牌按重用处理
+ * 过期的使用记录每隔 jwt.refresh.cleanupInterval 秒删除一次
+ * 
+ * 新令牌对沿用所提交刷新令牌的格式（JWT或紧凑格式），客户端在登录时选定格式后无需每次刷新都指定
+ * 
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@Service
+public class TokenRefreshService {
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Autowired
+    private UserTokenGenerationStore userTokenGenerationStore;
+
+    @Autowired
+    private RefreshTokenDao refreshTokenDao;
+
+    /**
+     * 删除过期使用记录的间隔（秒），0表示不删除
+     */
+    @Value("${jwt.refresh.cleanupInterval:3600}")
+    private long cleanupInterval;
+
+    private ScheduledExecutorService cleaner;
+
+    /**
+     * 启动过期使用记录的定期删除
+     */
+    @PostConstruct
+    public void init() {
+        if (cleanupInterval > 0) {
+            cleaner = Executors.newSingleThreadScheduledExecutor(
+                    new CustomizableThreadFactory("refresh-token-cleanup-"));
+            cleaner.scheduleWithFixedDelay(this::deleteExpiredQuietly, cleanupInterval, cleanupInterval,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (cleaner != null) {
+            cleaner.shutdownNow();
+        }
+    }
+
+    /**
+     * 使用刷新令牌换取新的令牌对
+     * 
+     * @param refreshToken 刷新令牌
+     * @return 新的访问令牌和刷新令牌
+     * @throws BadCredentialsException 当令牌无效或不是刷新令牌时抛出
+     * @throws cn.gt.kaka.exception.JwtExpiredTokenException 当刷新令牌已过期时抛出
+     * @throws JwtRevokedTokenException 当刷新令牌已被使用、撤销或用户令牌已批量失效时抛出
+     */
+    public TokenPair refresh(String refreshToken) {
+        ParsedToken parsedToken = jwtUtil.parseToken(refreshToken);
+        String userId = parsedToken.getUserId();
+        if (parsedToken.getTokenType() != TokenType.Refresh || userId == null) {
+            throw new BadCredentialsException("无效的刷新令牌");
+        }
+        if (parsedToken.getTokenId() == null) {
+            // 旧版本签发的刷新令牌没有jti，无法保证只使用一次
+            throw new JwtRevokedTokenException("刷新令牌版本过旧，请重新登录");
+        }
+        if (parsedToken.getGeneration() < userTokenGenerationStore.currentGeneration(userId)) {
+            throw new JwtRevokedTokenException("JWT令牌已失效，请重新登录");
+        }
+
+        // 插入成功说明是首次使用；并发的两次刷新（无论是否在同一节点）只有一次能插入成功，另一次按重用处理
+        // 本节点撤销列表中的令牌（管理接口撤销）同样按重用处理
+        String tokenId = parsedToken.getTokenId();
+        if (tokenRevocationStore.isRevoked(tokenId)
+                || !refreshTokenDao.markUsed(tokenId, userId, parsedToken.getExpiresAt())) {
+            log.warn("检测到刷新令牌重用，使用户全部令牌失效: userId={}, jti={}", userId, tokenId);
+            userTokenGenerationStore.bump(userId);
+            throw new JwtRevokedTokenException("刷新令牌已被使用，请重新登录");
+        }
+
+        log.debug("刷新令牌成功: userId={}", userId);
+        return jwtUtil.generateTokenPair(new UserDto(userId), TokenFormat.of(refreshToken));
+    }
+
+    /**
+     * 作废刷新令牌，退出登录时使用
+     * 
+     * 写入使用记录并加入本节点的撤销列表，之后任何节点再用该令牌刷新都按重用处理
+     * 
+     * @param parsedToken 已校验的刷新令牌
+     * @throws RuntimeException 当数据库访问出现异常时抛出
+     */
+    public void revoke(ParsedToken parsedToken) {
+        String tokenId = parsedToken.getTokenId();
+        if (tokenId == null) {
+            return;
+        }
+        refreshTokenDao.markUsed(tokenId, parsedToken.getUserId(), parsedToken.getExpiresAt());
+        tokenRevocationStore.revoke(tokenId, parsedToken.getExpiresAt());
+    }
+
+    private void deleteExpiredQuietly() {
+        try {
+            int deleted = refreshTokenDao.deleteExpired(System.currentTimeMillis());
+            log.debug("已删除过期的刷新令牌使用记录: {}条", deleted);
+        } catch (RuntimeException e) {
+            log.error("删除过期的刷新令牌使用记录失败: {}", e.getMessage());
+        }
+    }
+}
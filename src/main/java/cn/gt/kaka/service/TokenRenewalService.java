@@ -0,0 +1,152 @@
+package cn.gt.kaka.service;
+
+import cn.gt.kaka.dto.TokenType;
+import cn.gt.kaka.model.UserDto;
+import cn.gt.kaka.security.jwt.ParsedToken;
+import cn.gt.kaka.security.jwt.TokenFormat;
+import cn.gt.kaka.util.JwtUtil;
+import cn.gt.kaka.util.SingleFlight;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 访问令牌提前续期服务
+ * 
+ * 有效的访问令牌距离过期不足 jwt.refreshAhead.window 秒时，为其签发新的访问令牌，
+ * 由认证过滤器放在响应头中返回；客户端在正常请求中就完成续期，不会在令牌过期时集中调用刷新或登录接口
+ * 
+ * 同一个令牌在续期窗口内通常会被并发请求多次使用，续期结果按令牌ID缓存，
+ * 同一个令牌只签发一次新令牌，之后的请求返回同一个新令牌；并发的首次续期合并为一次签发，
+ * 签发（可能查询数据库获取权限）不在缓存的锁内执行
+ * 缓存条目数有上限，超过上限时按写入顺序淘汰最早的条目，旧令牌过期后其条目不会再被读取，最先被淘汰
+ * 新令牌的有效期同样按 jwt.userAccessToken.expireJitter 随机缩短，续期时间点会随使用逐渐分散
+ * 
+ * 续期有上限：新令牌沿用原令牌的 auth_time（登录或刷新时签发令牌对的时间），
+ * 距 auth_time 超过 jwt.userRefreshToken.expireTime 秒后不再续期，即续期不会超过同批签发的刷新令牌的有效期，
+ * 被盗的访问令牌不能靠不断续期变成永久会话；没有 auth_time 的旧令牌不续期，客户端按原方式使用刷新令牌
+ * 
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+@Service
+public class TokenRenewalService {
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    /**
+     * 续期窗口（秒），访问令牌剩余有效期不超过该值时续期，0表示关闭提前续期
+     */
+    @Value("${jwt.refreshAhead.window:0}")
+    private long window;
+
+    /**
+     * 续期结果缓存的最大条目数，超过后按写入顺序淘汰最早的条目
+     */
+    @Value("${jwt.refreshAhead.maxEntries:100000}")
+    private int maxEntries;
+
+    /**
+     * 刷新令牌有效期（秒），距认证时间超过该值的访问令牌不再续期
+     */
+    @Value("${jwt.userRefreshToken.expireTime}")
+    private long maxSessionAge;
+
+    /**
+     * 令牌ID到续期签发的新令牌的映射
+     */
+    private final ConcurrentHashMap<String, String> renewals = new ConcurrentHashMap<>();
+
+    /**
+     * 写入顺序队列，用于容量淘汰；队列长度由 queued 计数，避免 ConcurrentLinkedQueue.size() 的遍历开销
+     */
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final SingleFlight<String, String> renewalLoads = new SingleFlight<>();
+
+    /**
+     * 判断是否开启了提前续期
+     * 
+     * @return true表示已开启
+     */
+    public boolean isEnabled() {
+        return window > 0;
+    }
+
+    /**
+     * 按需为访问令牌续期
+     * 
+     * @param token 请求携带的访问令牌，用于沿用令牌格式
+     * @param parsedToken 已通过认证的访问令牌
+     * @return 新的访问令牌，不需要续期时返回null
+     */
+    public String renew(String token, ParsedToken parsedToken) {
+        if (window <= 0 || parsedToken.getTokenType() != TokenType.Access
+                || parsedToken.getTokenId() == null || parsedToken.getUserId() == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        long expiresAt = parsedToken.getExpiresAt();
+        if (expiresAt - now > window * 1000L) {
+            return null;
+        }
+        long authTime = parsedToken.getAuthTime();
+        if (authTime <= 0 || now - authTime > maxSessionAge * 1000L) {
+            log.debug("访问令牌距认证时间已超过刷新令牌有效期或没有认证时间，不再续期: userId={}, 认证时间={}",
+                    parsedToken.getUserId(), authTime);
+            return null;
+        }
+
+        String tokenId = parsedToken.getTokenId();
+        String renewed = renewals.get(tokenId);
+        if (renewed == null) {
+            renewed = renewalLoads.execute(tokenId, () -> mint(tokenId, token, parsedToken, authTime));
+        }
+        return renewed;
+    }
+
+    /**
+     * 签发新令牌并写入缓存，在合并调用的第一个线程上执行
+     */
+    private String mint(String tokenId, String token, ParsedToken parsedToken, long authTime) {
+        String existing = renewals.get(tokenId);
+        if (existing != null) {
+            // 上一次合并调用刚写入缓存
+            return existing;
+        }
+        log.debug("访问令牌即将过期，提前续期: userId={}, 过期时间={}", parsedToken.getUserId(),
+                parsedToken.getExpiresAt());
+        String renewed = jwtUtil.generateAccessToken(new UserDto(parsedToken.getUserId()), TokenFormat.of(token),
+                authTime);
+        String raced = renewals.putIfAbsent(tokenId, renewed);
+        if (raced != null) {
+            return raced;
+        }
+        insertionOrder.offer(tokenId);
+        if (queued.incrementAndGet() > maxEntries) {
+            evictOldest();
+        }
+        return renewed;
+    }
+
+    private void evictOldest() {
+        while (queued.get() > maxEntries) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            renewals.remove(oldest);
+        }
+    }
+}
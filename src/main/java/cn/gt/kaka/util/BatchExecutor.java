@@ -0,0 +1,85 @@
+package cn.gt.kaka.util;
+
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * 批量任务并行执行工具
+ *
+ * 把列表中的每个元素作为独立任务提交到线程池，结果按完成顺序在调用线程上交给消费者，
+ * 消费者无需线程安全，可以直接写响应流
+ * 同时在途的任务数有上限，消费者写得慢时不会继续提交任务，已完成但未消费的结果不会无限堆积
+ *
+ * 任务本身应捕获业务异常并转换为失败结果，任务抛出的异常会终止整个批次
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public final class BatchExecutor {
+
+    private BatchExecutor() {
+        throw new AssertionError("BatchExecutor工具类不应被实例化");
+    }
+
+    /**
+     * 带位置的批量任务
+     *
+     * @param <T> 元素类型
+     * @param <R> 结果类型
+     */
+    @FunctionalInterface
+    public interface IndexedTask<T, R> {
+
+        /**
+         * 处理单个元素
+         *
+         * @param index 元素在列表中的位置
+         * @param item 元素
+         * @return 处理结果
+         */
+        R apply(int index, T item);
+    }
+
+    /**
+     * 并行处理列表中的元素，按完成顺序消费结果
+     *
+     * @param executor 线程池
+     * @param maxInFlight 同时在途的最大任务数
+     * @param items 元素列表
+     * @param task 单个元素的处理任务
+     * @param consumer 结果消费者，在调用线程上执行
+     * @param <T> 元素类型
+     * @param <R> 结果类型
+     * @throws IllegalStateException 当调用线程被中断或任务抛出异常时抛出
+     */
+    public static <T, R> void forEachCompleted(ExecutorService executor, int maxInFlight, List<T> items,
+                                               IndexedTask<T, R> task, Consumer<R> consumer) {
+        CompletionService<R> completion = new ExecutorCompletionService<>(executor);
+        int limit = Math.max(1, maxInFlight);
+        int submitted = 0;
+        int completed = 0;
+        try {
+            while (completed < items.size()) {
+                if (submitted < items.size() && submitted - completed < limit) {
+                    int index = submitted++;
+                    T item = items.get(index);
+                    completion.submit(() -> task.apply(index, item));
+                    continue;
+                }
+                R result = completion.take().get();
+                completed++;
+                consumer.accept(result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("批量任务被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("批量任务执行失败", e.getCause());
+        }
+    }
+}
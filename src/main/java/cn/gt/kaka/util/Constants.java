@@ -47,6 +47,18 @@ public final class Constants {
      */
     public static final String AUTH_HEADER_NAME = "Authorization";
 
+    /**
+     * 续期访问令牌的响应头名称
+     * 访问令牌临近过期时，认证过滤器在该响应头中返回新签发的访问令牌，客户端收到后替换本地令牌
+     */
+    public static final String RENEWED_TOKEN_HEADER_NAME = "X-Renewed-Token";
+
+    /**
+     * 已解析令牌的请求属性名
+     * 认证成功后，过滤器将解析结果(ParsedToken)挂到该请求属性上，后续代码无需再次解析令牌
+     */
+    public static final String PARSED_TOKEN_ATTRIBUTE = "cn.gt.kaka.security.jwt.ParsedToken";
+
     // ======================== JWT Claims 相关常量 ========================
 
     /**
@@ -73,4 +85,34 @@ public final class Constants {
      */
     public static final String TOKEN_TYPE = "token_type";
 
+    /**
+     * JWT声明中令牌ID的键名（标准声明jti）
+     * 每个令牌唯一，用于撤销单个令牌
+     */
+    public static final String TOKEN_ID = "jti";
+
+    /**
+     * JWT声明中令牌代数的键名
+     * 签发时写入用户当前的令牌代数，代数小于用户当前代数的令牌视为已失效
+     */
+    public static final String TOKEN_GENERATION = "gen";
+
+    /**
+     * 权限位图声明的键名
+     * 访问令牌中用户权限的位图，下标对应权限目录中的权限
+     */
+    public static final String PERMISSIONS = "perm";
+
+    /**
+     * 权限目录版本声明的键名
+     * 签发令牌时所用权限目录的内容哈希，解释 perm 声明时按此版本查找目录
+     */
+    public static final String PERMISSION_VERSION = "pv";
+
+    /**
+     * 认证时间声明的键名（秒）
+     * 登录或使用刷新令牌签发令牌对的时间，提前续期的访问令牌沿用原值，续期不能超过该时间加刷新令牌有效期
+     */
+    public static final String AUTH_TIME = "auth_time";
+
 }
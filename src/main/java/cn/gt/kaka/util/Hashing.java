@@ -0,0 +1,54 @@
+package cn.gt.kaka.util;
+
+/**
+ * 64位非加密哈希工具
+ *
+ * 用于布隆过滤器、限流计数表等需要在热路径上对字符串求哈希的场景，
+ * 直接遍历字符计算，不分配任何对象；结果不适用于安全相关的用途
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public final class Hashing {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+        throw new AssertionError("Hashing工具类不应被实例化");
+    }
+
+    /**
+     * 计算字符串的64位哈希
+     *
+     * FNV-1a 累加字符后再经过一次混合，使各位分布均匀
+     *
+     * @param value 字符串
+     * @return 64位哈希
+     */
+    public static long hash64(CharSequence value) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return mix64(h ^ value.length());
+    }
+
+    /**
+     * MurmurHash3 的64位终结混合函数
+     *
+     * @param h 输入
+     * @return 混合后的值
+     */
+    public static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,31 +1,62 @@
 package cn.gt.kaka.util;
 
+import cn.gt.kaka.dto.BulkIssueReport;
+import cn.gt.kaka.dto.IssuedToken;
 import cn.gt.kaka.dto.TokenType;
 import cn.gt.kaka.exception.JwtExpiredTokenException;
-import cn.gt.kaka.exception.JwtTokenMalformedException;
 import cn.gt.kaka.model.UserDto;
+import cn.gt.kaka.security.jwt.AsymmetricSigner;
+import cn.gt.kaka.security.jwt.CompactTokenCodec;
+import cn.gt.kaka.security.jwt.HmacSha256;
+import cn.gt.kaka.security.jwt.JwsAlgorithm;
+import cn.gt.kaka.security.jwt.JwtKeyring;
+import cn.gt.kaka.security.jwt.LeanJwsVerifier;
+import cn.gt.kaka.security.jwt.ParsedToken;
+import cn.gt.kaka.security.jwt.PemKeys;
+import cn.gt.kaka.security.jwt.PermissionSet;
+import cn.gt.kaka.security.jwt.TokenFormat;
+import cn.gt.kaka.security.jwt.TokenMinter;
+import cn.gt.kaka.security.jwt.TokenPair;
+import cn.gt.kaka.security.jwt.VerificationKey;
+import cn.gt.kaka.security.permission.PermissionCatalog;
+import cn.gt.kaka.security.revocation.UserTokenGenerationStore;
 import io.jsonwebtoken.*;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
 
-import java.io.UnsupportedEncodingException;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.Date;
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * JWT工具类
  * 
  * 提供JWT令牌的生成、解析、验证等功能
  * 支持访问令牌(Access Token)和刷新令牌(Refresh Token)两种类型
- * 使用HS256算法进行签名，确保令牌的安全性
+ * 默认使用HS256算法进行签名，也可配置为RS256/ES256/EdDSA非对称签名，
+ * 此时令牌头部携带kid，校验节点只需持有公钥，按kid从密钥环中查找，且不再接受HS256和紧凑格式的令牌
+ * 签名密钥在启动时构造一次，签名和校验复用线程缓存的Mac/Signature实例
+ * 认证流程使用精简校验器直接校验令牌字节，只解码被读取的声明
  * 
  * 主要功能：
  * 1. 生成访问令牌和刷新令牌
- * 2. 解析和验证JWT令牌
- * 3. 处理令牌过期和格式错误等异常情况
+ * 2. 在有界线程池上批量签发访问令牌
+ * 3. 解析和验证JWT令牌
+ * 4. 处理令牌过期和格式错误等异常情况
  * 
  * @author 系统管理员
  * @version 2.0
@@ -48,6 +79,14 @@ public class JwtUtil {
      */
     @Value("${jwt.userAccessToken.expireTime}")
     private long userAccessTokenExpireTime;
+
+    /**
+     * 访问令牌有效期的随机缩短比例
+     * 每个访问令牌的有效期在 [有效期*(1-比例), 有效期] 内随机取值，
+     * 同一时间集中登录签发的令牌不会在同一时刻集中过期；0表示不随机
+     */
+    @Value("${jwt.userAccessToken.expireJitter:0.1}")
+    private double userAccessTokenExpireJitter;
     
     /**
      * 刷新令牌过期时间（秒）
@@ -56,6 +95,137 @@ public class JwtUtil {
     @Value("${jwt.userRefreshToken.expireTime}")
     private long userRefreshTokenExpireTime;
 
+    /**
+     * 签发令牌使用的签名算法：HS256、RS256、ES256或EdDSA
+     */
+    @Value("${jwt.signing.algorithm:HS256}")
+    private String signingAlgorithm;
+
+    /**
+     * 非对称签名时写入令牌头部的kid，密钥环中必须存在同名公钥
+     */
+    @Value("${jwt.signing.keyId:}")
+    private String signingKeyId;
+
+    /**
+     * 非对称签名私钥位置（PKCS#8 PEM），支持 classpath: 和 file: 前缀
+     */
+    @Value("${jwt.signing.privateKey:}")
+    private String signingPrivateKey;
+
+    /**
+     * 是否允许签发和校验紧凑格式令牌，紧凑格式使用 jwt.secret，不能与非对称签名同时开启
+     */
+    @Value("${jwt.compact.enabled:false}")
+    private boolean compactEnabled;
+
+    /**
+     * 批量签发时同时在途的最大任务数，限制结果未被消费时的内存占用
+     */
+    @Value("${jwt.bulk.maxInFlight:256}")
+    private int bulkMaxInFlight;
+
+    @Autowired
+    private JwtKeyring jwtKeyring;
+
+    /**
+     * 用户令牌代数，签发时写入gen声明
+     */
+    @Autowired
+    private UserTokenGenerationStore userTokenGenerationStore;
+
+    @Autowired
+    @Qualifier("tokenIssueExecutor")
+    private ExecutorService tokenIssueExecutor;
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Autowired
+    private PermissionCatalog permissionCatalog;
+
+    /**
+     * HS256签名器
+     * 启动时根据签名密钥构造，避免每次签发和解析令牌都重新构造密钥和Mac
+     */
+    private HmacSha256 hmacSha256;
+
+    /**
+     * 非对称签名器，签名算法为HS256时为null
+     */
+    private AsymmetricSigner asymmetricSigner;
+
+    /**
+     * 令牌签发器，头部预编码，签名器已初始化
+     */
+    private TokenMinter tokenMinter;
+
+    /**
+     * 精简校验器
+     * 供 parseToken 使用，不构建jjwt的完整声明Map
+     */
+    private LeanJwsVerifier leanJwsVerifier;
+
+    /**
+     * 紧凑令牌编解码器，标签密钥由签名密钥派生，未开启紧凑格式时为null
+     */
+    private CompactTokenCodec compactTokenCodec;
+
+    /**
+     * 初始化签名密钥
+     *
+     * @throws IllegalStateException 当非对称签名配置不完整、与密钥环不一致或与紧凑格式同时开启时抛出
+     */
+    @PostConstruct
+    public void init() {
+        JwsAlgorithm algorithm = JwsAlgorithm.fromHeader(signingAlgorithm);
+        if (algorithm == null) {
+            throw new IllegalStateException("不支持的JWT签名算法: " + signingAlgorithm);
+        }
+        if (algorithm.isAsymmetric() && compactEnabled) {
+            throw new IllegalStateException("紧凑格式令牌使用 jwt.secret 签发，不能与非对称签名同时开启: "
+                    + "jwt.signing.algorithm=" + algorithm + ", jwt.compact.enabled=true");
+        }
+
+        hmacSha256 = new HmacSha256(secret.getBytes(StandardCharsets.UTF_8));
+        if (algorithm.isAsymmetric()) {
+            initAsymmetricSigner(algorithm);
+            tokenMinter = new TokenMinter(asymmetricSigner);
+            // 非对称签名时校验器不持有HS256签名器，jwt.secret 不能再用来伪造可通过校验的令牌
+            leanJwsVerifier = new LeanJwsVerifier(null, jwtKeyring, algorithm.acceptedWhenSigningWith());
+        } else {
+            tokenMinter = new TokenMinter(hmacSha256);
+            leanJwsVerifier = new LeanJwsVerifier(hmacSha256, jwtKeyring, algorithm.acceptedWhenSigningWith());
+        }
+        if (compactEnabled) {
+            compactTokenCodec = new CompactTokenCodec(hmacSha256);
+        }
+        log.info("JWT签名密钥初始化完成，算法: {}, kid: {}, 接受的算法: {}, 紧凑格式: {}", algorithm,
+                asymmetricSigner == null ? null : asymmetricSigner.getKeyId(), algorithm.acceptedWhenSigningWith(),
+                compactEnabled);
+    }
+
+    private void initAsymmetricSigner(JwsAlgorithm algorithm) {
+        if (!StringUtils.hasText(signingKeyId) || !StringUtils.hasText(signingPrivateKey)) {
+            throw new IllegalStateException("非对称签名需要配置 jwt.signing.keyId 和 jwt.signing.privateKey");
+        }
+
+        // 签发节点自身也要能校验自己的令牌，因此要求对应公钥已在密钥环中
+        VerificationKey publicKey = jwtKeyring.getKey(signingKeyId);
+        if (publicKey == null || publicKey.getAlgorithm() != algorithm) {
+            throw new IllegalStateException("密钥环中没有与签名配置匹配的公钥: kid=" + signingKeyId
+                    + ", 算法=" + algorithm);
+        }
+
+        Resource resource = resourceLoader.getResource(signingPrivateKey);
+        try (InputStream in = resource.getInputStream()) {
+            String pem = StreamUtils.copyToString(in, StandardCharsets.US_ASCII);
+            asymmetricSigner = new AsymmetricSigner(signingKeyId, algorithm, PemKeys.parsePrivateKey(pem));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException("无法加载JWT签名私钥: " + signingPrivateKey, e);
+        }
+    }
+
     /**
      * 生成访问令牌
      * 
@@ -64,10 +234,41 @@ public class JwtUtil {
      * 
      * @param userDto 用户信息对象，包含用户ID等基本信息
      * @return 生成的JWT访问令牌字符串
-     * @throws JwtTokenMalformedException 当令牌创建过程中发生编码错误时抛出
      */
     public String generateAccessToken(UserDto userDto) {
-        return generateToken(userDto, TokenType.Access, userAccessTokenExpireTime);
+        return generateToken(userDto, TokenType.Access, accessTokenTtl());
+    }
+
+    /**
+     * 按指定格式生成访问令牌
+     * 
+     * @param userDto 用户信息对象
+     * @param format 令牌格式，未开启紧凑格式时始终生成JWT
+     * @return 生成的访问令牌字符串
+     */
+    public String generateAccessToken(UserDto userDto, TokenFormat format) {
+        return generateAccessToken(userDto, format, System.currentTimeMillis());
+    }
+
+    /**
+     * 按指定格式生成访问令牌，沿用给定的认证时间
+     * 
+     * 提前续期时使用，新令牌的 auth_time 与被续期的令牌相同，续期不会延长认证时间
+     * 
+     * @param userDto 用户信息对象
+     * @param format 令牌格式，未开启紧凑格式时始终生成JWT
+     * @param authTime 认证时间（毫秒时间戳）
+     * @return 生成的访问令牌字符串
+     */
+    public String generateAccessToken(UserDto userDto, TokenFormat format, long authTime) {
+        String userId = userDto.getId();
+        int generation = userTokenGenerationStore.currentGeneration(userId);
+        PermissionSet permissions = permissionCatalog.permissionsOf(userDto);
+        long expiresAt = System.currentTimeMillis() + accessTokenTtl() * 1000L;
+        if (format != TokenFormat.COMPACT || compactTokenCodec == null) {
+            return tokenMinter.mint(userId, generation, permissions, TokenType.Access, authTime, expiresAt);
+        }
+        return compactTokenCodec.mint(userId, generation, permissions, TokenType.Access, authTime, expiresAt);
     }
     
     /**
@@ -78,49 +279,127 @@ public class JwtUtil {
      * 
      * @param userDto 用户信息对象，包含用户ID等基本信息
      * @return 生成的JWT刷新令牌字符串
-     * @throws JwtTokenMalformedException 当令牌创建过程中发生编码错误时抛出
      */
     public String generateRefreshToken(UserDto userDto) {
         return generateToken(userDto, TokenType.Refresh, userRefreshTokenExpireTime);
     }
 
+    /**
+     * 一次生成访问令牌和刷新令牌
+     * 
+     * 登录成功时使用，两个令牌共用同一个时间基准和线程缓存的缓冲区
+     * 
+     * @param userDto 用户信息对象
+     * @return 令牌对
+     */
+    public TokenPair generateTokenPair(UserDto userDto) {
+        return generateTokenPair(userDto, TokenFormat.JWT);
+    }
+
+    /**
+     * 按指定格式一次生成访问令牌和刷新令牌
+     * 
+     * @param userDto 用户信息对象
+     * @param format 令牌格式，未开启紧凑格式时始终生成JWT
+     * @return 令牌对
+     */
+    public TokenPair generateTokenPair(UserDto userDto, TokenFormat format) {
+        String userId = userDto.getId();
+        int generation = userTokenGenerationStore.currentGeneration(userId);
+        PermissionSet permissions = permissionCatalog.permissionsOf(userDto);
+        long now = System.currentTimeMillis();
+        long accessTtl = accessTokenTtl();
+        if (format != TokenFormat.COMPACT || compactTokenCodec == null) {
+            return tokenMinter.mintPair(userId, generation, permissions, now, accessTtl, userRefreshTokenExpireTime);
+        }
+        long accessExpiresAt = now + accessTtl * 1000L;
+        long refreshExpiresAt = now + userRefreshTokenExpireTime * 1000L;
+        return new TokenPair(
+                compactTokenCodec.mint(userId, generation, permissions, TokenType.Access, now, accessExpiresAt),
+                compactTokenCodec.mint(userId, generation, null, TokenType.Refresh, now, refreshExpiresAt),
+                accessExpiresAt,
+                refreshExpiresAt);
+    }
+
+    /**
+     * 批量签发访问令牌
+     * 
+     * 在有界线程池上并行签名，每个结果完成后立即在调用线程上交给消费者，
+     * 消费者无需线程安全，可以直接写响应流；在途任务数受 jwt.bulk.maxInFlight 限制
+     * 单个用户签发失败不影响其他用户，失败原因记录在该用户的结果中
+     * 每个令牌的过期时间按 jwt.userAccessToken.expireJitter 随机缩短，批量签发的令牌不会同时过期
+     * 
+     * @param users 用户列表
+     * @param consumer 结果消费者，按完成顺序调用
+     * @return 签发汇总，包含成功数、失败数和吞吐量
+     * @throws IllegalStateException 当调用线程被中断时抛出
+     * @see BatchExecutor
+     */
+    public BulkIssueReport issueAccessTokens(List<UserDto> users, Consumer<IssuedToken> consumer) {
+        long startNanos = System.nanoTime();
+        long now = System.currentTimeMillis();
+        // 消费者在调用线程上执行，计数器只为满足lambda的effectively final要求
+        AtomicInteger issued = new AtomicInteger();
+        BatchExecutor.forEachCompleted(tokenIssueExecutor, bulkMaxInFlight, users,
+                (index, user) -> issueAccessToken(index, user, now),
+                result -> {
+                    if (result.isSuccess()) {
+                        issued.incrementAndGet();
+                    }
+                    consumer.accept(result);
+                });
+
+        long elapsedNanos = System.nanoTime() - startNanos;
+        int succeeded = issued.get();
+        BulkIssueReport report = new BulkIssueReport(users.size(), succeeded, users.size() - succeeded,
+                elapsedNanos / 1_000_000L, elapsedNanos == 0 ? 0D : succeeded * 1_000_000_000D / elapsedNanos);
+        log.info("批量签发令牌完成: {}", report);
+        return report;
+    }
+
+    private IssuedToken issueAccessToken(int index, UserDto user, long now) {
+        String userId = user == null ? null : user.getId();
+        if (!StringUtils.hasText(userId)) {
+            return new IssuedToken(index, userId, null, null, "用户ID不能为空");
+        }
+        try {
+            long expiresAt = now + accessTokenTtl() * 1000L;
+            String token = tokenMinter.mint(userId, userTokenGenerationStore.currentGeneration(userId),
+                    permissionCatalog.permissionsOf(user), TokenType.Access, now, expiresAt);
+            return new IssuedToken(index, userId, token, expiresAt, null);
+        } catch (RuntimeException e) {
+            log.warn("签发令牌失败: 用户 {}, 原因 {}", userId, e.getMessage());
+            return new IssuedToken(index, userId, null, null, "签发令牌失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 计算本次签发的访问令牌有效期（秒），按配置的比例随机缩短，不会超过配置的有效期
+     */
+    private long accessTokenTtl() {
+        long spread = (long) (userAccessTokenExpireTime * userAccessTokenExpireJitter);
+        return spread <= 0 ? userAccessTokenExpireTime
+                : userAccessTokenExpireTime - ThreadLocalRandom.current().nextLong(spread + 1);
+    }
+
     /**
      * 生成JWT令牌的通用方法
      * 
      * 根据用户信息、令牌类型和过期时间生成JWT令牌
-     * 使用HS256算法进行签名，确保令牌的完整性和真实性
+     * 按配置使用HS256或非对称算法签名，确保令牌的完整性和真实性
      * 
      * @param userDto 用户信息对象
      * @param tokenType 令牌类型（访问令牌或刷新令牌）
      * @param expireTime 过期时间（秒）
      * @return 生成的JWT令牌字符串
-     * @throws JwtTokenMalformedException 当令牌创建过程中发生编码错误时抛出
      */
     private String generateToken(UserDto userDto, TokenType tokenType, long expireTime) {
-        try {
-            // 创建JWT声明
-            Claims claims = Jwts.claims().setSubject(userDto.getId());
-            claims.put(Constants.USER_ID, userDto.getId());
-            claims.put(Constants.TOKEN_TYPE, tokenType);
-            
-            // 计算过期时间
-            LocalDateTime currentTime = LocalDateTime.now();
-            Date expirationDate = Date.from(currentTime
-                    .plusSeconds(expireTime)
-                    .atZone(ZoneId.systemDefault())
-                    .toInstant());
-            
-            // 构建并返回JWT令牌
-            return Jwts.builder()
-                    .setClaims(claims)
-                    .signWith(SignatureAlgorithm.HS256, secret.getBytes("UTF-8"))
-                    .setExpiration(expirationDate)
-                    .compact();
-                    
-        } catch (UnsupportedEncodingException e) {
-            log.error("JWT令牌生成失败，编码异常: {}", e.getMessage(), e);
-            throw new JwtTokenMalformedException("无效的JWT令牌: " + e.getMessage());
-        }
+        // 头部已预编码，签名器已初始化，这里只序列化载荷并签名
+        String userId = userDto.getId();
+        PermissionSet permissions = tokenType == TokenType.Access ? permissionCatalog.permissionsOf(userDto) : null;
+        long now = System.currentTimeMillis();
+        return tokenMinter.mint(userId, userTokenGenerationStore.currentGeneration(userId), permissions, tokenType,
+                now, now + expireTime * 1000L);
     }
 
     /**
@@ -133,14 +412,17 @@ public class JwtUtil {
      * @return 解析后的JWT声明对象
      * @throws BadCredentialsException 当令牌格式错误或签名无效时抛出
      * @throws JwtExpiredTokenException 当令牌已过期时抛出
-     * @throws JwtTokenMalformedException 当令牌编码错误时抛出
      */
     public Jws<Claims> parseClaims(String authToken) {
         log.debug("开始解析JWT令牌: {}", authToken.substring(0, Math.min(20, authToken.length())) + "...");
+        if (asymmetricSigner != null) {
+            // 本方法只校验HS256，非对称签名时不接受HS256令牌
+            log.error("JWT令牌验证失败: 非对称签名时不接受HS256令牌");
+            throw new BadCredentialsException("无效的JWT令牌");
+        }
         
         try {
-            return Jwts.parser()
-                    .setSigningKey(secret.getBytes("UTF-8"))
+            return hmacSha256.newParser()
                     .parseClaimsJws(authToken);
                     
         } catch (UnsupportedJwtException | MalformedJwtException | IllegalArgumentException | SignatureException e) {
@@ -150,13 +432,37 @@ public class JwtUtil {
         } catch (ExpiredJwtException e) {
             log.warn("JWT令牌已过期: {}", e.getMessage());
             throw new JwtExpiredTokenException("JWT令牌已过期", e);
-            
-        } catch (UnsupportedEncodingException e) {
-            log.error("JWT令牌解析失败，编码异常: {}", e.getMessage(), e);
-            throw new JwtTokenMalformedException("无效的JWT令牌: " + e.getMessage());
         }
     }
 
+    /**
+     * 解析并校验JWT令牌，返回不可变的已解析令牌视图
+     * 
+     * 签名校验和声明解析只执行一次，需要多个字段的调用方应使用本方法，
+     * 而不是分别调用 getUserIdFromToken、getTokenTypeFromToken 等方法
+     * 接受的签名算法由签名配置决定：HS256签发时接受HS256和密钥环中kid对应的非对称签名，
+     * 非对称签发时只接受密钥环中的非对称签名；其余声明在被读取时才解码
+     * 以 {@link CompactTokenCodec#PREFIX} 开头的令牌按紧凑格式校验，未开启紧凑格式时一律拒绝
+     * 
+     * @param authToken 待解析的JWT令牌字符串
+     * @return 已解析令牌
+     * @throws BadCredentialsException 当令牌格式错误或签名无效时抛出
+     * @throws JwtExpiredTokenException 当令牌已过期时抛出
+     * @throws cn.gt.kaka.exception.JwtTokenMalformedException 当声明类型错误时抛出
+     */
+    public ParsedToken parseToken(String authToken) {
+        log.debug("开始校验JWT令牌: {}", authToken == null ? null
+                : authToken.substring(0, Math.min(20, authToken.length())) + "...");
+        if (TokenFormat.of(authToken) == TokenFormat.COMPACT) {
+            if (compactTokenCodec == null) {
+                log.error("JWT令牌验证失败: 未开启紧凑格式令牌");
+                throw new BadCredentialsException("无效的JWT令牌");
+            }
+            return compactTokenCodec.verify(authToken);
+        }
+        return leanJwsVerifier.verify(authToken);
+    }
+
     /**
      * 验证令牌是否有效
      * 
@@ -167,7 +473,7 @@ public class JwtUtil {
      */
     public boolean validateToken(String authToken) {
         try {
-            parseClaims(authToken);
+            parseToken(authToken);
             return true;
         } catch (Exception e) {
             log.debug("令牌验证失败: {}", e.getMessage());
@@ -183,8 +489,7 @@ public class JwtUtil {
      */
     public String getUserIdFromToken(String authToken) {
         try {
-            Claims claims = parseClaims(authToken).getBody();
-            return claims.get(Constants.USER_ID, String.class);
+            return parseToken(authToken).getUserId();
         } catch (Exception e) {
             log.warn("从令牌中提取用户ID失败: {}", e.getMessage());
             return null;
@@ -199,9 +504,7 @@ public class JwtUtil {
      */
     public TokenType getTokenTypeFromToken(String authToken) {
         try {
-            Claims claims = parseClaims(authToken).getBody();
-            String tokenTypeStr = claims.get(Constants.TOKEN_TYPE, String.class);
-            return TokenType.valueOf(tokenTypeStr);
+            return parseToken(authToken).getTokenType();
         } catch (Exception e) {
             log.warn("从令牌中提取令牌类型失败: {}", e.getMessage());
             return null;
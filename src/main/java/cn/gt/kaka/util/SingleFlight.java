@@ -0,0 +1,90 @@
+package cn.gt.kaka.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 并发相同调用合并工具
+ *
+ * 同一个键同时只执行一次加载，执行期间到达的相同调用不再重复执行，等待并共享第一次调用的结果；
+ * 加载抛出的异常同样原样抛给所有等待者。加载结束后立即移除该键，之后的调用重新执行，不缓存结果
+ *
+ * @param <K> 键类型
+ * @param <V> 结果类型
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * 执行加载，或等待同一个键正在进行的加载
+     *
+     * @param key 键
+     * @param loader 加载逻辑，在第一个调用者的线程上执行
+     * @return 加载结果
+     * @throws IllegalStateException 当等待期间线程被中断时抛出
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, call);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * 获取被合并（没有单独执行加载）的调用次数
+     *
+     * @return 累计合并次数
+     */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * 获取正在执行的加载数
+     *
+     * @return 正在执行的加载数
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> running) {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待合并调用的结果时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+-- 登录查询（UserDao.findWithPermissionsByUsername）使用的索引
+--
+-- 按 README 中的建表语句创建的表已经具备这些索引，无需执行本文件：
+--   t_user.username 的 UNIQUE 约束
+--   t_user_role 的主键 (user_id, role_id)，最左列为 user_id
+--   t_role_permission 的主键 (role_id, permission_id)，最左列为 role_id
+--   t_permission 的主键 id
+-- 表结构缺少上述约束时执行以下语句，已存在同名索引时对应语句会报错，可忽略
+
+CREATE UNIQUE INDEX uk_user_username ON t_user (username);
+
+CREATE INDEX idx_user_role_user_id ON t_user_role (user_id, role_id);
+
+CREATE INDEX idx_role_permission_role_id ON t_role_permission (role_id, permission_id);
@@ -0,0 +1,11 @@
+-- 已使用的刷新令牌表，TokenRefreshService 依赖此表判断刷新令牌是否被重用
+--
+-- 按 README 中的建表语句新建的数据库已包含此表，已有数据库升级时执行本文件
+
+CREATE TABLE t_refresh_token_use (
+    token_id VARCHAR(32) PRIMARY KEY,
+    user_id VARCHAR(32) NOT NULL,
+    expires_at BIGINT NOT NULL
+);
+
+CREATE INDEX idx_refresh_token_use_expires_at ON t_refresh_token_use (expires_at);
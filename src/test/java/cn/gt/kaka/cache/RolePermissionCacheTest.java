@@ -0,0 +1,132 @@
+package cn.gt.kaka.cache;
+
+import cn.gt.kaka.dao.UserDao;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * RolePermissionCache 失效测试
+ *
+ * 数据访问对象为模拟对象，按角色记录每次批量查询请求的角色，用于确认失效后只重新加载被失效的条目
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public class RolePermissionCacheTest {
+
+    private final Map<String, List<String>> userRoles = new HashMap<>();
+
+    private final Map<String, List<String>> roleCodes = new HashMap<>();
+
+    private final List<String> roleQueries = new ArrayList<>();
+
+    private final List<String> userQueries = new ArrayList<>();
+
+    private RolePermissionCache cache;
+
+    @Before
+    public void setUp() {
+        UserDao userDao = mock(UserDao.class);
+        when(userDao.findRoleIdsByUserId(anyString())).thenAnswer(invocation -> {
+            String userId = invocation.getArgument(0);
+            userQueries.add(userId);
+            return new ArrayList<>(userRoles.getOrDefault(userId, Collections.emptyList()));
+        });
+        doAnswer(invocation -> {
+            Collection<String> roles = invocation.getArgument(0);
+            BiConsumer<String, String> consumer = invocation.getArgument(1);
+            for (String role : roles) {
+                roleQueries.add(role);
+                for (String code : roleCodes.getOrDefault(role, Collections.emptyList())) {
+                    consumer.accept(role, code);
+                }
+            }
+            return null;
+        }).when(userDao).forEachRolePermission(any(), any());
+
+        cache = new RolePermissionCache();
+        ReflectionTestUtils.setField(cache, "userDao", userDao);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttl", 60L);
+        ReflectionTestUtils.setField(cache, "maxUsers", 100);
+
+        userRoles.put("u1", Arrays.asList("reader", "writer"));
+        userRoles.put("u2", Collections.singletonList("writer"));
+        roleCodes.put("reader", Arrays.asList("user:read"));
+        roleCodes.put("writer", Arrays.asList("user:read", "user:write"));
+    }
+
+    @Test
+    public void mergesRolesAndServesFromCache() {
+        assertEquals(Arrays.asList("user:read", "user:write"), cache.permissionsOf("u1"));
+        assertEquals(Arrays.asList("user:read", "user:write"), cache.permissionsOf("u2"));
+        cache.permissionsOf("u1");
+
+        assertEquals(Arrays.asList("u1", "u2"), userQueries);
+        assertEquals(Arrays.asList("reader", "writer"), roleQueries);
+    }
+
+    @Test
+    public void invalidateRoleReloadsOnlyThatRole() {
+        cache.permissionsOf("u1");
+        roleQueries.clear();
+
+        // 两个角色在数据库中都被修改，只有 reader 被失效
+        roleCodes.put("reader", Arrays.asList("user:read", "report:read"));
+        roleCodes.put("writer", Collections.singletonList("user:write"));
+        cache.invalidateRole("reader");
+
+        assertEquals(Arrays.asList("user:read", "report:read", "user:write"), cache.permissionsOf("u1"));
+        // 只重新查询被失效的角色，writer 仍是缓存中的旧值，用户的角色列表也没有重新查询
+        assertEquals(Collections.singletonList("reader"), roleQueries);
+        assertEquals(Collections.singletonList("u1"), userQueries);
+        assertEquals(Arrays.asList("user:read", "user:write"), cache.permissionsOf("u2"));
+        assertEquals(Collections.singletonList("reader"), roleQueries);
+    }
+
+    @Test
+    public void invalidateUserReloadsOnlyThatUsersRoles() {
+        cache.permissionsOf("u1");
+        cache.permissionsOf("u2");
+        userQueries.clear();
+        roleQueries.clear();
+
+        userRoles.put("u1", Collections.singletonList("reader"));
+        userRoles.put("u2", Collections.singletonList("reader"));
+        cache.invalidateUser("u1");
+
+        assertEquals(Collections.singletonList("user:read"), cache.permissionsOf("u1"));
+        assertEquals(Arrays.asList("user:read", "user:write"), cache.permissionsOf("u2"));
+        assertEquals(Collections.singletonList("u1"), userQueries);
+        // 角色条目不受用户失效影响
+        assertEquals(Collections.emptyList(), roleQueries);
+    }
+
+    @Test
+    public void invalidateUnknownKeysIsHarmless() {
+        cache.invalidateRole("missing");
+        cache.invalidateUser("missing");
+        userRoles.put("u3", Collections.singletonList("reader"));
+
+        assertEquals(Collections.singletonList("user:read"), cache.permissionsOf("u3"));
+        assertEquals(Collections.singletonList("u3"), userQueries);
+    }
+}
@@ -0,0 +1,221 @@
+package cn.gt.kaka.cache;
+
+import cn.gt.kaka.dao.UserDao;
+import cn.gt.kaka.model.UserDto;
+import cn.gt.kaka.util.SingleFlight;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * UserCache 命中、负缓存、有效期、失效和并发未命中合并测试
+ *
+ * 数据访问对象为模拟对象，按调用次数确认是否查询了数据库；有效期以秒为单位，过期测试需要等待一秒多
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public class UserCacheTest {
+
+    private UserDao userDao;
+
+    private UserCache cache;
+
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() {
+        userDao = mock(UserDao.class);
+        when(userDao.findWithPermissionsByUsername(anyString())).thenReturn(Optional.empty());
+        when(userDao.findWithPermissionsByUsername("alice")).thenAnswer(invocation -> Optional.of(alice()));
+
+        cache = new UserCache();
+        ReflectionTestUtils.setField(cache, "userDao", userDao);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttl", 30L);
+        ReflectionTestUtils.setField(cache, "negativeTtl", 5L);
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+    }
+
+    @After
+    public void tearDown() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void hitServesCopyWithoutPermissions() {
+        UserDto loaded = cache.get("alice").get();
+        UserDto cached = cache.get("alice").get();
+
+        verify(userDao, times(1)).findWithPermissionsByUsername("alice");
+        assertEquals(Arrays.asList("user:read", "user:write"), loaded.getPermissions());
+        assertNull(cached.getPermissions());
+        assertEquals("u1", cached.getId());
+
+        // 调用方修改返回的副本不影响缓存
+        cached.setPassword("changed");
+        assertEquals("{bcrypt}hash", cache.get("alice").get().getPassword());
+        assertEquals(2L, cache.stats().getHitCount());
+        assertEquals(1L, cache.stats().getMissCount());
+    }
+
+    @Test
+    public void unknownUserIsCachedNegatively() {
+        assertFalse(cache.get("ghost").isPresent());
+        assertFalse(cache.get("ghost").isPresent());
+
+        verify(userDao, times(1)).findWithPermissionsByUsername("ghost");
+    }
+
+    @Test
+    public void zeroNegativeTtlDisablesNegativeCaching() {
+        ReflectionTestUtils.setField(cache, "negativeTtl", 0L);
+
+        cache.get("ghost");
+        cache.get("ghost");
+
+        verify(userDao, times(2)).findWithPermissionsByUsername("ghost");
+        assertEquals(0L, cache.stats().getSize());
+    }
+
+    @Test
+    public void entriesExpireAfterTtl() throws Exception {
+        ReflectionTestUtils.setField(cache, "ttl", 1L);
+        ReflectionTestUtils.setField(cache, "negativeTtl", 1L);
+        cache.get("alice");
+        cache.get("ghost");
+
+        Thread.sleep(1100L);
+        assertTrue(cache.get("alice").isPresent());
+        assertFalse(cache.get("ghost").isPresent());
+
+        verify(userDao, times(2)).findWithPermissionsByUsername("alice");
+        verify(userDao, times(2)).findWithPermissionsByUsername("ghost");
+        // 过期条目原地覆盖，不重复计入条目数
+        assertEquals(2L, cache.stats().getSize());
+    }
+
+    @Test
+    public void invalidateForcesReload() {
+        cache.get("alice");
+
+        cache.invalidate("alice");
+        cache.get("alice");
+        cache.get("alice");
+
+        verify(userDao, times(2)).findWithPermissionsByUsername("alice");
+    }
+
+    @Test
+    public void invalidateDuringLoadKeepsResultOutOfCache() {
+        when(userDao.findWithPermissionsByUsername("alice")).thenAnswer(invocation -> {
+            // 查询进行期间另一个请求修改了密码
+            cache.invalidate("alice");
+            return Optional.of(alice());
+        });
+
+        assertTrue(cache.get("alice").isPresent());
+        assertTrue(cache.get("alice").isPresent());
+
+        verify(userDao, times(2)).findWithPermissionsByUsername("alice");
+        assertEquals(0L, cache.stats().getSize());
+    }
+
+    @Test
+    public void invalidateAllForcesReload() {
+        cache.get("alice");
+        cache.get("ghost");
+
+        cache.invalidateAll();
+        cache.get("alice");
+
+        assertEquals(1L, cache.stats().getSize());
+        verify(userDao, times(2)).findWithPermissionsByUsername("alice");
+    }
+
+    @Test
+    public void evictsOldestBeyondMaxSize() {
+        ReflectionTestUtils.setField(cache, "maxSize", 2);
+        cache.get("alice");
+        cache.get("bob");
+        cache.get("carol");
+
+        assertEquals(2L, cache.stats().getSize());
+        assertEquals(1L, cache.stats().getEvictionCount());
+        cache.get("alice");
+        verify(userDao, times(2)).findWithPermissionsByUsername("alice");
+    }
+
+    @Test
+    public void concurrentMissesShareOneQuery() throws Exception {
+        CountDownLatch querying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userDao.findWithPermissionsByUsername("alice")).thenAnswer(invocation -> {
+            querying.countDown();
+            release.await();
+            return Optional.of(alice());
+        });
+        executorService = Executors.newFixedThreadPool(2);
+
+        Future<Optional<UserDto>> first = executorService.submit(() -> cache.get("alice"));
+        assertTrue(querying.await(5, TimeUnit.SECONDS));
+        Future<Optional<UserDto>> second = executorService.submit(() -> cache.get("alice"));
+        awaitCoalesced(1L);
+        release.countDown();
+
+        UserDto firstUser = first.get(5, TimeUnit.SECONDS).get();
+        UserDto secondUser = second.get(5, TimeUnit.SECONDS).get();
+        verify(userDao, times(1)).findWithPermissionsByUsername("alice");
+        // 合并的调用各自拿到带权限的副本
+        assertNotSame(firstUser, secondUser);
+        assertEquals(firstUser.getPermissions(), secondUser.getPermissions());
+    }
+
+    @Test
+    public void disabledAlwaysQueries() {
+        ReflectionTestUtils.setField(cache, "enabled", false);
+
+        cache.get("alice");
+        cache.get("alice");
+
+        verify(userDao, times(2)).findWithPermissionsByUsername("alice");
+    }
+
+    private void awaitCoalesced(long expected) throws InterruptedException {
+        SingleFlight<?, ?> loads = (SingleFlight<?, ?>) ReflectionTestUtils.getField(cache, "loads");
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (loads.coalescedCount() < expected) {
+            assertTrue("第二个未命中没有与进行中的查询合并", System.currentTimeMillis() < deadline);
+            Thread.sleep(5L);
+        }
+    }
+
+    private static UserDto alice() {
+        UserDto user = new UserDto("u1", "alice", "{bcrypt}hash", "Alice", "13800000000");
+        user.setPermissions(Arrays.asList("user:read", "user:write"));
+        return user;
+    }
+}
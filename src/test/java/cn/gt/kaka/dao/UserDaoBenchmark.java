@@ -0,0 +1,129 @@
+package cn.gt.kaka.dao;
+
+import cn.gt.kaka.model.UserDto;
+import cn.gt.kaka.util.MicroBenchmark;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 登录查询的耗时对比：一次连接查询与 findByUsername + findPermissionsByUserId 两次查询
+ *
+ * 在内嵌H2数据库上预置用户、角色和权限，每个用户有多个角色且角色之间的权限有重叠，
+ * 两种方式按相同的用户名顺序轮流查询；H2在进程内执行，测得的差别不含网络往返，实际数据库上两次查询的差距更大
+ *
+ * 不在默认构建中执行，运行方式：mvn test -Dtest=UserDaoBenchmark
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+public class UserDaoBenchmark {
+
+    private static final int USERS = 5000;
+
+    private static final int ROLES = 20;
+
+    private static final int PERMISSIONS = 100;
+
+    private static final int PERMISSIONS_PER_ROLE = 15;
+
+    private static final int ROLES_PER_USER = 3;
+
+    private static final int WARMUP = 5_000;
+
+    private static final int ITERATIONS = 50_000;
+
+    private EmbeddedDatabase database;
+
+    private UserDao userDao;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(EmbeddedDatabaseType.H2)
+                .addScript("db/schema.sql")
+                .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        userDao = new UserDao();
+        ReflectionTestUtils.setField(userDao, "jdbcTemplate", jdbcTemplate);
+        seed(jdbcTemplate);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void joinVersusTwoQueries() {
+        UserDto sample = userDao.findWithPermissionsByUsername("user42").get();
+        assertEquals(new HashSet<>(userDao.findPermissionsByUserId(sample.getId())),
+                new HashSet<>(sample.getPermissions()));
+
+        int[] next = {0};
+        MicroBenchmark.Result join = MicroBenchmark.run("一次连接查询", WARMUP, ITERATIONS,
+                () -> userDao.findWithPermissionsByUsername(nextUsername(next)).get().getPermissions());
+        next[0] = 0;
+        MicroBenchmark.Result twoQueries = MicroBenchmark.run("两次查询", WARMUP, ITERATIONS,
+                () -> userDao.findPermissionsByUserId(userDao.findByUsername(nextUsername(next)).get().getId()));
+
+        log.info("登录查询（{}个用户，每个用户{}个角色，每个角色{}个权限）", USERS, ROLES_PER_USER, PERMISSIONS_PER_ROLE);
+        log.info("{}", join);
+        log.info("{}", twoQueries);
+    }
+
+    private static String nextUsername(int[] next) {
+        // 按固定步长跳跃，避免连续访问相邻的索引页
+        next[0] = (next[0] + 7919) % USERS;
+        return "user" + next[0];
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate) {
+        List<Object[]> permissions = new ArrayList<>(PERMISSIONS);
+        for (int i = 0; i < PERMISSIONS; i++) {
+            permissions.add(new Object[]{"p" + i, "resource" + i + ":read"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO t_permission (id, code) VALUES (?, ?)", permissions);
+
+        List<Object[]> roles = new ArrayList<>(ROLES);
+        List<Object[]> rolePermissions = new ArrayList<>(ROLES * PERMISSIONS_PER_ROLE);
+        for (int r = 0; r < ROLES; r++) {
+            roles.add(new Object[]{"r" + r, "role" + r, "角色" + r});
+            // 相邻角色的权限区间重叠，连接结果中有重复的权限代码需要去重
+            for (int p = 0; p < PERMISSIONS_PER_ROLE; p++) {
+                rolePermissions.add(new Object[]{"r" + r, "p" + ((r * 5 + p) % PERMISSIONS)});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO t_role (id, code, name) VALUES (?, ?, ?)", roles);
+        jdbcTemplate.batchUpdate("INSERT INTO t_role_permission (role_id, permission_id) VALUES (?, ?)",
+                rolePermissions);
+
+        List<Object[]> users = new ArrayList<>(USERS);
+        List<Object[]> userRoles = new ArrayList<>(USERS * ROLES_PER_USER);
+        for (int u = 0; u < USERS; u++) {
+            String id = String.format("%08d", u);
+            users.add(new Object[]{id, "user" + u, "{bcrypt}hash-" + u, "User " + u, "1380000" + u});
+            for (int r = 0; r < ROLES_PER_USER; r++) {
+                userRoles.add(new Object[]{id, "r" + ((u + r) % ROLES)});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO t_user (id, username, password, fullname, mobile) VALUES (?, ?, ?, ?, ?)",
+                users);
+        jdbcTemplate.batchUpdate("INSERT INTO t_user_role (user_id, role_id) VALUES (?, ?)", userRoles);
+    }
+}
@@ -0,0 +1,205 @@
+package cn.gt.kaka.dao;
+
+import cn.gt.kaka.model.UserDto;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * UserDao 数据访问测试
+ *
+ * 在内嵌H2数据库上执行与生产相同的SQL，表结构见 db/schema.sql
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+public class UserDaoTest {
+
+    private static final String SELECT_USERS = "SELECT " + UserDao.USER_COLUMNS + " FROM t_user ORDER BY id";
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private UserDao userDao;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(EmbeddedDatabaseType.H2)
+                .addScript("db/schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        userDao = new UserDao();
+        ReflectionTestUtils.setField(userDao, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    /**
+     * 按下标读取的 USER_ROW_MAPPER 与按列名读取的 BeanPropertyRowMapper 在同一结果集的每一行上结果一致，
+     * USER_COLUMNS 的列顺序被调整时本测试失败
+     */
+    @Test
+    public void userRowMapperMatchesBeanPropertyRowMapper() {
+        insertUser("1", "alice", "{bcrypt}hash-1", "Alice", "13800000001");
+        insertUser("2", "bob", "{bcrypt}hash-2", null, null);
+        insertUser("3", "carol", "{bcrypt}hash-3", "Carol", null);
+        insertUser("4", "dave", "{bcrypt}hash-4", null, "13800000004");
+
+        RowMapper<UserDto> beanMapper = new BeanPropertyRowMapper<>(UserDto.class);
+        List<UserDto[]> pairs = jdbcTemplate.query(SELECT_USERS,
+                (rs, rowNum) -> new UserDto[]{UserDao.USER_ROW_MAPPER.mapRow(rs, rowNum), beanMapper.mapRow(rs, rowNum)});
+
+        assertEquals(4, pairs.size());
+        for (UserDto[] pair : pairs) {
+            assertEquals(pair[1], pair[0]);
+        }
+        UserDto bob = pairs.get(1)[0];
+        assertEquals("2", bob.getId());
+        assertEquals("bob", bob.getUsername());
+        assertEquals("{bcrypt}hash-2", bob.getPassword());
+        assertNull(bob.getFullname());
+        assertNull(bob.getMobile());
+        assertNull(bob.getPermissions());
+    }
+
+    /**
+     * 两种映射器的耗时对比，只记录结果不做断言；BeanPropertyRowMapper 按原实现每次查询新建
+     */
+    @Test
+    public void userRowMapperTiming() {
+        int rows = 2000;
+        List<Object[]> batch = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Object[]{String.format("%05d", i), "user" + i, "{bcrypt}hash-" + i,
+                    i % 3 == 0 ? null : "User " + i, i % 2 == 0 ? null : "1380000" + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO t_user (id, username, password, fullname, mobile) VALUES (?, ?, ?, ?, ?)",
+                batch);
+
+        long indexNanos = 0;
+        long beanNanos = 0;
+        for (int round = 0; round < 20; round++) {
+            long start = System.nanoTime();
+            List<UserDto> byIndex = jdbcTemplate.query(SELECT_USERS, UserDao.USER_ROW_MAPPER);
+            indexNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<UserDto> byName = jdbcTemplate.query(SELECT_USERS, new BeanPropertyRowMapper<>(UserDto.class));
+            beanNanos = System.nanoTime() - start;
+
+            assertEquals(byName, byIndex);
+        }
+        log.info("用户行映射耗时（{}行，含查询）: USER_ROW_MAPPER {} ns/行, BeanPropertyRowMapper {} ns/行",
+                rows, indexNanos / rows, beanNanos / rows);
+    }
+
+    /**
+     * 一次连接查询与 findByUsername + findPermissionsByUserId 两次查询的结果一致：
+     * 多个角色包含同一权限时去重，没有角色、角色没有权限的用户仍返回用户信息且权限为空
+     */
+    @Test
+    public void findWithPermissionsMatchesTwoQueryPath() {
+        insertUser("1", "alice", "{bcrypt}hash-1", "Alice", "13800000001");
+        insertUser("2", "bob", "{bcrypt}hash-2", null, null);
+        insertUser("3", "carol", "{bcrypt}hash-3", "Carol", null);
+        insertUser("4", "dave", "{bcrypt}hash-4", null, "13800000004");
+
+        insertPermission("p1", "user:read");
+        insertPermission("p2", "user:write");
+        insertPermission("p3", "token:revoke");
+        insertRole("r1", "reader", "p1");
+        insertRole("r2", "admin", "p1", "p2", "p3");
+        insertRole("r3", "empty");
+        // alice 的两个角色都包含 user:read
+        assignRoles("1", "r1", "r2");
+        // bob 只有一个没有权限的角色，carol 没有角色
+        assignRoles("2", "r3");
+        assignRoles("4", "r1");
+
+        for (String username : new String[]{"alice", "bob", "carol", "dave"}) {
+            UserDto joined = userDao.findWithPermissionsByUsername(username).get();
+            UserDto user = userDao.findByUsername(username).get();
+            List<String> codes = userDao.findPermissionsByUserId(user.getId());
+
+            assertEquals(sorted(codes), sorted(joined.getPermissions()));
+            assertEquals(joined.getPermissions().size(), new HashSet<>(joined.getPermissions()).size());
+            user.setPermissions(joined.getPermissions());
+            assertEquals(user, joined);
+        }
+
+        assertEquals(sorted(Arrays.asList("user:read", "user:write", "token:revoke")),
+                sorted(userDao.findWithPermissionsByUsername("alice").get().getPermissions()));
+        assertTrue(userDao.findWithPermissionsByUsername("bob").get().getPermissions().isEmpty());
+        UserDto carol = userDao.findWithPermissionsByUsername("carol").get();
+        assertEquals("3", carol.getId());
+        assertEquals("{bcrypt}hash-3", carol.getPassword());
+        assertTrue(carol.getPermissions().isEmpty());
+    }
+
+    @Test
+    public void findWithPermissionsReturnsEmptyForUnknownUser() {
+        insertUser("1", "alice", "{bcrypt}hash-1", "Alice", "13800000001");
+
+        Optional<UserDto> joined = userDao.findWithPermissionsByUsername("nobody");
+
+        assertFalse(joined.isPresent());
+        assertEquals(userDao.findByUsername("nobody"), joined);
+    }
+
+    private void insertUser(String id, String username, String password, String fullname, String mobile) {
+        jdbcTemplate.update("INSERT INTO t_user (id, username, password, fullname, mobile) VALUES (?, ?, ?, ?, ?)",
+                id, username, password, fullname, mobile);
+    }
+
+    private void insertPermission(String id, String code) {
+        jdbcTemplate.update("INSERT INTO t_permission (id, code) VALUES (?, ?)", id, code);
+    }
+
+    private void insertRole(String id, String code, String... permissionIds) {
+        jdbcTemplate.update("INSERT INTO t_role (id, code, name) VALUES (?, ?, ?)", id, code, code);
+        for (String permissionId : permissionIds) {
+            jdbcTemplate.update("INSERT INTO t_role_permission (role_id, permission_id) VALUES (?, ?)",
+                    id, permissionId);
+        }
+    }
+
+    private void assignRoles(String userId, String... roleIds) {
+        for (String roleId : roleIds) {
+            jdbcTemplate.update("INSERT INTO t_user_role (user_id, role_id) VALUES (?, ?)", userId, roleId);
+        }
+    }
+
+    private static List<String> sorted(List<String> codes) {
+        List<String> copy = new ArrayList<>(codes);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,347 @@
+package cn.gt.kaka.filter;
+
+import cn.gt.kaka.exception.LoginOverloadedException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * PreAuthenticationFilter 异步登录状态机（PENDING、WRITING、DONE）测试
+ *
+ * 容器由模拟的 AsyncContext 和可手动触发回调的输入流代替：测试直接调用读监听器和异步监听器，
+ * 模拟请求体读完、读失败、超时和连接断开的先后顺序；无论谁先到达，响应只能写一次，complete() 只能调用一次
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public class PreAuthenticationFilterAsyncTest {
+
+    private static final long RETRY_AFTER = 7L;
+
+    private static final String BODY = "{\"username\":\"alice\",\"password\":\"secret\"}";
+
+    private final Authentication authenticated =
+            new UsernamePasswordAuthenticationToken("alice", null, Collections.emptyList());
+
+    private AuthenticationManager authenticationManager;
+
+    private AuthenticationSuccessHandler successHandler;
+
+    private AuthenticationFailureHandler failureHandler;
+
+    private AsyncContext asyncContext;
+
+    private PreAuthenticationFilter filter;
+
+    private AsyncRequest request;
+
+    private MockHttpServletResponse response;
+
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() {
+        authenticationManager = mock(AuthenticationManager.class);
+        successHandler = mock(AuthenticationSuccessHandler.class);
+        failureHandler = mock(AuthenticationFailureHandler.class);
+        asyncContext = mock(AsyncContext.class);
+
+        filter = new PreAuthenticationFilter("/login", successHandler, failureHandler, new ObjectMapper());
+        filter.setAuthenticationManager(authenticationManager);
+        filter.setAsyncTimeout(5000L);
+        filter.setRetryAfterSeconds(RETRY_AFTER);
+
+        request = new AsyncRequest(asyncContext, BODY);
+        response = new MockHttpServletResponse();
+    }
+
+    @After
+    public void tearDown() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void successIsWrittenOnceAndLateTimeoutIsIgnored() throws Exception {
+        when(authenticationManager.authenticate(any(Authentication.class))).thenReturn(authenticated);
+        filter.setLoginExecutor(Runnable::run);
+        AsyncListener listener = start();
+
+        request.body.readAll();
+        listener.onTimeout(new AsyncEvent(asyncContext));
+
+        verify(successHandler).onAuthenticationSuccess(request, response, authenticated);
+        verify(failureHandler, never()).onAuthenticationFailure(any(), any(), any());
+        verify(asyncContext).complete();
+    }
+
+    @Test
+    public void wrongPasswordGoesToFailureHandler() throws Exception {
+        BadCredentialsException failure = new BadCredentialsException("密码错误");
+        when(authenticationManager.authenticate(any(Authentication.class))).thenThrow(failure);
+        filter.setLoginExecutor(Runnable::run);
+        start();
+
+        request.body.readAll();
+
+        verify(failureHandler).onAuthenticationFailure(request, response, failure);
+        verify(asyncContext).complete();
+    }
+
+    @Test
+    public void timeoutWhileQueuedSkipsAuthentication() throws Exception {
+        List<Runnable> queued = new ArrayList<>();
+        filter.setLoginExecutor(queued::add);
+        AsyncListener listener = start();
+
+        request.body.readAll();
+        listener.onTimeout(new AsyncEvent(asyncContext));
+        assertEquals(1, queued.size());
+        queued.get(0).run();
+
+        assertEquals(RETRY_AFTER, overloadFailure().getRetryAfterSeconds());
+        verify(authenticationManager, never()).authenticate(any(Authentication.class));
+        verify(successHandler, never()).onAuthenticationSuccess(any(), any(), any(Authentication.class));
+        verify(asyncContext).complete();
+    }
+
+    @Test
+    public void timeoutWaitsForExecutorThatOwnsResponse() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(authenticationManager.authenticate(any(Authentication.class))).thenReturn(authenticated);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return null;
+        }).when(successHandler).onAuthenticationSuccess(any(), any(), any(Authentication.class));
+        executorService = Executors.newSingleThreadExecutor();
+        filter.setLoginExecutor(executorService);
+        AsyncListener listener = start();
+
+        request.body.readAll();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        Thread timeout = new Thread(() -> {
+            try {
+                listener.onTimeout(new AsyncEvent(asyncContext));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        timeout.start();
+
+        // 容器线程在执行器调用 complete() 之前不能返回
+        timeout.join(200L);
+        assertTrue(timeout.isAlive());
+        verify(asyncContext, never()).complete();
+
+        release.countDown();
+        timeout.join(5000L);
+        assertFalse(timeout.isAlive());
+        verify(asyncContext).complete();
+        verify(failureHandler, never()).onAuthenticationFailure(any(), any(), any());
+    }
+
+    @Test
+    public void rejectedExecutionAnswersOverloaded() throws Exception {
+        filter.setLoginExecutor(command -> {
+            throw new RejectedExecutionException("full");
+        });
+        start();
+
+        request.body.readAll();
+
+        assertEquals(RETRY_AFTER, overloadFailure().getRetryAfterSeconds());
+        verify(authenticationManager, never()).authenticate(any(Authentication.class));
+        verify(asyncContext).complete();
+    }
+
+    @Test
+    public void readErrorAnswersFailure() throws Exception {
+        filter.setLoginExecutor(Runnable::run);
+        start();
+
+        request.body.listener.onError(new IOException("连接被重置"));
+
+        ArgumentCaptor<AuthenticationException> failure = ArgumentCaptor.forClass(AuthenticationException.class);
+        verify(failureHandler).onAuthenticationFailure(eq(request), eq(response), failure.capture());
+        assertTrue(failure.getValue() instanceof AuthenticationServiceException);
+        verify(authenticationManager, never()).authenticate(any(Authentication.class));
+        verify(asyncContext).complete();
+    }
+
+    @Test(expected = IOException.class)
+    public void oversizedBodyFailsRead() throws Exception {
+        filter.setMaxBodySize(16);
+        filter.setLoginExecutor(Runnable::run);
+        start();
+
+        // 容器随后以 onError 通知读监听器，见 readErrorAnswersFailure
+        request.body.listener.onDataAvailable();
+    }
+
+    @Test
+    public void unexpectedErrorAnswers500() throws Exception {
+        when(authenticationManager.authenticate(any(Authentication.class)))
+                .thenThrow(new IllegalStateException("数据库连接失败"));
+        filter.setLoginExecutor(Runnable::run);
+        start();
+
+        request.body.readAll();
+
+        assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, response.getStatus());
+        verify(failureHandler, never()).onAuthenticationFailure(any(), any(), any());
+        verify(asyncContext).complete();
+    }
+
+    @Test
+    public void connectionErrorCompletesWithoutWriting() throws Exception {
+        List<Runnable> queued = new ArrayList<>();
+        filter.setLoginExecutor(queued::add);
+        AsyncListener listener = start();
+
+        request.body.readAll();
+        listener.onError(new AsyncEvent(asyncContext, new IOException("连接已断开")));
+        queued.get(0).run();
+
+        verify(asyncContext).complete();
+        verify(authenticationManager, never()).authenticate(any(Authentication.class));
+        verify(successHandler, never()).onAuthenticationSuccess(any(), any(), any(Authentication.class));
+        verify(failureHandler, never()).onAuthenticationFailure(any(), any(), any());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    /**
+     * 以异步方式进入过滤器，返回过滤器注册的异步监听器
+     */
+    private AsyncListener start() throws Exception {
+        filter.doFilter(request, response, new MockFilterChain());
+        verify(asyncContext).setTimeout(5000L);
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(asyncContext).addListener(listener.capture());
+        return listener.getValue();
+    }
+
+    private LoginOverloadedException overloadFailure() throws Exception {
+        ArgumentCaptor<AuthenticationException> failure = ArgumentCaptor.forClass(AuthenticationException.class);
+        verify(failureHandler, times(1)).onAuthenticationFailure(eq(request), eq(response), failure.capture());
+        assertTrue(failure.getValue() instanceof LoginOverloadedException);
+        return (LoginOverloadedException) failure.getValue();
+    }
+
+    /**
+     * 支持异步的登录请求，startAsync 返回模拟的 AsyncContext
+     */
+    private static final class AsyncRequest extends MockHttpServletRequest {
+
+        private final AsyncContext asyncContext;
+
+        private final BodyStream body;
+
+        AsyncRequest(AsyncContext asyncContext, String body) {
+            super("POST", "/login");
+            this.asyncContext = asyncContext;
+            this.body = new BodyStream(body.getBytes(StandardCharsets.UTF_8));
+            setServletPath("/login");
+            setAsyncSupported(true);
+            setRemoteAddr("10.0.0.1");
+        }
+
+        @Override
+        public AsyncContext startAsync(ServletRequest request, ServletResponse response) {
+            return asyncContext;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return body;
+        }
+    }
+
+    /**
+     * 请求体输入流，由测试代替容器调用读监听器
+     */
+    private static final class BodyStream extends ServletInputStream {
+
+        private final byte[] content;
+
+        private int position;
+
+        private ReadListener listener;
+
+        BodyStream(byte[] content) {
+            this.content = content;
+        }
+
+        void readAll() throws IOException {
+            listener.onDataAvailable();
+            listener.onAllDataRead();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return position == content.length;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            this.listener = readListener;
+        }
+
+        @Override
+        public int read() {
+            return position < content.length ? content[position++] & 0xFF : -1;
+        }
+    }
+}
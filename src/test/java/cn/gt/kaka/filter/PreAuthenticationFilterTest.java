@@ -0,0 +1,134 @@
+package cn.gt.kaka.filter;
+
+import cn.gt.kaka.exception.LoginOverloadedException;
+import cn.gt.kaka.security.throttle.LoginThrottle;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * PreAuthenticationFilter 登录结果与登录失败限流的对应关系测试
+ *
+ * 只有密码错误和用户不存在计入失败次数；过载和数据库错误原样抛出，不计数，也不清除计数
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public class PreAuthenticationFilterTest {
+
+    private static final String CLIENT_IP = "10.0.0.1";
+
+    private AuthenticationManager authenticationManager;
+
+    private LoginThrottle loginThrottle;
+
+    private PreAuthenticationFilter filter;
+
+    @Before
+    public void setUp() {
+        authenticationManager = mock(AuthenticationManager.class);
+        loginThrottle = mock(LoginThrottle.class);
+
+        filter = new PreAuthenticationFilter("/login", mock(AuthenticationSuccessHandler.class),
+                mock(AuthenticationFailureHandler.class), new ObjectMapper());
+        filter.setAuthenticationManager(authenticationManager);
+        filter.setLoginThrottle(loginThrottle);
+    }
+
+    @Test
+    public void successResetsUsername() throws Exception {
+        Authentication authenticated = new UsernamePasswordAuthenticationToken("alice", null, Collections.emptyList());
+        when(authenticationManager.authenticate(any(Authentication.class))).thenReturn(authenticated);
+
+        assertSame(authenticated, filter.attemptAuthentication(loginRequest(), new MockHttpServletResponse()));
+
+        verify(loginThrottle).recordSuccess("alice");
+        verify(loginThrottle, never()).recordFailure(anyString(), anyString());
+    }
+
+    @Test
+    public void wrongPasswordCountsAsFailure() throws Exception {
+        assertFailureRecorded(new BadCredentialsException("密码错误"));
+    }
+
+    @Test
+    public void unknownUserCountsAsFailure() throws Exception {
+        assertFailureRecorded(new UsernameNotFoundException("用户不存在"));
+    }
+
+    @Test
+    public void overloadIsNotCounted() throws Exception {
+        assertNothingRecorded(new LoginOverloadedException("登录请求过多，请稍后重试", 2L));
+    }
+
+    @Test
+    public void databaseErrorIsNotCounted() throws Exception {
+        assertNothingRecorded(new IllegalStateException("数据库连接失败"));
+    }
+
+    @Test
+    public void throttledUsernameSkipsAuthentication() throws Exception {
+        when(loginThrottle.isThrottled("alice", CLIENT_IP)).thenReturn(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertNull(filter.attemptAuthentication(loginRequest(), response));
+
+        verify(loginThrottle).writeRejection(response);
+        verify(authenticationManager, never()).authenticate(any(Authentication.class));
+    }
+
+    private void assertFailureRecorded(RuntimeException failure) throws Exception {
+        attemptFailingWith(failure);
+
+        verify(loginThrottle).recordFailure("alice", CLIENT_IP);
+        verify(loginThrottle, never()).recordSuccess(anyString());
+    }
+
+    private void assertNothingRecorded(RuntimeException failure) throws Exception {
+        attemptFailingWith(failure);
+
+        verify(loginThrottle, never()).recordFailure(anyString(), anyString());
+        verify(loginThrottle, never()).recordSuccess(anyString());
+    }
+
+    private void attemptFailingWith(RuntimeException failure) throws Exception {
+        when(authenticationManager.authenticate(any(Authentication.class))).thenThrow(failure);
+        try {
+            filter.attemptAuthentication(loginRequest(), new MockHttpServletResponse());
+            fail("认证失败应原样抛出");
+        } catch (RuntimeException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    private static MockHttpServletRequest loginRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+        request.setRemoteAddr(CLIENT_IP);
+        request.setContentType("application/json");
+        request.setContent("{\"username\":\"alice\",\"password\":\"secret\"}".getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
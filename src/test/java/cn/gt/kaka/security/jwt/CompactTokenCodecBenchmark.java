@@ -0,0 +1,102 @@
+package cn.gt.kaka.security.jwt;
+
+import cn.gt.kaka.dto.TokenType;
+import cn.gt.kaka.util.MicroBenchmark;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 紧凑令牌与JWT令牌的长度和校验开销对比
+ *
+ * 两种格式使用相同的用户ID、代数、权限位图和过期时间，JWT由 TokenMinter 签发并由 LeanJwsVerifier 校验，
+ * 即当前请求路径上的实现；校验后读取用户ID、令牌类型和权限，使两边都完成完整的解析
+ *
+ * 不在默认构建中执行，运行方式：mvn test -Dtest=CompactTokenCodecBenchmark
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+public class CompactTokenCodecBenchmark {
+
+    private static final byte[] SECRET = "9IfbI0oNMQbzATjWeNFBN89kzo7XMCEg".getBytes(StandardCharsets.UTF_8);
+
+    private static final long EXPIRES_AT = 4_100_000_000_123L;
+
+    private static final int WARMUP = 20_000;
+
+    private static final int ITERATIONS = 200_000;
+
+    private final HmacSha256 hmacSha256 = new HmacSha256(SECRET);
+
+    private final CompactTokenCodec codec = new CompactTokenCodec(hmacSha256);
+
+    private final TokenMinter minter = new TokenMinter(hmacSha256);
+
+    private final LeanJwsVerifier verifier = new LeanJwsVerifier(hmacSha256, new JwtKeyring(),
+            JwsAlgorithm.HS256.acceptedWhenSigningWith());
+
+    @Test
+    public void tokenLength() {
+        for (int permissionBits : new int[]{0, 16, 64, 256}) {
+            PermissionSet permissions = permissionBits == 0 ? null : permissions(permissionBits);
+            String compact = codec.mint("1234567890", 3, permissions, TokenType.Access, EXPIRES_AT);
+            String jwt = minter.mint("1234567890", 3, permissions, TokenType.Access, EXPIRES_AT);
+
+            assertTrue(compact.length() < jwt.length());
+            log.info("令牌长度（权限位数 {}）: 紧凑格式 {} 字符, JWT {} 字符", permissionBits, compact.length(),
+                    jwt.length());
+        }
+    }
+
+    @Test
+    public void verifyCost() {
+        PermissionSet permissions = permissions(64);
+        String compact = codec.mint("1234567890", 3, permissions, TokenType.Access, EXPIRES_AT);
+        String jwt = minter.mint("1234567890", 3, permissions, TokenType.Access, EXPIRES_AT);
+        assertEquals(codec.verify(compact).getUserId(), verifier.verify(jwt).getUserId());
+
+        MicroBenchmark.Result compactResult = MicroBenchmark.run("紧凑格式校验", WARMUP, ITERATIONS,
+                () -> readAll(codec.verify(compact)));
+        MicroBenchmark.Result jwtResult = MicroBenchmark.run("JWT校验（LeanJwsVerifier）", WARMUP, ITERATIONS,
+                () -> readAll(verifier.verify(jwt)));
+
+        log.info("{}", compactResult);
+        log.info("{}", jwtResult);
+    }
+
+    @Test
+    public void mintCost() {
+        PermissionSet permissions = permissions(64);
+
+        MicroBenchmark.Result compactResult = MicroBenchmark.run("紧凑格式签发", WARMUP, ITERATIONS,
+                () -> codec.mint("1234567890", 3, permissions, TokenType.Access, EXPIRES_AT));
+        MicroBenchmark.Result jwtResult = MicroBenchmark.run("JWT签发（TokenMinter）", WARMUP, ITERATIONS,
+                () -> minter.mint("1234567890", 3, permissions, TokenType.Access, EXPIRES_AT));
+
+        log.info("{}", compactResult);
+        log.info("{}", jwtResult);
+    }
+
+    private static Object readAll(ParsedToken parsed) {
+        PermissionSet permissions = parsed.getPermissions();
+        return parsed.getUserId().length() + parsed.getTokenType().ordinal() + parsed.getGeneration()
+                + (permissions == null ? 0 : permissions.length());
+    }
+
+    private static PermissionSet permissions(int bits) {
+        byte[] bitmap = new byte[bits / 8];
+        for (int i = 0; i < bitmap.length; i++) {
+            bitmap[i] = (byte) (0x55 ^ i);
+        }
+        // 最后一个字节非零，避免位图被截断后两种格式携带的位数不同
+        bitmap[bitmap.length - 1] = (byte) 0x81;
+        return new PermissionSet(7L, bitmap);
+    }
+}
@@ -0,0 +1,225 @@
+package cn.gt.kaka.security.jwt;
+
+import cn.gt.kaka.dto.TokenType;
+import cn.gt.kaka.exception.JwtExpiredTokenException;
+import org.junit.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * CompactTokenCodec 往返与篡改测试
+ *
+ * 格式错误的载荷用与编解码器相同的方式派生标签密钥并签名，保证被拒绝的原因是载荷本身而不是标签
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public class CompactTokenCodecTest {
+
+    private static final byte[] SECRET = "9IfbI0oNMQbzATjWeNFBN89kzo7XMCEg".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] OTHER_SECRET = "another-secret-another-secret-00".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] KEY_CONTEXT = "kaka-compact-token-v1".getBytes(StandardCharsets.US_ASCII);
+
+    private static final long EXPIRES_AT = 4_100_000_000_123L;
+
+    private final HmacSha256 hmacSha256 = new HmacSha256(SECRET);
+
+    private final CompactTokenCodec codec = new CompactTokenCodec(hmacSha256);
+
+    @Test
+    public void roundTripWithoutPermissions() {
+        ParsedToken parsed = codec.verify(codec.mint("user-1", 3, TokenType.Refresh, EXPIRES_AT));
+
+        assertEquals("user-1", parsed.getUserId());
+        assertEquals(TokenType.Refresh, parsed.getTokenType());
+        assertEquals(3, parsed.getGeneration());
+        assertEquals(EXPIRES_AT / 1000L * 1000L, parsed.getExpiresAt());
+        assertNotNull(parsed.getTokenId());
+        assertNull(parsed.getPermissions());
+    }
+
+    @Test
+    public void roundTripWithPermissions() {
+        PermissionSet permissions = new PermissionSet(42L, new byte[]{0b101, 0, (byte) 0x80});
+
+        ParsedToken parsed = codec.verify(codec.mint("用户-2", 0, permissions, TokenType.Access, EXPIRES_AT));
+
+        assertEquals("用户-2", parsed.getUserId());
+        assertEquals(TokenType.Access, parsed.getTokenType());
+        PermissionSet decoded = parsed.getPermissions();
+        assertEquals(42L, decoded.getCatalogVersion());
+        assertEquals(24, decoded.length());
+        assertTrue(decoded.get(0));
+        assertFalse(decoded.get(1));
+        assertTrue(decoded.get(2));
+        assertTrue(decoded.get(23));
+    }
+
+    @Test
+    public void roundTripGenerationBounds() {
+        for (int generation : new int[]{0, 127, 128, Integer.MAX_VALUE, -1}) {
+            assertEquals(generation,
+                    codec.verify(codec.mint("u", generation, TokenType.Access, EXPIRES_AT)).getGeneration());
+        }
+    }
+
+    @Test
+    public void tokenIdsAreDistinct() {
+        String first = codec.verify(codec.mint("u", 0, TokenType.Access, EXPIRES_AT)).getTokenId();
+        String second = codec.verify(codec.mint("u", 0, TokenType.Access, EXPIRES_AT)).getTokenId();
+        assertFalse(first.equals(second));
+    }
+
+    @Test
+    public void rejectsEveryTamperedByte() {
+        PermissionSet permissions = new PermissionSet(7L, new byte[]{1, 2});
+        byte[] bytes = decode(codec.mint("user-1", 5, permissions, TokenType.Access, EXPIRES_AT));
+        // 逐字节翻转载荷和标签，任何一处改动都必须被拒绝
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] tampered = bytes.clone();
+            tampered[i] ^= 0x01;
+            assertRejects(encode(tampered));
+        }
+    }
+
+    @Test
+    public void rejectsTokenFromOtherSecret() {
+        CompactTokenCodec other = new CompactTokenCodec(new HmacSha256(OTHER_SECRET));
+        assertRejects(other.mint("user-1", 0, TokenType.Access, EXPIRES_AT));
+    }
+
+    @Test
+    public void rejectsTruncatedTag() {
+        byte[] bytes = decode(codec.mint("user-1", 0, TokenType.Access, EXPIRES_AT));
+
+        assertRejects(encode(Arrays.copyOf(bytes, bytes.length - 1)));
+        // 只剩标签长度或更短时没有载荷
+        assertRejects(encode(Arrays.copyOf(bytes, 16)));
+        assertRejects(encode(Arrays.copyOf(bytes, 15)));
+        assertRejects(encode(new byte[0]));
+    }
+
+    @Test
+    public void rejectsMalformedEncoding() {
+        String token = codec.mint("user-1", 0, TokenType.Access, EXPIRES_AT);
+
+        assertRejects(null);
+        assertRejects(token.substring(CompactTokenCodec.PREFIX.length()));
+        assertRejects(CompactTokenCodec.PREFIX + "!!!!");
+        assertRejects(token + "*");
+        // 标准Base64字母表的字符不属于Base64URL
+        assertRejects(token + "+");
+    }
+
+    @Test
+    public void rejectsWrongVersion() {
+        assertRejects(signed(2, 2, 1));
+    }
+
+    @Test
+    public void rejectsTruncatedVarint() {
+        // 代数字段的变长整数最后一个字节仍带续位
+        assertRejects(signed(1, 4, 0x80));
+        assertRejects(signed(1, 5, 0xFF, 0xFF));
+        // 字段编号后没有值
+        assertRejects(signed(1, 2));
+    }
+
+    @Test
+    public void rejectsOverlongVarint() {
+        // 11个字节的变长整数超过64位
+        assertRejects(signed(1, 4, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x01));
+    }
+
+    @Test
+    public void rejectsFieldLengthBeyondBody() {
+        // 用户ID声明5字节但只有1字节
+        assertRejects(signed(1, 1, 5, 'a'));
+        // 权限位图长度为 2^63-1
+        assertRejects(signed(1, 7, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x7F));
+        // 10字节变长整数解码为负数，不能使游标回退
+        assertRejects(signed(1, 1, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01));
+        // 令牌ID和权限目录版本是定长字段
+        assertRejects(signed(1, 3, 1, 2, 3));
+        assertRejects(signed(1, 6, 1, 2, 3));
+    }
+
+    @Test
+    public void rejectsUnknownFieldAndTokenType() {
+        assertRejects(signed(1, 9, 0));
+        assertRejects(signed(1, 2, 3));
+    }
+
+    @Test
+    public void roundTripAuthTime() {
+        long authTime = EXPIRES_AT - 7_200_000L;
+
+        ParsedToken parsed = codec.verify(codec.mint("user-1", 0, null, TokenType.Access, authTime, EXPIRES_AT));
+
+        assertEquals(authTime / 1000L * 1000L, parsed.getAuthTime());
+        assertEquals((int) (authTime / 1000L), parsed.getClaim("auth_time"));
+        assertEquals(0L, codec.verify(codec.mint("user-1", 0, TokenType.Access, EXPIRES_AT)).getAuthTime());
+    }
+
+    /**
+     * 代数、认证时间和过期时间都取最长的变长整数编码，签发缓冲区仍然足够
+     */
+    @Test(expected = JwtExpiredTokenException.class)
+    public void mintsLongestVarints() {
+        PermissionSet permissions = new PermissionSet(Long.MIN_VALUE, new byte[]{(byte) 0xFF});
+        String token = codec.mint("user-1", -1, permissions, TokenType.Refresh, Long.MAX_VALUE, Long.MIN_VALUE);
+
+        // 负的过期时间按已过期处理
+        codec.verify(token);
+    }
+
+    @Test(expected = JwtExpiredTokenException.class)
+    public void rejectsExpiredToken() {
+        codec.verify(codec.mint("user-1", 0, TokenType.Access, System.currentTimeMillis() - 2000L));
+    }
+
+    /**
+     * 构造载荷为给定字节、标签正确的令牌
+     */
+    private String signed(int... body) {
+        byte[] bytes = new byte[body.length];
+        for (int i = 0; i < body.length; i++) {
+            bytes[i] = (byte) body[i];
+        }
+        HmacSha256 tagKey = new HmacSha256(hmacSha256.sign(KEY_CONTEXT, 0, KEY_CONTEXT.length));
+        byte[] tag = tagKey.sign(bytes, 0, bytes.length);
+        byte[] token = Arrays.copyOf(bytes, bytes.length + 16);
+        System.arraycopy(tag, 0, token, bytes.length, 16);
+        return encode(token);
+    }
+
+    private void assertRejects(String token) {
+        try {
+            codec.verify(token);
+            fail("令牌应被拒绝: " + token);
+        } catch (BadCredentialsException expected) {
+            // 所有格式错误都以同一种异常拒绝，不向客户端暴露原因
+        }
+    }
+
+    private static byte[] decode(String token) {
+        return Base64.getUrlDecoder().decode(token.substring(CompactTokenCodec.PREFIX.length()));
+    }
+
+    private static String encode(byte[] bytes) {
+        return CompactTokenCodec.PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,91 @@
+package cn.gt.kaka.security.jwt;
+
+import cn.gt.kaka.dto.TokenType;
+import cn.gt.kaka.util.Constants;
+import cn.gt.kaka.util.MicroBenchmark;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * HS256签发和校验的每令牌耗时与分配量对比
+ *
+ * 原实现每签发或解析一个令牌都执行 secret.getBytes，由jjwt按字节数组新建密钥和Mac；
+ * 对比对象为缓存密钥和线程缓存Mac的 HmacSha256 构建器/解析器，以及当前请求路径上的 TokenMinter 和 LeanJwsVerifier
+ * 三种方式签发的声明相同（sub、user_id、token_type、exp）
+ *
+ * 不在默认构建中执行，运行方式：mvn test -Dtest=HmacSha256Benchmark
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+@Slf4j
+public class HmacSha256Benchmark {
+
+    private static final String SECRET = "9IfbI0oNMQbzATjWeNFBN89kzo7XMCEg";
+
+    private static final long EXPIRES_AT = 4_100_000_000_000L;
+
+    private static final int WARMUP = 20_000;
+
+    private static final int ITERATIONS = 200_000;
+
+    private final HmacSha256 hmacSha256 = new HmacSha256(SECRET.getBytes(StandardCharsets.UTF_8));
+
+    private final TokenMinter minter = new TokenMinter(hmacSha256);
+
+    private final LeanJwsVerifier verifier = new LeanJwsVerifier(hmacSha256, new JwtKeyring(),
+            JwsAlgorithm.HS256.acceptedWhenSigningWith());
+
+    @Test
+    public void signCost() {
+        MicroBenchmark.Result original = MicroBenchmark.run("签发：secret.getBytes + jjwt", WARMUP, ITERATIONS,
+                () -> claims(Jwts.builder())
+                        .signWith(SignatureAlgorithm.HS256, SECRET.getBytes(StandardCharsets.UTF_8))
+                        .compact());
+        MicroBenchmark.Result cachedMac = MicroBenchmark.run("签发：缓存Mac + jjwt", WARMUP, ITERATIONS,
+                () -> claims(hmacSha256.newBuilder()).compact());
+        MicroBenchmark.Result template = MicroBenchmark.run("签发：TokenMinter", WARMUP, ITERATIONS,
+                () -> minter.mint("1234567890", 0, TokenType.Access, EXPIRES_AT));
+
+        log.info("{}", original);
+        log.info("{}", cachedMac);
+        log.info("{}", template);
+    }
+
+    @Test
+    public void verifyCost() {
+        String token = claims(hmacSha256.newBuilder()).compact();
+        assertEquals("1234567890", verifier.verify(token).getUserId());
+
+        MicroBenchmark.Result original = MicroBenchmark.run("校验：secret.getBytes + jjwt", WARMUP, ITERATIONS,
+                () -> Jwts.parser()
+                        .setSigningKey(SECRET.getBytes(StandardCharsets.UTF_8))
+                        .parseClaimsJws(token)
+                        .getBody());
+        MicroBenchmark.Result cachedMac = MicroBenchmark.run("校验：缓存Mac + jjwt", WARMUP, ITERATIONS,
+                () -> hmacSha256.newParser().parseClaimsJws(token).getBody());
+        MicroBenchmark.Result lean = MicroBenchmark.run("校验：LeanJwsVerifier", WARMUP, ITERATIONS,
+                () -> verifier.verify(token).getUserId());
+
+        log.info("{}", original);
+        log.info("{}", cachedMac);
+        log.info("{}", lean);
+    }
+
+    private static JwtBuilder claims(JwtBuilder builder) {
+        Claims claims = Jwts.claims().setSubject("1234567890");
+        claims.put(Constants.USER_ID, "1234567890");
+        claims.put(Constants.TOKEN_TYPE, TokenType.Access.name());
+        return builder.setClaims(claims).setExpiration(new Date(EXPIRES_AT));
+    }
+}
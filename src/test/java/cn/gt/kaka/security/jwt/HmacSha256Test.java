@@ -0,0 +1,137 @@
+package cn.gt.kaka.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * HmacSha256 与 jjwt 的等价性测试
+ *
+ * 线程缓存的Mac在多次调用和多线程下必须与每次新建Mac的jjwt签名结果逐字节一致
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public class HmacSha256Test {
+
+    private static final byte[] SECRET = "9IfbI0oNMQbzATjWeNFBN89kzo7XMCEg".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] OTHER_SECRET = "another-secret-another-secret-00".getBytes(StandardCharsets.UTF_8);
+
+    private final HmacSha256 hmacSha256 = new HmacSha256(SECRET);
+
+    @Test
+    public void builderProducesSameTokenAsJjwt() {
+        for (int i = 0; i < 100; i++) {
+            String expected = claims(Jwts.builder(), i).signWith(SignatureAlgorithm.HS256, SECRET).compact();
+            String actual = claims(hmacSha256.newBuilder(), i).compact();
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void parserAcceptsJjwtSignedToken() {
+        String token = claims(Jwts.builder(), 7).signWith(SignatureAlgorithm.HS256, SECRET).compact();
+
+        Claims claims = hmacSha256.newParser().parseClaimsJws(token).getBody();
+
+        assertEquals(Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody(), claims);
+    }
+
+    @Test
+    public void parserRejectsTokenSignedWithOtherKey() {
+        String token = claims(Jwts.builder(), 7).signWith(SignatureAlgorithm.HS256, OTHER_SECRET).compact();
+
+        try {
+            hmacSha256.newParser().parseClaimsJws(token);
+            fail("其他密钥签名的令牌应被拒绝");
+        } catch (SignatureException expected) {
+            // 与jjwt默认校验器抛出相同的异常
+        }
+    }
+
+    @Test
+    public void reusedMacMatchesFreshMac() throws Exception {
+        byte[] data = "header.payload-with-some-length".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < 1000; i++) {
+            int offset = i % 7;
+            int length = data.length - offset - i % 5;
+            byte[] signature = hmacSha256.sign(data, offset, length);
+            assertArrayEquals(freshMac(SECRET, data, offset, length), signature);
+            assertTrue(hmacSha256.verify(data, offset, length, signature));
+        }
+    }
+
+    @Test
+    public void verifyRejectsAlteredSignature() throws Exception {
+        byte[] data = "header.payload".getBytes(StandardCharsets.US_ASCII);
+        byte[] signature = hmacSha256.sign(data, 0, data.length);
+        signature[31] ^= 1;
+
+        assertFalse(hmacSha256.verify(data, 0, data.length, signature));
+        assertFalse(hmacSha256.verify(data, 0, data.length, freshMac(OTHER_SECRET, data, 0, data.length)));
+        assertFalse(hmacSha256.verify(data, 0, data.length, new byte[0]));
+    }
+
+    @Test
+    public void concurrentSigningMatchesJjwt() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    for (int i = 0; i < 500; i++) {
+                        int seed = thread * 1000 + i;
+                        String expected = claims(Jwts.builder(), seed)
+                                .signWith(SignatureAlgorithm.HS256, SECRET).compact();
+                        assertEquals(expected, claims(hmacSha256.newBuilder(), seed).compact());
+                        hmacSha256.newParser().parseClaimsJws(expected);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static JwtBuilder claims(JwtBuilder builder, int seed) {
+        return builder.setSubject("user-" + seed)
+                .claim("type", seed % 2 == 0 ? "Access" : "Refresh")
+                .setIssuedAt(new Date(1_700_000_000_000L + seed * 1000L))
+                .setExpiration(new Date(4_100_000_000_000L + seed * 1000L));
+    }
+
+    private static byte[] freshMac(byte[] secret, byte[] data, int offset, int length) throws Exception {
+        Mac mac = Mac.getInstance(HmacSha256.JCA_NAME);
+        mac.init(new SecretKeySpec(secret, HmacSha256.JCA_NAME));
+        mac.update(data, offset, length);
+        return mac.doFinal();
+    }
+}
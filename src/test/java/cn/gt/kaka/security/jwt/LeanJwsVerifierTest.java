@@ -0,0 +1,367 @@
+package cn.gt.kaka.security.jwt;
+
+import cn.gt.kaka.dto.TokenType;
+import cn.gt.kaka.exception.JwtExpiredTokenException;
+import cn.gt.kaka.util.Constants;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.PrematureJwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * LeanJwsVerifier 与 jjwt 的兼容性测试
+ *
+ * 令牌由jjwt签发，同一个令牌分别交给jjwt解析器和精简校验器，两者必须同时接受或同时拒绝，
+ * 接受时读取到的声明一致
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public class LeanJwsVerifierTest {
+
+    private static final byte[] SECRET = "9IfbI0oNMQbzATjWeNFBN89kzo7XMCEg".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] OTHER_SECRET = "another-secret-another-secret-00".getBytes(StandardCharsets.UTF_8);
+
+    private static final String RSA_KID = "rsa-1";
+
+    private static final String EC_KID = "ec-1";
+
+    private static KeyPair rsaKeys;
+
+    private static KeyPair ecKeys;
+
+    private static JwtKeyring keyring;
+
+    private static LeanJwsVerifier verifier;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+        rsa.initialize(2048);
+        rsaKeys = rsa.generateKeyPair();
+        KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+        ec.initialize(new ECGenParameterSpec("secp256r1"));
+        ecKeys = ec.generateKeyPair();
+
+        keyring = new JwtKeyring();
+        keyring.addKey(RSA_KID, rsaKeys.getPublic());
+        keyring.addKey(EC_KID, ecKeys.getPublic());
+        verifier = new LeanJwsVerifier(new HmacSha256(SECRET), keyring, JwsAlgorithm.HS256.acceptedWhenSigningWith());
+    }
+
+    @Test
+    public void acceptsHs256TokenWithSameClaimsAsJjwt() {
+        String token = claims(60_000L).signWith(SignatureAlgorithm.HS256, SECRET).compact();
+
+        assertSameClaims(jjwt(token, SECRET), verifier.verify(token));
+    }
+
+    @Test
+    public void acceptsHs256TokenWithNonStandardHeader() {
+        String token = claims(60_000L).setHeaderParam("typ", "JWT")
+                .signWith(SignatureAlgorithm.HS256, SECRET).compact();
+
+        assertSameClaims(jjwt(token, SECRET), verifier.verify(token));
+    }
+
+    @Test
+    public void acceptsRs256TokenByKid() {
+        String token = claims(60_000L).setHeaderParam("kid", RSA_KID)
+                .signWith(SignatureAlgorithm.RS256, rsaKeys.getPrivate()).compact();
+
+        assertSameClaims(jjwt(token, rsaKeys.getPublic()), verifier.verify(token));
+    }
+
+    @Test
+    public void acceptsEs256TokenByKid() {
+        String token = claims(60_000L).setHeaderParam("kid", EC_KID)
+                .signWith(SignatureAlgorithm.ES256, ecKeys.getPrivate()).compact();
+
+        assertSameClaims(jjwt(token, ecKeys.getPublic()), verifier.verify(token));
+    }
+
+    @Test
+    public void acceptsTokenWithoutOptionalClaims() {
+        String token = Jwts.builder().setSubject("u1").signWith(SignatureAlgorithm.HS256, SECRET).compact();
+
+        ParsedToken parsed = verifier.verify(token);
+        jjwt(token, SECRET);
+        assertNull(parsed.getUserId());
+        assertNull(parsed.getTokenType());
+        assertEquals(0, parsed.getGeneration());
+        assertEquals(Long.MAX_VALUE, parsed.getExpiresAt());
+    }
+
+    @Test
+    public void rejectsExpiredTokenLikeJjwt() {
+        String token = claims(-60_000L).signWith(SignatureAlgorithm.HS256, SECRET).compact();
+
+        assertJjwtRejects(token, SECRET, ExpiredJwtException.class);
+        assertLeanRejects(token, JwtExpiredTokenException.class);
+    }
+
+    @Test
+    public void rejectsTokenNotYetValidLikeJjwt() {
+        String token = claims(120_000L).setNotBefore(new Date(System.currentTimeMillis() + 60_000L))
+                .signWith(SignatureAlgorithm.HS256, SECRET).compact();
+
+        assertJjwtRejects(token, SECRET, PrematureJwtException.class);
+        assertLeanRejects(token, BadCredentialsException.class);
+    }
+
+    @Test
+    public void acceptsTokenWhoseNotBeforeHasPassed() {
+        String token = claims(60_000L).setNotBefore(new Date(System.currentTimeMillis() - 60_000L))
+                .signWith(SignatureAlgorithm.HS256, SECRET).compact();
+
+        assertSameClaims(jjwt(token, SECRET), verifier.verify(token));
+    }
+
+    @Test
+    public void rejectsTamperedSignatureLikeJjwt() {
+        String token = claims(60_000L).signWith(SignatureAlgorithm.HS256, SECRET).compact();
+        int signatureStart = token.lastIndexOf('.') + 1;
+        // 改动签名中间的字符，末尾字符的低位不参与解码
+        String tampered = replaceAt(token, signatureStart + 5);
+
+        assertJjwtRejects(tampered, SECRET, SignatureException.class);
+        assertLeanRejects(tampered, BadCredentialsException.class);
+    }
+
+    @Test
+    public void rejectsTamperedPayloadLikeJjwt() {
+        String token = claims(60_000L).signWith(SignatureAlgorithm.HS256, SECRET).compact();
+        String[] parts = token.split("\\.");
+        String forged = Jwts.builder().claim(Constants.USER_ID, "admin")
+                .signWith(SignatureAlgorithm.HS256, OTHER_SECRET).compact().split("\\.")[1];
+        String tampered = parts[0] + "." + forged + "." + parts[2];
+
+        assertJjwtRejects(tampered, SECRET, SignatureException.class);
+        assertLeanRejects(tampered, BadCredentialsException.class);
+    }
+
+    @Test
+    public void rejectsTamperedRs256SignatureLikeJjwt() {
+        String token = claims(60_000L).setHeaderParam("kid", RSA_KID)
+                .signWith(SignatureAlgorithm.RS256, rsaKeys.getPrivate()).compact();
+        String tampered = replaceAt(token, token.lastIndexOf('.') + 10);
+
+        assertJjwtRejects(tampered, rsaKeys.getPublic(), SignatureException.class);
+        assertLeanRejects(tampered, BadCredentialsException.class);
+    }
+
+    @Test
+    public void rejectsTokenSignedWithWrongSecretLikeJjwt() {
+        String token = claims(60_000L).signWith(SignatureAlgorithm.HS256, OTHER_SECRET).compact();
+
+        assertJjwtRejects(token, SECRET, SignatureException.class);
+        assertLeanRejects(token, BadCredentialsException.class);
+    }
+
+    @Test
+    public void rejectsTokenSignedWithWrongPrivateKeyLikeJjwt() throws Exception {
+        KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+        rsa.initialize(2048);
+        String token = claims(60_000L).setHeaderParam("kid", RSA_KID)
+                .signWith(SignatureAlgorithm.RS256, rsa.generateKeyPair().getPrivate()).compact();
+
+        assertJjwtRejects(token, rsaKeys.getPublic(), SignatureException.class);
+        assertLeanRejects(token, BadCredentialsException.class);
+    }
+
+    @Test
+    public void rejectsAlgorithmThatDoesNotMatchKid() {
+        // ES256签名却声明RSA公钥的kid
+        String token = claims(60_000L).setHeaderParam("kid", RSA_KID)
+                .signWith(SignatureAlgorithm.ES256, ecKeys.getPrivate()).compact();
+
+        assertJjwtRejects(token, rsaKeys.getPublic(), RuntimeException.class);
+        assertLeanRejects(token, BadCredentialsException.class);
+    }
+
+    @Test
+    public void rejectsUnknownKid() {
+        String token = claims(60_000L).setHeaderParam("kid", "missing")
+                .signWith(SignatureAlgorithm.RS256, rsaKeys.getPrivate()).compact();
+
+        assertLeanRejects(token, BadCredentialsException.class);
+    }
+
+    @Test
+    public void rejectsAsymmetricTokenWithoutKid() {
+        String token = claims(60_000L).signWith(SignatureAlgorithm.RS256, rsaKeys.getPrivate()).compact();
+
+        assertLeanRejects(token, BadCredentialsException.class);
+    }
+
+    @Test
+    public void rejectsHs256WhenSigningAsymmetrically() {
+        LeanJwsVerifier asymmetric = new LeanJwsVerifier(null, keyring, JwsAlgorithm.RS256.acceptedWhenSigningWith());
+        String hs256 = claims(60_000L).signWith(SignatureAlgorithm.HS256, SECRET).compact();
+        String hs256WithKid = claims(60_000L).setHeaderParam("kid", RSA_KID)
+                .signWith(SignatureAlgorithm.HS256, SECRET).compact();
+        String rs256 = claims(60_000L).setHeaderParam("kid", RSA_KID)
+                .signWith(SignatureAlgorithm.RS256, rsaKeys.getPrivate()).compact();
+
+        assertRejects(asymmetric, hs256, BadCredentialsException.class);
+        assertRejects(asymmetric, hs256WithKid, BadCredentialsException.class);
+        assertEquals("u1", asymmetric.verify(rs256).getUserId());
+    }
+
+    @Test
+    public void rejectsUnsignedTokenLikeJjwt() {
+        String token = claims(60_000L).compact();
+
+        assertJjwtRejects(token, SECRET, RuntimeException.class);
+        assertLeanRejects(token, BadCredentialsException.class);
+    }
+
+    @Test
+    public void rejectsNoneAlgorithmWithForgedSignature() {
+        String token = claims(60_000L).signWith(SignatureAlgorithm.HS256, SECRET).compact();
+        String none = base64Url("{\"alg\":\"none\"}") + token.substring(token.indexOf('.'));
+
+        assertJjwtRejects(none, SECRET, RuntimeException.class);
+        assertLeanRejects(none, BadCredentialsException.class);
+    }
+
+    @Test
+    public void rejectsMalformedSegmentsLikeJjwt() {
+        String token = claims(60_000L).signWith(SignatureAlgorithm.HS256, SECRET).compact();
+        String[] parts = token.split("\\.");
+        String[] malformed = {
+                "",
+                "abc",
+                parts[0] + "." + parts[1],
+                parts[0] + "." + parts[1] + ".",
+                "." + parts[1] + "." + parts[2],
+                parts[0] + ".." + parts[2],
+                token + ".extra",
+                parts[0] + "." + parts[1] + "." + parts[2] + "." + parts[2],
+        };
+
+        for (String candidate : malformed) {
+            assertJjwtRejects(candidate, SECRET, RuntimeException.class);
+            assertLeanRejects(candidate, BadCredentialsException.class);
+        }
+    }
+
+    @Test
+    public void rejectsNonJsonSegmentsLikeJjwt() {
+        String token = claims(60_000L).signWith(SignatureAlgorithm.HS256, SECRET).compact();
+        String[] parts = token.split("\\.");
+        String notJsonHeader = base64Url("not json") + "." + parts[1] + "." + parts[2];
+
+        assertJjwtRejects(notJsonHeader, SECRET, RuntimeException.class);
+        assertLeanRejects(notJsonHeader, BadCredentialsException.class);
+    }
+
+    @Test
+    public void rejectsBadBase64LikeJjwt() {
+        String token = claims(60_000L).signWith(SignatureAlgorithm.HS256, SECRET).compact();
+        String[] parts = token.split("\\.");
+        String[] malformed = {
+                parts[0] + "." + parts[1] + "." + parts[2].substring(0, 10) + "*" + parts[2].substring(11),
+                parts[0] + "." + parts[1] + "." + parts[2].substring(1),
+                "!!!!" + parts[0].substring(4) + "." + parts[1] + "." + parts[2],
+                parts[0] + ".%%%%" + parts[1].substring(4) + "." + parts[2],
+        };
+
+        for (String candidate : malformed) {
+            assertJjwtRejects(candidate, SECRET, RuntimeException.class);
+            assertLeanRejects(candidate, BadCredentialsException.class);
+        }
+    }
+
+    @Test
+    public void rejectsNullToken() {
+        assertLeanRejects(null, BadCredentialsException.class);
+    }
+
+    private static JwtBuilder claims(long expiresInMillis) {
+        return Jwts.builder()
+                .setSubject("u1")
+                .claim(Constants.USER_ID, "u1")
+                .claim(Constants.TOKEN_TYPE, TokenType.Access.name())
+                .claim(Constants.TOKEN_GENERATION, 3)
+                .claim("role_id", "r1")
+                .setId("jti-1")
+                .setExpiration(new Date(System.currentTimeMillis() + expiresInMillis));
+    }
+
+    private static Claims jjwt(String token, byte[] secret) {
+        return Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody();
+    }
+
+    private static Claims jjwt(String token, Key key) {
+        return Jwts.parser().setSigningKey(key).parseClaimsJws(token).getBody();
+    }
+
+    private static void assertSameClaims(Claims expected, ParsedToken actual) {
+        assertEquals(expected.get(Constants.USER_ID), actual.getUserId());
+        assertEquals(TokenType.valueOf((String) expected.get(Constants.TOKEN_TYPE)), actual.getTokenType());
+        assertEquals(expected.getId(), actual.getTokenId());
+        assertEquals(((Number) expected.get(Constants.TOKEN_GENERATION)).intValue(), actual.getGeneration());
+        assertEquals(expected.getExpiration(), actual.getExpiration());
+        assertEquals(expected.get("role_id"), actual.getClaim("role_id"));
+        assertEquals(expected.getSubject(), actual.getClaim("sub"));
+    }
+
+    private static void assertJjwtRejects(String token, Object key, Class<? extends RuntimeException> expected) {
+        try {
+            if (key instanceof byte[]) {
+                jjwt(token, (byte[]) key);
+            } else {
+                jjwt(token, (Key) key);
+            }
+            fail("jjwt接受了应当拒绝的令牌: " + token);
+        } catch (RuntimeException e) {
+            assertTrue("jjwt抛出了意外的异常: " + e, expected.isInstance(e));
+        }
+    }
+
+    private static void assertLeanRejects(String token, Class<? extends RuntimeException> expected) {
+        assertRejects(verifier, token, expected);
+    }
+
+    private static void assertRejects(LeanJwsVerifier verifier, String token,
+                                      Class<? extends RuntimeException> expected) {
+        try {
+            verifier.verify(token);
+            fail("精简校验器接受了应当拒绝的令牌: " + token);
+        } catch (RuntimeException e) {
+            assertEquals(expected, e.getClass());
+        }
+    }
+
+    private static String replaceAt(String token, int index) {
+        char replacement = token.charAt(index) == 'A' ? 'B' : 'A';
+        return token.substring(0, index) + replacement + token.substring(index + 1);
+    }
+
+    private static String base64Url(String json) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
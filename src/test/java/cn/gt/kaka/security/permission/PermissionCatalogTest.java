@@ -0,0 +1,209 @@
+package cn.gt.kaka.security.permission;
+
+import cn.gt.kaka.cache.RolePermissionCache;
+import cn.gt.kaka.dao.UserDao;
+import cn.gt.kaka.model.UserDto;
+import cn.gt.kaka.security.jwt.ParsedToken;
+import cn.gt.kaka.security.jwt.PermissionSet;
+import cn.gt.kaka.util.Constants;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * PermissionCatalog 权限位图编码、解码和目录版本测试
+ *
+ * 权限表由模拟的 UserDao 提供，测试中可以替换其内容模拟权限表变化；
+ * 令牌由带 pv、perm 声明的 Claims 构造，回退查询走模拟的 RolePermissionCache
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public class PermissionCatalogTest {
+
+    private static final String USER_ID = "u1";
+
+    private final List<String> permissionTable = new ArrayList<>();
+
+    private UserDao userDao;
+
+    private RolePermissionCache rolePermissionCache;
+
+    private PermissionCatalog catalog;
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < 10; i++) {
+            permissionTable.add("p" + i);
+        }
+        userDao = mock(UserDao.class);
+        when(userDao.findAllPermissionCodes()).thenAnswer(invocation -> new ArrayList<>(permissionTable));
+        rolePermissionCache = mock(RolePermissionCache.class);
+        when(rolePermissionCache.permissionsOf(USER_ID)).thenReturn(Arrays.asList("p1", "p2"));
+
+        catalog = new PermissionCatalog();
+        ReflectionTestUtils.setField(catalog, "userDao", userDao);
+        ReflectionTestUtils.setField(catalog, "rolePermissionCache", rolePermissionCache);
+        ReflectionTestUtils.setField(catalog, "embed", true);
+        ReflectionTestUtils.setField(catalog, "reloadInterval", 0L);
+        ReflectionTestUtils.setField(catalog, "retainedVersions", 2);
+        catalog.init();
+    }
+
+    @Test
+    public void encodesLittleEndianBits() {
+        PermissionSet permissions = catalog.permissionsOf(user("p0", "p3", "p9"));
+
+        // p0、p3 在第0个字节的第0、3位，p9 在第1个字节的第1位
+        assertEquals(16, permissions.length());
+        assertEquals("CQI", permissions.encode());
+        for (int i = 0; i < 16; i++) {
+            assertEquals(i == 0 || i == 3 || i == 9, permissions.get(i));
+        }
+    }
+
+    @Test
+    public void trimsTrailingZeroBytes() {
+        assertEquals(8, catalog.permissionsOf(user("p0", "p3")).length());
+        assertEquals(0, catalog.permissionsOf(user()).length());
+    }
+
+    @Test
+    public void unknownPermissionReloadsOnceThenGivesUp() {
+        assertNull(catalog.permissionsOf(user("p0", "ghost")));
+
+        // 启动时一次，遇到未知权限时重新加载一次
+        verify(userDao, times(2)).findAllPermissionCodes();
+    }
+
+    @Test
+    public void permissionAddedAfterStartupIsPickedUpByReload() {
+        long before = catalog.permissionsOf(user("p0")).getCatalogVersion();
+        permissionTable.add("p10");
+
+        PermissionSet permissions = catalog.permissionsOf(user("p10"));
+
+        assertNotEquals(before, permissions.getCatalogVersion());
+        assertTrue(permissions.get(10));
+    }
+
+    @Test
+    public void embeddingDisabledGivesNoBits() {
+        ReflectionTestUtils.setField(catalog, "embed", false);
+
+        assertNull(catalog.permissionsOf(user("p0")));
+        assertNull(catalog.permissionsOf(USER_ID));
+    }
+
+    @Test
+    public void decodesWithoutDatabaseAndReusesAuthorities() {
+        PermissionSet permissions = catalog.permissionsOf(user("p0", "p3", "p9"));
+
+        Collection<GrantedAuthority> authorities = catalog.authoritiesOf(token(permissions));
+
+        assertEquals(Arrays.asList("p0", "p3", "p9"), codesOf(authorities));
+        List<GrantedAuthority> shared = new ArrayList<>(catalog.toAuthorities(Collections.singletonList("p3")));
+        assertSame(shared.get(0), new ArrayList<>(authorities).get(1));
+        verify(rolePermissionCache, never()).permissionsOf(anyString());
+    }
+
+    @Test
+    public void unknownVersionFallsBackToDatabase() {
+        long version = catalog.permissionsOf(user("p0")).getCatalogVersion();
+
+        Collection<GrantedAuthority> authorities =
+                catalog.authoritiesOf(token(new PermissionSet(version + 1, new byte[]{1})));
+
+        assertEquals(Arrays.asList("p1", "p2"), codesOf(authorities));
+        verify(rolePermissionCache).permissionsOf(USER_ID);
+    }
+
+    @Test
+    public void bitBeyondCatalogFallsBackToDatabase() {
+        long version = catalog.permissionsOf(user("p0")).getCatalogVersion();
+
+        // 第15位在位图范围内，但目录只有10个权限
+        Collection<GrantedAuthority> authorities =
+                catalog.authoritiesOf(token(new PermissionSet(version, new byte[]{1, (byte) 0x80})));
+
+        assertEquals(Arrays.asList("p1", "p2"), codesOf(authorities));
+        verify(rolePermissionCache).permissionsOf(USER_ID);
+    }
+
+    @Test
+    public void tokenWithoutPermissionsFallsBackToDatabase() {
+        assertEquals(Arrays.asList("p1", "p2"), codesOf(catalog.authoritiesOf(token(null))));
+    }
+
+    @Test
+    public void retainsRecentVersions() {
+        PermissionSet first = catalog.permissionsOf(user("p9"));
+        catalog.reload();
+        assertEquals(first.getCatalogVersion(), catalog.permissionsOf(user("p9")).getCatalogVersion());
+
+        // 在目录中间插入权限，p9 的下标从9变为10
+        permissionTable.add(0, "new0");
+        catalog.reload();
+        PermissionSet second = catalog.permissionsOf(user("p9"));
+        assertTrue(second.get(10));
+
+        assertEquals(Collections.singletonList("p9"), codesOf(catalog.authoritiesOf(token(first))));
+        assertEquals(Collections.singletonList("p9"), codesOf(catalog.authoritiesOf(token(second))));
+        verify(rolePermissionCache, never()).permissionsOf(anyString());
+
+        // 只保留两个版本，第三个版本加载后最早的版本回退为查询数据库
+        permissionTable.add(0, "new1");
+        catalog.reload();
+        assertEquals(Collections.singletonList("p9"), codesOf(catalog.authoritiesOf(token(second))));
+        assertFalse(codesOf(catalog.authoritiesOf(token(first))).contains("p9"));
+        verify(rolePermissionCache).permissionsOf(USER_ID);
+    }
+
+    private static UserDto user(String... permissions) {
+        UserDto user = new UserDto();
+        user.setId(USER_ID);
+        user.setPermissions(Arrays.asList(permissions));
+        return user;
+    }
+
+    private static ParsedToken token(PermissionSet permissions) {
+        Claims claims = Jwts.claims().setSubject(USER_ID);
+        claims.put(Constants.USER_ID, USER_ID);
+        if (permissions != null) {
+            claims.put(Constants.PERMISSION_VERSION, permissions.getCatalogVersion());
+            claims.put(Constants.PERMISSIONS, permissions.encode());
+        }
+        return ParsedToken.from(claims);
+    }
+
+    private static List<String> codesOf(Collection<GrantedAuthority> authorities) {
+        List<String> codes = new ArrayList<>(authorities.size());
+        for (GrantedAuthority authority : authorities) {
+            codes.add(authority.getAuthority());
+        }
+        return codes;
+    }
+}
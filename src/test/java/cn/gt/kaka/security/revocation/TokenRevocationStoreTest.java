@@ -0,0 +1,193 @@
+package cn.gt.kaka.security.revocation;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * TokenRevocationStore 撤销、布隆过滤器重建、过期清除和快照持久化测试
+ *
+ * 快照写入 JUnit 临时目录；清理间隔设为一小时，后台任务不会在测试期间运行，清除和快照由测试直接调用
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public class TokenRevocationStoreTest {
+
+    private static final long HOUR = 3600_000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<TokenRevocationStore> stores = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (TokenRevocationStore store : stores) {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    public void revokesOncePerTokenId() {
+        TokenRevocationStore store = newStore(100, "", "");
+        long expiresAt = System.currentTimeMillis() + HOUR;
+
+        assertTrue(store.revoke("jti-1", expiresAt));
+        assertFalse(store.revoke("jti-1", expiresAt));
+        assertFalse(store.revoke(null, expiresAt));
+        assertFalse(store.revoke("jti-2", System.currentTimeMillis() - 1L));
+
+        assertTrue(store.isRevoked("jti-1"));
+        assertFalse(store.isRevoked("jti-2"));
+        assertFalse(store.isRevoked(null));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void rebuildsFilterWhenEntriesOutgrowIt() {
+        TokenRevocationStore store = newStore(4, "", "");
+        long expiresAt = System.currentTimeMillis() + HOUR;
+        for (int i = 0; i < 4; i++) {
+            store.revoke("jti-" + i, expiresAt);
+        }
+        assertEquals(4, filterOf(store).capacity());
+
+        store.revoke("jti-4", expiresAt);
+
+        assertEquals(10, filterOf(store).capacity());
+        for (int i = 0; i <= 4; i++) {
+            assertTrue(store.isRevoked("jti-" + i));
+        }
+        // 误判由精确集合排除
+        for (int i = 5; i < 1000; i++) {
+            assertFalse(store.isRevoked("jti-" + i));
+        }
+    }
+
+    @Test
+    public void sweepRemovesExpiredEntriesAndRebuildsFilter() {
+        TokenRevocationStore store = newStore(100, "", "");
+        long now = System.currentTimeMillis();
+        store.revoke("live", now + HOUR);
+        store.revoke("expired", now + HOUR);
+        // 直接改写过期时间，模拟条目已过期
+        revokedOf(store).put("expired", now - 1L);
+        BloomFilter before = filterOf(store);
+
+        assertEquals(1, store.sweep());
+
+        assertNotSame(before, filterOf(store));
+        assertTrue(store.isRevoked("live"));
+        assertFalse(store.isRevoked("expired"));
+        assertEquals(1, store.size());
+        assertEquals(0, store.sweep());
+    }
+
+    @Test
+    public void snapshotSurvivesRestart() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("revoked.tsv");
+        TokenRevocationStore first = newStore(100, file.toString(), "");
+        long expiresAt = System.currentTimeMillis() + HOUR;
+        first.revoke("jti-1", expiresAt);
+        first.revoke("jti-2", expiresAt);
+        first.snapshot();
+        assertTrue(Files.exists(file));
+        assertFalse(Files.exists(file.resolveSibling("revoked.tsv.tmp")));
+
+        TokenRevocationStore second = newStore(100, file.toString(), "");
+
+        assertEquals(2, second.size());
+        assertTrue(second.isRevoked("jti-1"));
+        assertTrue(second.isRevoked("jti-2"));
+        assertFalse(second.isRevoked("jti-3"));
+    }
+
+    @Test
+    public void loadSkipsExpiredAndMalformedLines() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("revoked.tsv");
+        long now = System.currentTimeMillis();
+        Files.write(file, Arrays.asList(
+                (now + HOUR) + "\tlive",
+                (now - 1L) + "\texpired",
+                "not-a-number\tbroken",
+                "no-tab"), StandardCharsets.UTF_8);
+
+        TokenRevocationStore store = newStore(100, file.toString(), "");
+
+        assertEquals(1, store.size());
+        assertTrue(store.isRevoked("live"));
+        assertFalse(store.isRevoked("expired"));
+        assertFalse(store.isRevoked("broken"));
+    }
+
+    @Test
+    public void relativeSnapshotFileResolvesAgainstDataDir() throws Exception {
+        Path dataDir = temporaryFolder.getRoot().toPath();
+        TokenRevocationStore store = newStore(100, "revocation/revoked.tsv", dataDir.toString());
+        store.revoke("jti-1", System.currentTimeMillis() + HOUR);
+
+        store.shutdown();
+
+        Path file = dataDir.resolve("revocation").resolve("revoked.tsv");
+        assertTrue(Files.exists(file));
+        assertTrue(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).contains("\tjti-1"));
+    }
+
+    @Test
+    public void relativeSnapshotFileWithoutDataDirFailsStartup() {
+        assertStartupFails("revoked.tsv", "");
+    }
+
+    @Test
+    public void relativeDataDirFailsStartup() {
+        assertStartupFails("revoked.tsv", "data");
+    }
+
+    private void assertStartupFails(String snapshotFile, String dataDir) {
+        try {
+            newStore(100, snapshotFile, dataDir);
+            fail("相对路径的快照文件必须按绝对路径的 app.dataDir 解析");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains(snapshotFile) || e.getMessage().contains(dataDir));
+        }
+    }
+
+    private TokenRevocationStore newStore(int expectedEntries, String snapshotFile, String dataDir) {
+        TokenRevocationStore store = new TokenRevocationStore();
+        ReflectionTestUtils.setField(store, "expectedEntries", expectedEntries);
+        ReflectionTestUtils.setField(store, "falsePositiveRate", 0.01D);
+        ReflectionTestUtils.setField(store, "snapshotFile", snapshotFile);
+        ReflectionTestUtils.setField(store, "dataDir", dataDir);
+        ReflectionTestUtils.setField(store, "sweepInterval", 3600L);
+        store.init();
+        stores.add(store);
+        return store;
+    }
+
+    private static BloomFilter filterOf(TokenRevocationStore store) {
+        return (BloomFilter) ReflectionTestUtils.getField(store, "filter");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Long> revokedOf(TokenRevocationStore store) {
+        return (Map<String, Long>) ReflectionTestUtils.getField(store, "revoked");
+    }
+}
@@ -0,0 +1,109 @@
+package cn.gt.kaka.security.throttle;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * DecayingCounterTable 衰减、桶内替换和清除测试
+ *
+ * 槽位数为4、分段数为1的表只有一个桶，所有键落在同一个桶中，便于构造替换场景；时间由调用方传入
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public class DecayingCounterTableTest {
+
+    private static final long HALF_LIFE = 1000L;
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void countHalvesEveryHalfLife() {
+        DecayingCounterTable table = new DecayingCounterTable(64, 4, HALF_LIFE);
+
+        table.add(42L, 4D, 0L);
+
+        assertEquals(4D, table.get(42L, 0L), DELTA);
+        assertEquals(2D, table.get(42L, HALF_LIFE), DELTA);
+        assertEquals(1D, table.get(42L, 2 * HALF_LIFE), DELTA);
+        assertEquals(0D, table.get(7L, 0L), DELTA);
+    }
+
+    @Test
+    public void addAccumulatesOnDecayedCount() {
+        DecayingCounterTable table = new DecayingCounterTable(64, 4, HALF_LIFE);
+
+        table.add(42L, 4D, 0L);
+        double count = table.add(42L, 1D, HALF_LIFE);
+
+        assertEquals(3D, count, DELTA);
+        assertEquals(1.5D, table.get(42L, 2 * HALF_LIFE), DELTA);
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void fullBucketReplacesLowestCount() {
+        DecayingCounterTable table = new DecayingCounterTable(DecayingCounterTable.WAYS, 1, HALF_LIFE);
+        table.add(1L, 5D, 0L);
+        table.add(2L, 1D, 0L);
+        table.add(3L, 3D, 0L);
+        table.add(4L, 2D, 0L);
+        assertEquals(4, table.size());
+
+        table.add(5L, 1D, 0L);
+
+        assertEquals(0D, table.get(2L, 0L), DELTA);
+        assertEquals(5D, table.get(1L, 0L), DELTA);
+        assertEquals(3D, table.get(3L, 0L), DELTA);
+        assertEquals(2D, table.get(4L, 0L), DELTA);
+        assertEquals(1D, table.get(5L, 0L), DELTA);
+        assertEquals(4, table.size());
+        assertEquals(1L, table.evictionCount());
+    }
+
+    @Test
+    public void replacingDecayedSlotIsNotAnEviction() {
+        DecayingCounterTable table = new DecayingCounterTable(DecayingCounterTable.WAYS, 1, HALF_LIFE);
+        for (long key = 1L; key <= DecayingCounterTable.WAYS; key++) {
+            table.add(key, 1D, 0L);
+        }
+
+        // 十个半衰期后计数低于0.01，视为已衰减完
+        table.add(99L, 1D, 10 * HALF_LIFE);
+
+        assertEquals(1D, table.get(99L, 10 * HALF_LIFE), DELTA);
+        assertEquals(0L, table.evictionCount());
+        assertEquals(DecayingCounterTable.WAYS, table.size());
+    }
+
+    @Test
+    public void removeClearsCountAndFreesSlot() {
+        DecayingCounterTable table = new DecayingCounterTable(64, 4, HALF_LIFE);
+        table.add(42L, 3D, 0L);
+
+        table.remove(42L);
+        table.remove(43L);
+
+        assertEquals(0D, table.get(42L, 0L), DELTA);
+        assertEquals(0, table.size());
+        assertEquals(1D, table.add(42L, 1D, 0L), DELTA);
+    }
+
+    @Test
+    public void zeroKeyIsUsable() {
+        DecayingCounterTable table = new DecayingCounterTable(64, 4, HALF_LIFE);
+
+        table.add(0L, 2D, 0L);
+
+        assertEquals(2D, table.get(0L, 0L), DELTA);
+    }
+
+    @Test
+    public void capacityRoundsUpToPowerOfTwo() {
+        assertEquals(128, new DecayingCounterTable(100, 3, HALF_LIFE).capacity());
+        // 每个分段至少一个桶
+        assertEquals(64 * DecayingCounterTable.WAYS, new DecayingCounterTable(8, 64, HALF_LIFE).capacity());
+    }
+}
@@ -0,0 +1,109 @@
+package cn.gt.kaka.security.throttle;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * LoginThrottle 计数、清除和拒绝响应测试
+ *
+ * 半衰期设为一小时；调用之间的毫秒级衰减会让整数次失败的计数略低于该整数，因此上限取两个整数之间的值，
+ * 计数随时间衰减的行为见 DecayingCounterTableTest
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public class LoginThrottleTest {
+
+    private LoginThrottle throttle;
+
+    @Before
+    public void setUp() {
+        throttle = newThrottle(true);
+    }
+
+    @Test
+    public void throttlesUsernameAtLimitIgnoringCase() {
+        throttle.recordFailure("Alice", "10.0.0.1");
+        throttle.recordFailure("alice", "10.0.0.2");
+        assertFalse(throttle.isThrottled("ALICE", "10.0.0.3"));
+
+        throttle.recordFailure("ALICE", "10.0.0.3");
+
+        assertTrue(throttle.isThrottled("alice", "10.0.0.4"));
+        assertFalse(throttle.isThrottled("bob", "10.0.0.4"));
+        // 还没有解析出用户名时只检查IP
+        assertFalse(throttle.isThrottled(null, "10.0.0.4"));
+    }
+
+    @Test
+    public void successResetsUsernameButNotAddress() {
+        for (int i = 0; i < 3; i++) {
+            throttle.recordFailure("alice", "10.0.0.1");
+        }
+        assertTrue(throttle.isThrottled("alice", "10.0.0.9"));
+
+        throttle.recordSuccess("Alice");
+
+        assertFalse(throttle.isThrottled("alice", "10.0.0.9"));
+        for (int i = 0; i < 7; i++) {
+            throttle.recordFailure("user" + i, "10.0.0.1");
+        }
+        // IP计数没有因登录成功而清除：3 + 7 次失败超过上限
+        assertTrue(throttle.isThrottled(null, "10.0.0.1"));
+    }
+
+    @Test
+    public void throttlesAddressAcrossUsernames() {
+        for (int i = 0; i < 9; i++) {
+            throttle.recordFailure("user" + i, "10.0.0.1");
+        }
+        assertFalse(throttle.isThrottled("someone", "10.0.0.1"));
+
+        throttle.recordFailure("user9", "10.0.0.1");
+
+        assertTrue(throttle.isThrottled("someone", "10.0.0.1"));
+        assertTrue(throttle.isThrottled(null, "10.0.0.1"));
+        assertFalse(throttle.isThrottled("someone", "10.0.0.2"));
+    }
+
+    @Test
+    public void disabledNeverThrottles() {
+        LoginThrottle disabled = newThrottle(false);
+        for (int i = 0; i < 20; i++) {
+            disabled.recordFailure("alice", "10.0.0.1");
+        }
+
+        assertFalse(disabled.isThrottled("alice", "10.0.0.1"));
+    }
+
+    @Test
+    public void writesTooManyRequests() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        throttle.writeRejection(response);
+
+        assertEquals(429, response.getStatus());
+        assertEquals("3600", response.getHeader(HttpHeaders.RETRY_AFTER));
+        assertTrue(response.getContentAsString().contains("429"));
+    }
+
+    private static LoginThrottle newThrottle(boolean enabled) {
+        LoginThrottle throttle = new LoginThrottle();
+        ReflectionTestUtils.setField(throttle, "enabled", enabled);
+        ReflectionTestUtils.setField(throttle, "usernameLimit", 2.5D);
+        ReflectionTestUtils.setField(throttle, "ipLimit", 9.5D);
+        ReflectionTestUtils.setField(throttle, "halfLife", 3600L);
+        ReflectionTestUtils.setField(throttle, "capacity", 1024);
+        ReflectionTestUtils.setField(throttle, "stripes", 4);
+        throttle.init();
+        return throttle;
+    }
+}
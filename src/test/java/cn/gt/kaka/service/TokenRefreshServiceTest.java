@@ -0,0 +1,219 @@
+package cn.gt.kaka.service;
+
+import cn.gt.kaka.dao.RefreshTokenDao;
+import cn.gt.kaka.dto.TokenType;
+import cn.gt.kaka.exception.JwtRevokedTokenException;
+import cn.gt.kaka.model.UserDto;
+import cn.gt.kaka.security.jwt.CompactTokenCodec;
+import cn.gt.kaka.security.jwt.HmacSha256;
+import cn.gt.kaka.security.jwt.TokenFormat;
+import cn.gt.kaka.security.jwt.TokenPair;
+import cn.gt.kaka.security.revocation.TokenRevocationStore;
+import cn.gt.kaka.security.revocation.UserTokenGenerationStore;
+import cn.gt.kaka.util.JwtUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * TokenRefreshService 刷新令牌轮换与重用检测测试
+ *
+ * 使用记录写入内嵌H2数据库（表结构见 db/schema.sql），两个服务实例共用同一个数据库、各自持有本地撤销列表，
+ * 模拟多节点部署；令牌由紧凑编解码器签发和校验，签发新令牌对的 JwtUtil 为模拟对象
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public class TokenRefreshServiceTest {
+
+    private final CompactTokenCodec codec =
+            new CompactTokenCodec(new HmacSha256("9IfbI0oNMQbzATjWeNFBN89kzo7XMCEg".getBytes(StandardCharsets.UTF_8)));
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private UserTokenGenerationStore generationStore;
+
+    private TokenRefreshService nodeA;
+
+    private TokenRefreshService nodeB;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(EmbeddedDatabaseType.H2)
+                .addScript("db/schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        generationStore = mock(UserTokenGenerationStore.class);
+        nodeA = newNode();
+        nodeB = newNode();
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void rotatesAndRecordsUse() {
+        String refreshToken = mintRefreshToken("u1");
+
+        TokenPair pair = nodeA.refresh(refreshToken);
+
+        assertNotNull(pair.getRefreshToken());
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM t_refresh_token_use WHERE token_id = ? AND user_id = 'u1'", Integer.class,
+                codec.verify(refreshToken).getTokenId()));
+        verify(generationStore, never()).bump(anyString());
+    }
+
+    @Test
+    public void reuseBumpsGeneration() {
+        String refreshToken = mintRefreshToken("u1");
+        nodeA.refresh(refreshToken);
+
+        assertReuse(() -> nodeA.refresh(refreshToken));
+        verify(generationStore, times(1)).bump("u1");
+    }
+
+    @Test
+    public void reuseOnAnotherNodeBumpsGeneration() {
+        String refreshToken = mintRefreshToken("u1");
+        nodeA.refresh(refreshToken);
+
+        assertReuse(() -> nodeB.refresh(refreshToken));
+        verify(generationStore, times(1)).bump("u1");
+    }
+
+    @Test
+    public void refreshAfterLogoutOnAnotherNodeIsReuse() {
+        String refreshToken = mintRefreshToken("u1");
+        nodeA.revoke(codec.verify(refreshToken));
+
+        assertReuse(() -> nodeB.refresh(refreshToken));
+        verify(generationStore, times(1)).bump("u1");
+    }
+
+    /**
+     * 同一个刷新令牌在两个节点上同时刷新，只有一次成功，另一次按重用处理
+     */
+    @Test
+    public void concurrentDoubleRefreshSucceedsOnce() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            String refreshToken = mintRefreshToken("u" + round);
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                List<Future<TokenPair>> results = new ArrayList<>();
+                for (TokenRefreshService node : new TokenRefreshService[]{nodeA, nodeB}) {
+                    results.add(executor.submit((Callable<TokenPair>) () -> {
+                        start.await();
+                        return node.refresh(refreshToken);
+                    }));
+                }
+                start.countDown();
+
+                int succeeded = 0;
+                int reused = 0;
+                for (Future<TokenPair> result : results) {
+                    try {
+                        assertNotNull(result.get(10, TimeUnit.SECONDS));
+                        succeeded++;
+                    } catch (ExecutionException e) {
+                        assertTrue(e.getCause() instanceof JwtRevokedTokenException);
+                        reused++;
+                    }
+                }
+                assertEquals(1, succeeded);
+                assertEquals(1, reused);
+                verify(generationStore, times(1)).bump("u" + round);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void deleteExpiredKeepsLiveRecords() {
+        RefreshTokenDao dao = newDao();
+        long now = System.currentTimeMillis();
+        assertTrue(dao.markUsed("expired", "u1", now - 1000L));
+        assertTrue(dao.markUsed("live", "u1", now + 60_000L));
+
+        assertEquals(1, dao.deleteExpired(now));
+        assertTrue(dao.markUsed("expired", "u1", now + 60_000L));
+        assertFalse(dao.markUsed("live", "u1", now + 60_000L));
+    }
+
+    private TokenRefreshService newNode() {
+        JwtUtil jwtUtil = mock(JwtUtil.class);
+        when(jwtUtil.parseToken(anyString())).thenAnswer(invocation -> codec.verify(invocation.getArgument(0)));
+        when(jwtUtil.generateTokenPair(any(UserDto.class), any(TokenFormat.class))).thenAnswer(invocation -> {
+            String userId = invocation.<UserDto>getArgument(0).getId();
+            return new TokenPair("access-" + userId, mintRefreshToken(userId), 0L, 0L);
+        });
+
+        // 本地撤销列表只在本节点可见，用模拟对象记录撤销结果即可
+        TokenRevocationStore revocationStore = mock(TokenRevocationStore.class);
+
+        TokenRefreshService service = new TokenRefreshService();
+        ReflectionTestUtils.setField(service, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(service, "tokenRevocationStore", revocationStore);
+        ReflectionTestUtils.setField(service, "userTokenGenerationStore", generationStore);
+        ReflectionTestUtils.setField(service, "refreshTokenDao", newDao());
+        return service;
+    }
+
+    private RefreshTokenDao newDao() {
+        RefreshTokenDao dao = new RefreshTokenDao();
+        ReflectionTestUtils.setField(dao, "jdbcTemplate", jdbcTemplate);
+        return dao;
+    }
+
+    private String mintRefreshToken(String userId) {
+        long now = System.currentTimeMillis();
+        return codec.mint(userId, 0, null, TokenType.Refresh, now, now + 7_200_000L);
+    }
+
+    private static void assertReuse(Runnable refresh) {
+        try {
+            refresh.run();
+            fail("重用的刷新令牌应被拒绝");
+        } catch (JwtRevokedTokenException e) {
+            assertEquals("刷新令牌已被使用，请重新登录", e.getMessage());
+        }
+    }
+}
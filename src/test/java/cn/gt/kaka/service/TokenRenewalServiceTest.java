@@ -0,0 +1,111 @@
+package cn.gt.kaka.service;
+
+import cn.gt.kaka.dto.TokenType;
+import cn.gt.kaka.model.UserDto;
+import cn.gt.kaka.security.jwt.CompactTokenCodec;
+import cn.gt.kaka.security.jwt.HmacSha256;
+import cn.gt.kaka.security.jwt.ParsedToken;
+import cn.gt.kaka.security.jwt.TokenFormat;
+import cn.gt.kaka.util.JwtUtil;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * TokenRenewalService 续期条件测试
+ *
+ * 被续期的令牌由紧凑编解码器签发并校验得到，签发新令牌的 JwtUtil 为模拟对象
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public class TokenRenewalServiceTest {
+
+    private static final long WINDOW = 300L;
+
+    private static final long MAX_SESSION_AGE = 7200L;
+
+    private final CompactTokenCodec codec =
+            new CompactTokenCodec(new HmacSha256("9IfbI0oNMQbzATjWeNFBN89kzo7XMCEg".getBytes(StandardCharsets.UTF_8)));
+
+    private JwtUtil jwtUtil;
+
+    private TokenRenewalService service;
+
+    @Before
+    public void setUp() {
+        jwtUtil = mock(JwtUtil.class);
+        when(jwtUtil.generateAccessToken(any(UserDto.class), any(TokenFormat.class), anyLong())).thenReturn("renewed");
+
+        service = new TokenRenewalService();
+        ReflectionTestUtils.setField(service, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(service, "window", WINDOW);
+        ReflectionTestUtils.setField(service, "maxEntries", 100);
+        ReflectionTestUtils.setField(service, "maxSessionAge", MAX_SESSION_AGE);
+    }
+
+    @Test
+    public void renewsNearExpiryAndKeepsAuthTime() {
+        long now = System.currentTimeMillis();
+        long authTime = now - 3_600_000L;
+        String token = codec.mint("u1", 0, null, TokenType.Access, authTime, now + 60_000L);
+        ParsedToken parsed = codec.verify(token);
+
+        assertEquals("renewed", service.renew(token, parsed));
+        assertEquals("renewed", service.renew(token, parsed));
+
+        // 同一令牌只签发一次，新令牌沿用原令牌的认证时间（截断到秒）
+        verify(jwtUtil, times(1)).generateAccessToken(any(UserDto.class), eq(TokenFormat.COMPACT),
+                eq(authTime / 1000L * 1000L));
+    }
+
+    @Test
+    public void skipsTokenOutsideWindow() {
+        long now = System.currentTimeMillis();
+        String token = codec.mint("u1", 0, null, TokenType.Access, now, now + (WINDOW + 60L) * 1000L);
+
+        assertNull(service.renew(token, codec.verify(token)));
+        verify(jwtUtil, never()).generateAccessToken(any(UserDto.class), any(TokenFormat.class), anyLong());
+    }
+
+    @Test
+    public void refusesOnceSessionOutlivesRefreshToken() {
+        long now = System.currentTimeMillis();
+        String token = codec.mint("u1", 0, null, TokenType.Access, now - (MAX_SESSION_AGE + 1L) * 1000L,
+                now + 60_000L);
+
+        assertNull(service.renew(token, codec.verify(token)));
+        verify(jwtUtil, never()).generateAccessToken(any(UserDto.class), any(TokenFormat.class), anyLong());
+    }
+
+    @Test
+    public void refusesTokenWithoutAuthTime() {
+        long now = System.currentTimeMillis();
+        String token = codec.mint("u1", 0, TokenType.Access, now + 60_000L);
+
+        assertNull(service.renew(token, codec.verify(token)));
+        verify(jwtUtil, never()).generateAccessToken(any(UserDto.class), any(TokenFormat.class), anyLong());
+    }
+
+    @Test
+    public void refusesRefreshToken() {
+        long now = System.currentTimeMillis();
+        String token = codec.mint("u1", 0, null, TokenType.Refresh, now, now + 60_000L);
+
+        assertNull(service.renew(token, codec.verify(token)));
+    }
+}
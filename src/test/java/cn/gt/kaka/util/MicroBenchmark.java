@@ -0,0 +1,109 @@
+package cn.gt.kaka.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * 测试用微基准工具
+ *
+ * 项目没有引入JMH，基准测试类用本工具在当前线程上预热后计时，并通过 com.sun.management.ThreadMXBean
+ * 统计当前线程的分配字节数，得到每次操作的平均耗时和平均分配量；JVM不支持线程分配统计时分配量为-1
+ *
+ * 基准测试类以 Benchmark 结尾，不匹配 surefire 的默认测试类名，普通构建不会执行，需要单独运行：
+ * mvn test -Dtest=CompactTokenCodecBenchmark
+ *
+ * 结果只用于同一台机器上的相对比较，不作为断言条件
+ *
+ * @author 系统管理员
+ * @version 2.1
+ * @since 2.1
+ */
+public final class MicroBenchmark {
+
+    /**
+     * 防止JIT把没有使用结果的操作当作死代码消除
+     */
+    private static volatile int sink;
+
+    private MicroBenchmark() {
+    }
+
+    /**
+     * 预热后执行并统计
+     *
+     * @param name 名称，用于输出
+     * @param warmup 预热次数
+     * @param iterations 计时次数
+     * @param operation 被测操作，返回值会被消费
+     * @return 统计结果
+     */
+    public static Result run(String name, int warmup, int iterations, Supplier<?> operation) {
+        int hash = 0;
+        for (int i = 0; i < warmup; i++) {
+            hash += consume(operation.get());
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            hash += consume(operation.get());
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        sink = hash;
+
+        long bytesPerOp = allocatedBefore < 0 ? -1 : (allocatedAfter - allocatedBefore) / iterations;
+        return new Result(name, (double) elapsed / iterations, bytesPerOp);
+    }
+
+    private static int consume(Object value) {
+        return value == null ? 0 : System.identityHashCode(value);
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 基准结果：每次操作的平均耗时（纳秒）和平均分配字节数
+     */
+    public static final class Result {
+
+        private final String name;
+
+        private final double nanosPerOp;
+
+        private final long bytesPerOp;
+
+        Result(String name, double nanosPerOp, long bytesPerOp) {
+            this.name = name;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getNanosPerOp() {
+            return nanosPerOp;
+        }
+
+        public long getBytesPerOp() {
+            return bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-40s %12.1f ns/op %10d B/op", name, nanosPerOp, bytesPerOp);
+        }
+    }
+}
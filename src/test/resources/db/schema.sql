@@ -0,0 +1,44 @@
+-- 数据访问测试使用的表结构，与 README 中的建表语句一致
+
+CREATE TABLE t_user (
+    id VARCHAR(32) PRIMARY KEY,
+    username VARCHAR(50) UNIQUE NOT NULL,
+    password VARCHAR(100) NOT NULL,
+    fullname VARCHAR(100),
+    mobile VARCHAR(20),
+    token_generation INT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE t_permission (
+    id VARCHAR(32) PRIMARY KEY,
+    code VARCHAR(50) UNIQUE NOT NULL,
+    description VARCHAR(200),
+    url VARCHAR(200)
+);
+
+CREATE TABLE t_role (
+    id VARCHAR(32) PRIMARY KEY,
+    code VARCHAR(50) UNIQUE NOT NULL,
+    name VARCHAR(100) NOT NULL,
+    description VARCHAR(200)
+);
+
+CREATE TABLE t_user_role (
+    user_id VARCHAR(32),
+    role_id VARCHAR(32),
+    PRIMARY KEY (user_id, role_id)
+);
+
+CREATE TABLE t_role_permission (
+    role_id VARCHAR(32),
+    permission_id VARCHAR(32),
+    PRIMARY KEY (role_id, permission_id)
+);
+
+CREATE TABLE t_refresh_token_use (
+    token_id VARCHAR(32) PRIMARY KEY,
+    user_id VARCHAR(32) NOT NULL,
+    expires_at BIGINT NOT NULL
+);
+
+CREATE INDEX idx_refresh_token_use_expires_at ON t_refresh_token_use (expires_at);